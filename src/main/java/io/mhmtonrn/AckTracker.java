@@ -0,0 +1,96 @@
+package io.mhmtonrn;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tracks which transactions have been fully handled by every sink. A transaction's end LSN
+ * becomes confirmable once all of its events are released and every earlier transaction is
+ * confirmable too, so the confirmed position never runs ahead of the real work.
+ * Safe to use from the replication thread and from sink threads at the same time.
+ */
+final class AckTracker {
+
+    /** An open transaction. Holds one reference for itself until {@link AckTracker#commit} is called. */
+    static final class Transaction {
+        private final AtomicInteger outstanding = new AtomicInteger(1);
+        private volatile long endLsn;
+        private boolean queued;
+
+        /** Called before an event of this transaction is handed to a sink. */
+        void retain() {
+            outstanding.incrementAndGet();
+        }
+
+        /** Called once the sink has finished with the event. */
+        void release() {
+            outstanding.decrementAndGet();
+        }
+
+        boolean done() {
+            return outstanding.get() == 0;
+        }
+
+        long endLsn() {
+            return endLsn;
+        }
+    }
+
+    private final ArrayDeque<Transaction> pending = new ArrayDeque<>();
+    private volatile long confirmedLsn;
+    private long committed;
+
+    synchronized Transaction begin() {
+        Transaction txn = new Transaction();
+        txn.queued = true;
+        pending.addLast(txn);
+        return txn;
+    }
+
+    /**
+     * A transaction whose events are handed out before its position in the commit order is
+     * known, e.g. a streamed transaction. It joins the queue when it commits, so it never holds
+     * back transactions that commit before it.
+     */
+    Transaction open() {
+        return new Transaction();
+    }
+
+    void commit(Transaction txn, long endLsn) {
+        txn.endLsn = endLsn;
+        synchronized (this) {
+            if (!txn.queued) {
+                txn.queued = true;
+                pending.addLast(txn);
+            }
+            txn.release();
+            committed++;
+            confirmedLsn();
+        }
+    }
+
+    /** Ends an {@link #open()} transaction that rolled back; there is nothing to confirm. */
+    void abort(Transaction txn) {
+        txn.release();
+    }
+
+    /** Advances over completed transactions and returns the highest confirmable end LSN. */
+    synchronized long confirmedLsn() {
+        Transaction head;
+        while ((head = pending.peekFirst()) != null && head.done()) {
+            pending.pollFirst();
+            confirmedLsn = Math.max(confirmedLsn, head.endLsn);
+        }
+        return confirmedLsn;
+    }
+
+    /** Number of transactions committed so far, including those not yet confirmable. */
+    synchronized long committed() {
+        return committed;
+    }
+
+    /** Forgets open transactions, e.g. after the stream restarts and the server resends them. */
+    synchronized void reset() {
+        pending.clear();
+    }
+}
@@ -0,0 +1,150 @@
+package io.mhmtonrn;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Encodes changes in Avro binary encoding, without a container header. Each relation gets a
+ * record schema with one nullable field per column, typed from the column OID; rows are
+ * wrapped in an envelope of {@code op}, {@code before}, {@code after} and the {@code xid} of
+ * streamed changes; unchanged TOAST values are written as null. Commits and aborts use the
+ * fixed {@link #COMMIT_SCHEMA} and {@link #ABORT_SCHEMA}. Consumers look the writer schema up
+ * with {@link #schema(RelationInfo)}.
+ */
+public final class AvroEncoder implements RowEncoder {
+    public static final String COMMIT_SCHEMA = "{\"type\":\"record\",\"name\":\"Commit\",\"namespace\":\"wal4j\","
+            + "\"fields\":[{\"name\":\"lsn\",\"type\":\"long\"},{\"name\":\"endLsn\",\"type\":\"long\"},"
+            + "{\"name\":\"timestamp\",\"type\":\"long\"},{\"name\":\"xid\",\"type\":[\"null\",\"long\"],\"default\":null}]}";
+    /** A rolled back streamed (sub)transaction; LSN and time are 0 before proto_version 4. */
+    public static final String ABORT_SCHEMA = "{\"type\":\"record\",\"name\":\"Abort\",\"namespace\":\"wal4j\","
+            + "\"fields\":[{\"name\":\"xid\",\"type\":\"long\"},{\"name\":\"subXid\",\"type\":\"long\"},"
+            + "{\"name\":\"lsn\",\"type\":\"long\"},{\"name\":\"timestamp\",\"type\":\"long\"}]}";
+
+    private record Plan(ValueKind[] kinds, String schema) {}
+
+    private static final ThreadLocal<BinaryWriter> LOCAL = ThreadLocal.withInitial(BinaryWriter::new);
+    private final SchemaCache<Plan> schemas = new SchemaCache<>(AvroEncoder::plan);
+
+    @Override
+    public String format() { return "avro"; }
+
+    /** The writer schema, as Avro JSON, of the changes encoded for {@code relation}. */
+    public String schema(RelationInfo relation) {
+        return schemas.get(relation).schema().schema();
+    }
+
+    public int schemaVersion(RelationInfo relation) {
+        return schemas.get(relation).version();
+    }
+
+    @Override
+    public byte[] encode(Change change) {
+        return write(change).toByteArray();
+    }
+
+    @Override
+    public void encode(Change change, OutputStream out) throws IOException {
+        write(change).writeTo(out);
+    }
+
+    private BinaryWriter write(Change change) {
+        BinaryWriter out = LOCAL.get().reset();
+        if (change.kind() == Change.Kind.COMMIT) {
+            out.zigzag(change.lsn()).zigzag(change.endLsn()).zigzag(change.timestamp());
+            return xid(out, change);
+        }
+        if (change.kind() == Change.Kind.ABORT) {
+            return out.zigzag(change.xid()).zigzag(change.subXid()).zigzag(change.lsn()).zigzag(change.timestamp());
+        }
+        ValueKind[] kinds = schemas.get(change.relation()).schema().kinds();
+        out.zigzag(change.kind().ordinal());
+        row(out, change.oldRow(), kinds);
+        row(out, change.newRow(), kinds);
+        return xid(out, change);
+    }
+
+    private static BinaryWriter xid(BinaryWriter out, Change change) {
+        return change.streamed() ? out.put(2).zigzag(change.xid()) : out.put(0);
+    }
+
+    private static void row(BinaryWriter out, TupleView row, ValueKind[] kinds) {
+        if (row == null) {
+            out.put(0);
+            return;
+        }
+        out.put(2);  // union branch 1, zigzag encoded
+        ByteBuffer buffer = row.buffer();
+        for (int i = 0; i < row.size(); i++) {
+            if (row.isNull(i)) {
+                out.put(0);
+                continue;
+            }
+            out.put(2);
+            switch (kinds[i]) {
+                case BOOLEAN -> out.put(row.getBoolean(i) ? 1 : 0);
+                case INT, LONG -> out.zigzag(row.getLong(i));
+                case FLOAT -> out.intLE(Float.floatToIntBits((float) row.getDouble(i)));
+                case DOUBLE -> out.longLE(Double.doubleToLongBits(row.getDouble(i)));
+                case BYTES -> {
+                    if (row.isBinary(i)) {
+                        out.zigzag(row.length(i)).put(buffer, row.offset(i), row.length(i));
+                    } else {
+                        out.zigzag(BinaryWriter.hexLength(row.length(i))).putHex(buffer, row.offset(i), row.length(i));
+                    }
+                }
+                case STRING -> {
+                    if (row.textual(i)) {
+                        out.zigzag(row.length(i)).put(buffer, row.offset(i), row.length(i));
+                    } else {
+                        byte[] text = BinaryWriter.utf8(row.getString(i));
+                        out.zigzag(text.length).put(text);
+                    }
+                }
+            }
+        }
+    }
+
+    private static Plan plan(RelationInfo relation) {
+        List<ColumnInfo> columns = relation.columns();
+        ValueKind[] kinds = new ValueKind[columns.size()];
+        StringBuilder fields = new StringBuilder();
+        for (int i = 0; i < kinds.length; i++) {
+            kinds[i] = columns.get(i).codec().kind();
+            if (i > 0) fields.append(',');
+            fields.append("{\"name\":\"").append(name(columns.get(i).name())).append("\",\"type\":[\"null\",\"")
+                    .append(type(kinds[i])).append("\"],\"default\":null}");
+        }
+        String schema = "{\"type\":\"record\",\"name\":\"" + name(relation.name()) + "\",\"namespace\":\""
+                + name(relation.namespace()) + "\",\"fields\":["
+                + "{\"name\":\"op\",\"type\":{\"type\":\"enum\",\"name\":\"Op\",\"symbols\":[\"INSERT\",\"UPDATE\",\"DELETE\"]}},"
+                + "{\"name\":\"before\",\"type\":[\"null\",{\"type\":\"record\",\"name\":\"Row\",\"fields\":[" + fields + "]}],\"default\":null},"
+                + "{\"name\":\"after\",\"type\":[\"null\",\"Row\"],\"default\":null},"
+                + "{\"name\":\"xid\",\"type\":[\"null\",\"long\"],\"default\":null}]}";
+        return new Plan(kinds, schema);
+    }
+
+    private static String type(ValueKind kind) {
+        return switch (kind) {
+            case BOOLEAN -> "boolean";
+            case INT -> "int";
+            case LONG -> "long";
+            case FLOAT -> "float";
+            case DOUBLE -> "double";
+            case BYTES -> "bytes";
+            case STRING -> "string";
+        };
+    }
+
+    /** Avro names allow only letters, digits and underscores, and may not start with a digit. */
+    static String name(String name) {
+        StringBuilder out = new StringBuilder(name.length() + 1);
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            out.append(c < 128 && Character.isLetterOrDigit(c) ? c : '_');
+        }
+        if (out.isEmpty() || Character.isDigit(out.charAt(0))) out.insert(0, '_');
+        return out.toString();
+    }
+}
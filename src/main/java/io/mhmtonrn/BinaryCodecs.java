@@ -0,0 +1,653 @@
+package io.mhmtonrn;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Codecs for values sent in pgoutput binary mode ({@code 'b'} tuple format), which is each
+ * type's binary send form. Values are read in place, in network byte order. {@link #RAW} is
+ * used for types without a binary codec and exposes the bytes as they are, rendered as hex;
+ * the server's text form of such a value cannot be recovered.
+ */
+public final class BinaryCodecs {
+    private BinaryCodecs() {}
+
+    /** Microseconds from the Unix epoch to the PostgreSQL epoch, 2000-01-01. */
+    static final long PG_EPOCH_MICROS = 946_684_800_000_000L;
+    private static final int PG_EPOCH_DAYS = 10_957;
+
+    public static final TypeCodec RAW = new Raw();
+    public static final TypeCodec BOOL = new Bool();
+    public static final TypeCodec INT2 = new Int(2, ValueKind.INT);
+    public static final TypeCodec INT4 = new Int(4, ValueKind.INT);
+    public static final TypeCodec INT8 = new Int(8, ValueKind.LONG);
+    public static final TypeCodec FLOAT4 = new Floating(ValueKind.FLOAT);
+    public static final TypeCodec FLOAT8 = new Floating(ValueKind.DOUBLE);
+    public static final TypeCodec NUMERIC = new Numeric();
+    public static final TypeCodec UUID = new Uuid();
+    public static final TypeCodec DATE = new Date();
+    public static final TypeCodec TIMESTAMP = new Timestamp(false);
+    public static final TypeCodec TIMESTAMPTZ = new Timestamp(true);
+    public static final TypeCodec JSONB = new Jsonb();
+    public static final TypeCodec BYTEA = new Bytea();
+    public static final TypeCodec OID = new Oid();
+    public static final TypeCodec CHAR = new Char();
+    public static final TypeCodec TIME = new Time(false);
+    public static final TypeCodec TIMETZ = new Time(true);
+    public static final TypeCodec INTERVAL = new Interval();
+    public static final TypeCodec INET = new Inet();
+    public static final TypeCodec MONEY = new Money();
+
+    static final class Raw implements TypeCodec {
+        public ValueKind kind() { return ValueKind.BYTES; }
+
+        public Object decode(ByteBuffer buffer, int offset, int length) {
+            byte[] data = new byte[length];
+            buffer.get(offset, data, 0, length);
+            return data;
+        }
+
+        public String toText(ByteBuffer buffer, int offset, int length) {
+            return hex(buffer, offset, length);
+        }
+    }
+
+    static final class Bytea implements TypeCodec {
+        public ValueKind kind() { return ValueKind.BYTES; }
+
+        public Object decode(ByteBuffer buffer, int offset, int length) {
+            return RAW.decode(buffer, offset, length);
+        }
+
+        public String toText(ByteBuffer buffer, int offset, int length) {
+            return hex(buffer, offset, length);
+        }
+    }
+
+    static final class Bool implements TypeCodec {
+        public ValueKind kind() { return ValueKind.BOOLEAN; }
+
+        public Object decode(ByteBuffer buffer, int offset, int length) {
+            return decodeBoolean(buffer, offset, length);
+        }
+
+        public boolean decodeBoolean(ByteBuffer buffer, int offset, int length) {
+            return buffer.get(offset) != 0;
+        }
+
+        public long decodeLong(ByteBuffer buffer, int offset, int length) {
+            return buffer.get(offset) != 0 ? 1 : 0;
+        }
+
+        public String toText(ByteBuffer buffer, int offset, int length) {
+            return buffer.get(offset) != 0 ? "t" : "f";
+        }
+    }
+
+    static final class Int implements TypeCodec {
+        private final int size;
+        private final ValueKind kind;
+
+        Int(int size, ValueKind kind) {
+            this.size = size;
+            this.kind = kind;
+        }
+
+        public ValueKind kind() { return kind; }
+
+        public Object decode(ByteBuffer buffer, int offset, int length) {
+            long value = decodeLong(buffer, offset, length);
+            return kind == ValueKind.INT ? (Object) (int) value : (Object) value;
+        }
+
+        public long decodeLong(ByteBuffer buffer, int offset, int length) {
+            return switch (size) {
+                case 2 -> buffer.getShort(offset);
+                case 4 -> buffer.getInt(offset);
+                default -> buffer.getLong(offset);
+            };
+        }
+
+        public double decodeDouble(ByteBuffer buffer, int offset, int length) {
+            return decodeLong(buffer, offset, length);
+        }
+
+        public BigDecimal decodeDecimal(ByteBuffer buffer, int offset, int length) {
+            return BigDecimal.valueOf(decodeLong(buffer, offset, length));
+        }
+    }
+
+    /**
+     * IEEE 754 in network byte order. Rendered like the server's default output
+     * ({@code extra_float_digits} 1): the shortest digits that round-trip, in exponent form
+     * below 1e-4 and from 1e15, or 1e6 for float4, e.g. {@code 1}, {@code 1e+20}, {@code 1.5e-05}.
+     */
+    static final class Floating implements TypeCodec {
+        private final ValueKind kind;
+
+        Floating(ValueKind kind) { this.kind = kind; }
+
+        public ValueKind kind() { return kind; }
+
+        public Object decode(ByteBuffer buffer, int offset, int length) {
+            return kind == ValueKind.FLOAT ? (Object) buffer.getFloat(offset) : (Object) buffer.getDouble(offset);
+        }
+
+        public double decodeDouble(ByteBuffer buffer, int offset, int length) {
+            return kind == ValueKind.FLOAT ? buffer.getFloat(offset) : buffer.getDouble(offset);
+        }
+
+        public String toText(ByteBuffer buffer, int offset, int length) {
+            if (kind == ValueKind.FLOAT) {
+                float value = buffer.getFloat(offset);
+                return floatText(value, Float.toString(value), 6);
+            }
+            double value = buffer.getDouble(offset);
+            return floatText(value, Double.toString(value), 15);
+        }
+
+        /** {@code shortest} is Java's shortest round-trip form of {@code value}. */
+        private static String floatText(double value, String shortest, int fixedBelow) {
+            if (Double.isNaN(value)) return "NaN";
+            if (Double.isInfinite(value)) return value > 0 ? "Infinity" : "-Infinity";
+            if (value == 0) return 1 / value < 0 ? "-0" : "0";
+            BigDecimal decimal = new BigDecimal(shortest).stripTrailingZeros();
+            int exponent = decimal.precision() - decimal.scale() - 1;
+            if (exponent >= -4 && exponent < fixedBelow) return decimal.toPlainString();
+            String digits = decimal.unscaledValue().abs().toString();
+            StringBuilder text = new StringBuilder(24);
+            if (decimal.signum() < 0) text.append('-');
+            text.append(digits.charAt(0));
+            if (digits.length() > 1) text.append('.').append(digits, 1, digits.length());
+            text.append('e').append(exponent < 0 ? '-' : '+');
+            if (Math.abs(exponent) < 10) text.append('0');
+            return text.append(Math.abs(exponent)).toString();
+        }
+    }
+
+    /**
+     * ndigits, weight, sign and display scale as int16, then base-10000 digits, most significant
+     * first. Special values decode to doubles like the text codec does.
+     */
+    static final class Numeric implements TypeCodec {
+        private static final int NEGATIVE = 0x4000;
+        private static final int NAN = 0xC000;
+        private static final int PINF = 0xD000;
+        private static final int NINF = 0xF000;
+
+        public ValueKind kind() { return ValueKind.STRING; }
+
+        public Object decode(ByteBuffer buffer, int offset, int length) {
+            int sign = buffer.getShort(offset + 4) & 0xFFFF;
+            if (sign == NAN || sign == PINF || sign == NINF) return decodeDouble(buffer, offset, length);
+            return decodeDecimal(buffer, offset, length);
+        }
+
+        public BigDecimal decodeDecimal(ByteBuffer buffer, int offset, int length) {
+            int ndigits = buffer.getShort(offset);
+            int weight = buffer.getShort(offset + 2);
+            int sign = buffer.getShort(offset + 4) & 0xFFFF;
+            int dscale = buffer.getShort(offset + 6);
+            if (sign == NAN || sign == PINF || sign == NINF) {
+                throw new NumberFormatException("Not a finite numeric");
+            }
+            BigDecimal value;
+            if (ndigits <= 4) {
+                long unscaled = 0;
+                for (int i = 0; i < ndigits; i++) unscaled = unscaled * 10000 + buffer.getShort(offset + 8 + 2 * i);
+                value = BigDecimal.valueOf(unscaled);
+            } else {
+                BigInteger unscaled = BigInteger.ZERO;
+                BigInteger base = BigInteger.valueOf(10000);
+                for (int i = 0; i < ndigits; i++) {
+                    unscaled = unscaled.multiply(base).add(BigInteger.valueOf(buffer.getShort(offset + 8 + 2 * i)));
+                }
+                value = new BigDecimal(unscaled);
+            }
+            value = value.scaleByPowerOfTen(4 * (weight - ndigits + 1)).setScale(dscale);
+            return sign == NEGATIVE ? value.negate() : value;
+        }
+
+        public double decodeDouble(ByteBuffer buffer, int offset, int length) {
+            return switch (buffer.getShort(offset + 4) & 0xFFFF) {
+                case NAN -> Double.NaN;
+                case PINF -> Double.POSITIVE_INFINITY;
+                case NINF -> Double.NEGATIVE_INFINITY;
+                default -> decodeDecimal(buffer, offset, length).doubleValue();
+            };
+        }
+
+        public long decodeLong(ByteBuffer buffer, int offset, int length) {
+            return decodeDecimal(buffer, offset, length).longValueExact();
+        }
+
+        public String toText(ByteBuffer buffer, int offset, int length) {
+            return switch (buffer.getShort(offset + 4) & 0xFFFF) {
+                case NAN -> "NaN";
+                case PINF -> "Infinity";
+                case NINF -> "-Infinity";
+                default -> decodeDecimal(buffer, offset, length).toPlainString();
+            };
+        }
+    }
+
+    static final class Uuid implements TypeCodec {
+        public ValueKind kind() { return ValueKind.STRING; }
+
+        public Object decode(ByteBuffer buffer, int offset, int length) {
+            return new java.util.UUID(buffer.getLong(offset), buffer.getLong(offset + 8));
+        }
+    }
+
+    /** Days since 2000-01-01; {@code decodeLong} is the epoch day. */
+    static final class Date implements TypeCodec {
+        public ValueKind kind() { return ValueKind.STRING; }
+
+        public Object decode(ByteBuffer buffer, int offset, int length) {
+            int days = buffer.getInt(offset);
+            if (days == Integer.MAX_VALUE) return LocalDate.MAX;
+            if (days == Integer.MIN_VALUE) return LocalDate.MIN;
+            return LocalDate.ofEpochDay(days + (long) PG_EPOCH_DAYS);
+        }
+
+        public long decodeLong(ByteBuffer buffer, int offset, int length) {
+            return buffer.getInt(offset) + (long) PG_EPOCH_DAYS;
+        }
+
+        public Instant decodeInstant(ByteBuffer buffer, int offset, int length) {
+            return Instant.ofEpochSecond(decodeLong(buffer, offset, length) * 86400);
+        }
+
+        public String toText(ByteBuffer buffer, int offset, int length) {
+            Object date = decode(buffer, offset, length);
+            return date == LocalDate.MAX ? "infinity" : date == LocalDate.MIN ? "-infinity" : date.toString();
+        }
+    }
+
+    /** Microseconds since 2000-01-01 UTC; {@code decodeLong} is microseconds since the epoch. */
+    static final class Timestamp implements TypeCodec {
+        private final boolean zoned;
+
+        Timestamp(boolean zoned) { this.zoned = zoned; }
+
+        public ValueKind kind() { return ValueKind.STRING; }
+
+        public Object decode(ByteBuffer buffer, int offset, int length) {
+            Instant instant = decodeInstant(buffer, offset, length);
+            if (zoned || instant == Instant.MAX || instant == Instant.MIN) return instant;
+            return LocalDateTime.ofEpochSecond(instant.getEpochSecond(), instant.getNano(), ZoneOffset.UTC);
+        }
+
+        public long decodeLong(ByteBuffer buffer, int offset, int length) {
+            return buffer.getLong(offset) + PG_EPOCH_MICROS;
+        }
+
+        public Instant decodeInstant(ByteBuffer buffer, int offset, int length) {
+            long micros = buffer.getLong(offset);
+            if (micros == Long.MAX_VALUE) return Instant.MAX;
+            if (micros == Long.MIN_VALUE) return Instant.MIN;
+            micros += PG_EPOCH_MICROS;
+            return Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000), Math.floorMod(micros, 1_000_000) * 1000L);
+        }
+
+        /**
+         * The server's ISO output. A timestamptz is always rendered in UTC with {@code +00},
+         * whereas the server renders it in its {@code TimeZone}; the two only agree under UTC.
+         */
+        public String toText(ByteBuffer buffer, int offset, int length) {
+            long micros = buffer.getLong(offset);
+            if (micros == Long.MAX_VALUE) return "infinity";
+            if (micros == Long.MIN_VALUE) return "-infinity";
+            micros += PG_EPOCH_MICROS;
+            LocalDateTime time = LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000), 0, ZoneOffset.UTC);
+            StringBuilder text = new StringBuilder(32).append(time.toLocalDate()).append(' ');
+            pad(text, time.getHour()).append(':');
+            pad(text, time.getMinute()).append(':');
+            pad(text, time.getSecond());
+            fraction(text, (int) Math.floorMod(micros, 1_000_000));
+            return zoned ? text.append("+00").toString() : text.toString();
+        }
+    }
+
+    /** Unsigned int32. */
+    static final class Oid implements TypeCodec {
+        public ValueKind kind() { return ValueKind.LONG; }
+
+        public Object decode(ByteBuffer buffer, int offset, int length) {
+            return decodeLong(buffer, offset, length);
+        }
+
+        public long decodeLong(ByteBuffer buffer, int offset, int length) {
+            return buffer.getInt(offset) & 0xFFFF_FFFFL;
+        }
+
+        public String toText(ByteBuffer buffer, int offset, int length) {
+            return Long.toString(decodeLong(buffer, offset, length));
+        }
+    }
+
+    /** The single byte of {@code "char"}; the server prints bytes past ASCII as {@code \ooo}. */
+    static final class Char implements TypeCodec {
+        public ValueKind kind() { return ValueKind.STRING; }
+
+        public Object decode(ByteBuffer buffer, int offset, int length) {
+            return toText(buffer, offset, length);
+        }
+
+        public String toText(ByteBuffer buffer, int offset, int length) {
+            int b = length == 0 ? 0 : buffer.get(offset) & 0xFF;
+            if (b == 0) return "";
+            if (b < 0x80) return String.valueOf((char) b);
+            return "\\" + (char) ('0' + (b >> 6)) + (char) ('0' + (b >> 3 & 7)) + (char) ('0' + (b & 7));
+        }
+    }
+
+    /**
+     * Microseconds since midnight, then for timetz the zone as seconds west of UTC.
+     * {@code decodeLong} is the microseconds; {@code 24:00:00} decodes as {@link LocalTime#MAX}.
+     */
+    static final class Time implements TypeCodec {
+        private final boolean zoned;
+
+        Time(boolean zoned) { this.zoned = zoned; }
+
+        public ValueKind kind() { return ValueKind.STRING; }
+
+        public Object decode(ByteBuffer buffer, int offset, int length) {
+            long micros = buffer.getLong(offset);
+            LocalTime time = micros >= 86_400_000_000L ? LocalTime.MAX : LocalTime.ofNanoOfDay(micros * 1000);
+            return zoned ? OffsetTime.of(time, ZoneOffset.ofTotalSeconds(-buffer.getInt(offset + 8))) : time;
+        }
+
+        public long decodeLong(ByteBuffer buffer, int offset, int length) {
+            return buffer.getLong(offset);
+        }
+
+        /** {@code HH:MM:SS[.ffffff]}, then for timetz the offset as {@code +HH[:MM[:SS]]}. */
+        public String toText(ByteBuffer buffer, int offset, int length) {
+            StringBuilder text = clock(new StringBuilder(24), buffer.getLong(offset));
+            if (!zoned) return text.toString();
+            int west = buffer.getInt(offset + 8);
+            int seconds = Math.abs(west);
+            pad(text.append(west <= 0 ? '+' : '-'), seconds / 3600);
+            if (seconds % 3600 != 0) pad(text.append(':'), seconds / 60 % 60);
+            if (seconds % 60 != 0) pad(text.append(':'), seconds % 60);
+            return text.toString();
+        }
+    }
+
+    /**
+     * Microseconds as int64, then days and months as int32. Months and days do not have a fixed
+     * length, so the value decodes to its text, the server's default {@code postgres} style,
+     * e.g. {@code 1 year 2 mons -3 days +04:05:06.5}.
+     */
+    static final class Interval implements TypeCodec {
+        public ValueKind kind() { return ValueKind.STRING; }
+
+        public Object decode(ByteBuffer buffer, int offset, int length) {
+            return toText(buffer, offset, length);
+        }
+
+        public String toText(ByteBuffer buffer, int offset, int length) {
+            long micros = buffer.getLong(offset);
+            int days = buffer.getInt(offset + 8);
+            int months = buffer.getInt(offset + 12);
+            StringBuilder text = new StringBuilder(32);
+            boolean negative = part(text, months / 12, "year", false);
+            negative = part(text, months % 12, "mon", negative);
+            negative = part(text, days, "day", negative);
+            if (text.isEmpty() || micros != 0) {
+                if (!text.isEmpty()) text.append(' ');
+                if (micros < 0) text.append('-');
+                else if (negative) text.append('+');
+                clock(text, Math.abs(micros));
+            }
+            return text.toString();
+        }
+
+        /** Appends a non-zero part, signed if the previous one was negative; returns whether this one is. */
+        private static boolean part(StringBuilder text, int value, String unit, boolean negative) {
+            if (value == 0) return negative;
+            if (!text.isEmpty()) text.append(' ');
+            if (negative && value > 0) text.append('+');
+            text.append(value).append(' ').append(unit);
+            if (value != 1) text.append('s');
+            return value < 0;
+        }
+    }
+
+    /**
+     * inet and cidr: family (2 for IPv4, 3 for IPv6), prefix bits, a cidr flag, the address
+     * length and the address. Decodes to the server's text, which leaves out the prefix of an
+     * inet host address.
+     */
+    static final class Inet implements TypeCodec {
+        public ValueKind kind() { return ValueKind.STRING; }
+
+        public Object decode(ByteBuffer buffer, int offset, int length) {
+            return toText(buffer, offset, length);
+        }
+
+        public String toText(ByteBuffer buffer, int offset, int length) {
+            boolean v4 = buffer.get(offset) == 2;
+            int bits = buffer.get(offset + 1) & 0xFF;
+            boolean cidr = buffer.get(offset + 2) != 0;
+            int n = buffer.get(offset + 3) & 0xFF;
+            byte[] address = new byte[v4 ? 4 : 16];
+            buffer.get(offset + 4, address, 0, Math.min(n, address.length));
+            StringBuilder text = new StringBuilder(48);
+            if (v4) {
+                for (int i = 0; i < 4; i++) (i > 0 ? text.append('.') : text).append(address[i] & 0xFF);
+            } else {
+                ipv6(text, address);
+            }
+            if (cidr || bits != address.length * 8) text.append('/').append(bits);
+            return text.toString();
+        }
+
+        /** Hex groups with the longest run of at least two zero groups compressed, and a trailing IPv4 for mapped addresses. */
+        private static void ipv6(StringBuilder text, byte[] address) {
+            int[] words = new int[8];
+            for (int i = 0; i < 8; i++) words[i] = (address[2 * i] & 0xFF) << 8 | address[2 * i + 1] & 0xFF;
+            int best = -1, bestLength = 0;
+            for (int i = 0; i < 8; ) {
+                int end = i;
+                while (end < 8 && words[end] == 0) end++;
+                if (end - i > bestLength) {
+                    best = i;
+                    bestLength = end - i;
+                }
+                i = Math.max(end, i + 1);
+            }
+            if (bestLength < 2) best = -1;
+            for (int i = 0; i < 8; i++) {
+                if (i == best) {
+                    text.append(':');
+                    i += bestLength - 1;
+                    if (i == 7) text.append(':');
+                    continue;
+                }
+                if (i > 0) text.append(':');
+                if (i == 6 && best == 0 && (bestLength == 6 || bestLength == 5 && words[5] == 0xFFFF)) {
+                    text.append(address[12] & 0xFF).append('.').append(address[13] & 0xFF).append('.')
+                            .append(address[14] & 0xFF).append('.').append(address[15] & 0xFF);
+                    return;
+                }
+                text.append(Integer.toHexString(words[i]));
+            }
+        }
+    }
+
+    /**
+     * int64 in the smallest unit of the currency. Decodes with two fraction digits and renders
+     * as a plain number, e.g. {@code -1234.50}, whereas the server formats it per
+     * {@code lc_monetary}, e.g. {@code -$1,234.50}.
+     */
+    static final class Money implements TypeCodec {
+        public ValueKind kind() { return ValueKind.STRING; }
+
+        public Object decode(ByteBuffer buffer, int offset, int length) {
+            return decodeDecimal(buffer, offset, length);
+        }
+
+        public BigDecimal decodeDecimal(ByteBuffer buffer, int offset, int length) {
+            return BigDecimal.valueOf(buffer.getLong(offset), 2);
+        }
+
+        public double decodeDouble(ByteBuffer buffer, int offset, int length) {
+            return decodeDecimal(buffer, offset, length).doubleValue();
+        }
+
+        public String toText(ByteBuffer buffer, int offset, int length) {
+            return decodeDecimal(buffer, offset, length).toPlainString();
+        }
+    }
+
+    /** A version byte (1) followed by the JSON text. */
+    static final class Jsonb implements TypeCodec {
+        public ValueKind kind() { return ValueKind.STRING; }
+
+        public Object decode(ByteBuffer buffer, int offset, int length) {
+            return TypeCodec.text(buffer, offset + 1, length - 1);
+        }
+
+        public String toText(ByteBuffer buffer, int offset, int length) {
+            return TypeCodec.text(buffer, offset + 1, length - 1);
+        }
+    }
+
+    /**
+     * ndim, has-null flag and element OID as int32, a size and lower bound per dimension, then
+     * each element as a length-prefixed binary value (-1 for null), in row-major order.
+     */
+    static final class Array implements TypeCodec {
+        private final TypeCodec element;
+
+        Array(TypeCodec element) { this.element = element; }
+
+        public ValueKind kind() { return ValueKind.STRING; }
+
+        public Object decode(ByteBuffer buffer, int offset, int length) {
+            int ndim = buffer.getInt(offset);
+            if (ndim == 0) return new ArrayList<>();
+            int[] dims = new int[ndim];
+            for (int d = 0; d < ndim; d++) dims[d] = buffer.getInt(offset + 12 + 8 * d);
+            int[] position = {offset + 12 + 8 * ndim};
+            return list(buffer, dims, 0, position);
+        }
+
+        private List<Object> list(ByteBuffer buffer, int[] dims, int dim, int[] position) {
+            List<Object> values = new ArrayList<>(dims[dim]);
+            for (int i = 0; i < dims[dim]; i++) {
+                if (dim + 1 < dims.length) {
+                    values.add(list(buffer, dims, dim + 1, position));
+                    continue;
+                }
+                int len = buffer.getInt(position[0]);
+                position[0] += 4;
+                if (len < 0) {
+                    values.add(null);
+                } else {
+                    values.add(element.decode(buffer, position[0], len));
+                    position[0] += len;
+                }
+            }
+            return values;
+        }
+
+        /** The array literal in the server's text form, e.g. {@code {1,NULL,"a b"}}. */
+        public String toText(ByteBuffer buffer, int offset, int length) {
+            int ndim = buffer.getInt(offset);
+            if (ndim == 0) return "{}";
+            int[] dims = new int[ndim];
+            for (int d = 0; d < ndim; d++) dims[d] = buffer.getInt(offset + 12 + 8 * d);
+            StringBuilder text = new StringBuilder();
+            text(buffer, dims, 0, new int[]{offset + 12 + 8 * ndim}, text);
+            return text.toString();
+        }
+
+        private void text(ByteBuffer buffer, int[] dims, int dim, int[] position, StringBuilder out) {
+            out.append('{');
+            for (int i = 0; i < dims[dim]; i++) {
+                if (i > 0) out.append(',');
+                if (dim + 1 < dims.length) {
+                    text(buffer, dims, dim + 1, position, out);
+                    continue;
+                }
+                int len = buffer.getInt(position[0]);
+                position[0] += 4;
+                if (len < 0) {
+                    out.append("NULL");
+                    continue;
+                }
+                quote(element.toText(buffer, position[0], len), out);
+                position[0] += len;
+            }
+            out.append('}');
+        }
+
+        private static void quote(String value, StringBuilder out) {
+            boolean plain = !value.isEmpty() && !value.equalsIgnoreCase("NULL");
+            for (int i = 0; plain && i < value.length(); i++) {
+                char c = value.charAt(i);
+                plain = c != ',' && c != '{' && c != '}' && c != '"' && c != '\\' && !Character.isWhitespace(c);
+            }
+            if (plain) {
+                out.append(value);
+                return;
+            }
+            out.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"' || c == '\\') out.append('\\');
+                out.append(c);
+            }
+            out.append('"');
+        }
+    }
+
+    /** {@code HH:MM:SS} and the fraction, like the server prints times; hours may pass 24. */
+    private static StringBuilder clock(StringBuilder text, long micros) {
+        long seconds = micros / 1_000_000;
+        if (seconds < 36_000) text.append('0');
+        text.append(seconds / 3600).append(':');
+        pad(text, (int) (seconds / 60 % 60)).append(':');
+        pad(text, (int) (seconds % 60));
+        return fraction(text, (int) (micros % 1_000_000));
+    }
+
+    /** {@code .ffffff} without trailing zeros, or nothing for whole seconds. */
+    private static StringBuilder fraction(StringBuilder text, int micros) {
+        if (micros == 0) return text;
+        String digits = Integer.toString(1_000_000 + micros).substring(1);
+        int end = digits.length();
+        while (digits.charAt(end - 1) == '0') end--;
+        return text.append('.').append(digits, 0, end);
+    }
+
+    private static StringBuilder pad(StringBuilder text, int value) {
+        return text.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+
+    private static String hex(ByteBuffer buffer, int offset, int length) {
+        byte[] text = new byte[2 + 2 * length];
+        text[0] = '\\';
+        text[1] = 'x';
+        for (int i = 0; i < length; i++) {
+            int b = buffer.get(offset + i) & 0xFF;
+            text[2 + 2 * i] = (byte) Character.forDigit(b >> 4, 16);
+            text[3 + 2 * i] = (byte) Character.forDigit(b & 0xF, 16);
+        }
+        return new String(text, StandardCharsets.US_ASCII);
+    }
+}
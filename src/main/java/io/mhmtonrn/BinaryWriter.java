@@ -0,0 +1,119 @@
+package io.mhmtonrn;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/** Growable byte buffer with the primitives the binary encoders share. */
+final class BinaryWriter {
+    private byte[] buf = new byte[1024];
+    private int len;
+
+    BinaryWriter reset() {
+        len = 0;
+        return this;
+    }
+
+    int length() { return len; }
+
+    BinaryWriter put(int b) {
+        ensure(1);
+        buf[len++] = (byte) b;
+        return this;
+    }
+
+    BinaryWriter put(byte[] data) {
+        ensure(data.length);
+        System.arraycopy(data, 0, buf, len, data.length);
+        len += data.length;
+        return this;
+    }
+
+    /** Copies {@code length} bytes of {@code source} from an absolute offset. */
+    BinaryWriter put(ByteBuffer source, int offset, int length) {
+        ensure(length);
+        source.get(offset, buf, len, length);
+        len += length;
+        return this;
+    }
+
+    /** Decodes a bytea value in PostgreSQL's text hex form ({@code \x0a1b...}). */
+    BinaryWriter putHex(ByteBuffer source, int offset, int length) {
+        int n = (length - 2) / 2;
+        ensure(n);
+        for (int p = offset + 2, end = p + n * 2; p < end; p += 2) {
+            buf[len++] = (byte) (Character.digit(source.get(p), 16) << 4 | Character.digit(source.get(p + 1), 16));
+        }
+        return this;
+    }
+
+    static int hexLength(int textLength) {
+        return (textLength - 2) / 2;
+    }
+
+    BinaryWriter varint(long value) {
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            buf[len++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buf[len++] = (byte) value;
+        return this;
+    }
+
+    BinaryWriter zigzag(long value) {
+        return varint((value << 1) ^ (value >> 63));
+    }
+
+    static int varintSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    BinaryWriter intLE(int value) {
+        ensure(4);
+        for (int i = 0; i < 4; i++) buf[len++] = (byte) (value >>> (i * 8));
+        return this;
+    }
+
+    BinaryWriter longLE(long value) {
+        ensure(8);
+        for (int i = 0; i < 8; i++) buf[len++] = (byte) (value >>> (i * 8));
+        return this;
+    }
+
+    BinaryWriter longBE(long value, int bytes) {
+        ensure(bytes);
+        for (int i = bytes - 1; i >= 0; i--) buf[len++] = (byte) (value >>> (i * 8));
+        return this;
+    }
+
+    /** Inserts a varint at {@code at}, shifting everything written after it. */
+    void insertVarint(int at, long value) {
+        int size = varintSize(value);
+        ensure(size);
+        System.arraycopy(buf, at, buf, at + size, len - at);
+        int end = len + size;
+        len = at;
+        varint(value);
+        len = end;
+    }
+
+    static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void ensure(int extra) {
+        if (len + extra > buf.length) buf = Arrays.copyOf(buf, Math.max(buf.length << 1, len + extra));
+    }
+
+    byte[] toByteArray() { return Arrays.copyOf(buf, len); }
+
+    void writeTo(OutputStream out) throws IOException { out.write(buf, 0, len); }
+}
@@ -0,0 +1,152 @@
+package io.mhmtonrn;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Encodes changes as CBOR maps with the same shape as the JSON output, but with typed values:
+ * integers, floats and booleans are encoded natively and bytea as a byte string. CBOR carries
+ * its own field names, so the per-relation schema is just the column types and the encoded
+ * map keys.
+ */
+public final class CborEncoder implements RowEncoder {
+    private static final int UNSIGNED = 0;
+    private static final int NEGATIVE = 1 << 5;
+    private static final int BYTES = 2 << 5;
+    private static final int TEXT = 3 << 5;
+    private static final int MAP = 5 << 5;
+    private static final int FALSE = 0xf4;
+    private static final int TRUE = 0xf5;
+    private static final int NULL = 0xf6;
+    private static final int FLOAT32 = 0xfa;
+    private static final int FLOAT64 = 0xfb;
+
+    private record Plan(ValueKind[] kinds, byte[][] keys, byte[] table) {}
+
+    private static final byte[] TYPE = text("type");
+    private static final byte[] TABLE = text("table");
+    private static final byte[] DATA = text("data");
+    private static final byte[] OLD = text("old");
+    private static final byte[] NEW = text("new");
+    private static final byte[] LSN = text("lsn");
+    private static final byte[] TIMESTAMP = text("timestamp");
+    private static final byte[] XID = text("xid");
+    private static final byte[] SUBXID = text("subxid");
+    private static final byte[][] TYPES = { text("insert"), text("update"), text("delete"), text("commit"), text("abort") };
+
+    private static final ThreadLocal<BinaryWriter> LOCAL = ThreadLocal.withInitial(BinaryWriter::new);
+    private final SchemaCache<Plan> schemas = new SchemaCache<>(CborEncoder::plan);
+
+    @Override
+    public String format() { return "cbor"; }
+
+    @Override
+    public byte[] encode(Change change) {
+        return write(change).toByteArray();
+    }
+
+    @Override
+    public void encode(Change change, OutputStream out) throws IOException {
+        write(change).writeTo(out);
+    }
+
+    private BinaryWriter write(Change change) {
+        BinaryWriter out = LOCAL.get().reset();
+        byte[] type = TYPES[change.kind().ordinal()];
+        switch (change.kind()) {
+            case COMMIT -> {
+                head(out, MAP, change.streamed() ? 4 : 3).put(TYPE).put(type);
+                head(out.put(LSN), UNSIGNED, change.lsn());
+                integer(out.put(TIMESTAMP), change.timestamp());
+                if (change.streamed()) head(out.put(XID), UNSIGNED, change.xid());
+            }
+            case ABORT -> {
+                head(out, MAP, 5).put(TYPE).put(type);
+                head(out.put(XID), UNSIGNED, change.xid());
+                head(out.put(SUBXID), UNSIGNED, change.subXid());
+                head(out.put(LSN), UNSIGNED, change.lsn());
+                integer(out.put(TIMESTAMP), change.timestamp());
+            }
+            case INSERT, UPDATE, DELETE -> {
+                Plan plan = schemas.get(change.relation()).schema();
+                int entries = (change.kind() == Change.Kind.UPDATE ? 4 : 3) + (change.streamed() ? 1 : 0);
+                head(out, MAP, entries).put(TYPE).put(type).put(TABLE).put(plan.table());
+                if (change.streamed()) head(out.put(XID), UNSIGNED, change.xid());
+                switch (change.kind()) {
+                    case INSERT -> row(out.put(DATA), change.newRow(), plan);
+                    case UPDATE -> row(row(out.put(OLD), change.oldRow(), plan).put(NEW), change.newRow(), plan);
+                    default -> row(out.put(OLD), change.oldRow(), plan);
+                }
+            }
+        }
+        return out;
+    }
+
+    private static BinaryWriter row(BinaryWriter out, TupleView row, Plan plan) {
+        if (row == null) return out.put(NULL);
+        head(out, MAP, row.size() - row.unchangedCount());
+        ByteBuffer buffer = row.buffer();
+        for (int i = 0; i < row.size(); i++) {
+            if (row.isUnchanged(i)) continue;
+            out.put(plan.keys()[i]);
+            if (row.isNull(i)) {
+                out.put(NULL);
+                continue;
+            }
+            switch (plan.kinds()[i]) {
+                case BOOLEAN -> out.put(row.getBoolean(i) ? TRUE : FALSE);
+                case INT, LONG -> integer(out, row.getLong(i));
+                case FLOAT -> out.put(FLOAT32).longBE(Float.floatToIntBits((float) row.getDouble(i)), 4);
+                case DOUBLE -> out.put(FLOAT64).longBE(Double.doubleToLongBits(row.getDouble(i)), 8);
+                case BYTES -> {
+                    if (row.isBinary(i)) {
+                        head(out, BYTES, row.length(i)).put(buffer, row.offset(i), row.length(i));
+                    } else {
+                        head(out, BYTES, BinaryWriter.hexLength(row.length(i))).putHex(buffer, row.offset(i), row.length(i));
+                    }
+                }
+                case STRING -> {
+                    if (row.textual(i)) {
+                        head(out, TEXT, row.length(i)).put(buffer, row.offset(i), row.length(i));
+                    } else {
+                        byte[] text = BinaryWriter.utf8(row.getString(i));
+                        head(out, TEXT, text.length).put(text);
+                    }
+                }
+            }
+        }
+        return out;
+    }
+
+    private static void integer(BinaryWriter out, long value) {
+        if (value < 0) head(out, NEGATIVE, ~value); else head(out, UNSIGNED, value);
+    }
+
+    /** A major type with its argument in the shortest form; {@code value} is unsigned. */
+    private static BinaryWriter head(BinaryWriter out, int major, long value) {
+        if (value >= 0 && value < 24) return out.put(major | (int) value);
+        if (value >= 0 && value < 1L << 8) return out.put(major | 24).put((int) value);
+        if (value >= 0 && value < 1L << 16) return out.put(major | 25).longBE(value, 2);
+        if (value >= 0 && value < 1L << 32) return out.put(major | 26).longBE(value, 4);
+        return out.put(major | 27).longBE(value, 8);
+    }
+
+    private static byte[] text(String value) {
+        byte[] data = BinaryWriter.utf8(value);
+        BinaryWriter out = head(new BinaryWriter(), TEXT, data.length).put(data);
+        return out.toByteArray();
+    }
+
+    private static Plan plan(RelationInfo relation) {
+        List<ColumnInfo> columns = relation.columns();
+        ValueKind[] kinds = new ValueKind[columns.size()];
+        byte[][] keys = new byte[kinds.length][];
+        for (int i = 0; i < kinds.length; i++) {
+            kinds[i] = columns.get(i).codec().kind();
+            keys[i] = text(columns.get(i).name());
+        }
+        return new Plan(kinds, keys, text(relation.name()));
+    }
+}
@@ -0,0 +1,195 @@
+package io.mhmtonrn;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A decoded change. Handlers decode into a reused instance whose tuples are flyweight views
+ * over the replication buffer, so a change is only valid while it is being dispatched.
+ * Use {@link #copy()} to keep it beyond that.
+ */
+public final class Change {
+    /** {@code ABORT} only occurs for streamed transactions, see {@link #streamed()}. */
+    public enum Kind { INSERT, UPDATE, DELETE, COMMIT, ABORT }
+
+    private Kind kind;
+    private RelationInfo relation;
+    private final TupleView oldRow = new TupleView();
+    private final TupleView newRow = new TupleView();
+    private boolean hasOld;
+    private boolean hasNew;
+    private long lsn;
+    private long endLsn;
+    private long timestamp;
+    private boolean streamed;
+    private boolean heartbeat;
+    private int xid;
+    private int subXid;
+
+    Change row(Kind kind, RelationInfo relation) {
+        this.kind = kind;
+        this.relation = relation;
+        this.hasOld = false;
+        this.hasNew = false;
+        this.timestamp = 0;
+        this.streamed = false;
+        this.heartbeat = false;
+        return this;
+    }
+
+    /**
+     * The commit time of the row's transaction, announced by its Begin message. Rows of streamed
+     * transactions keep 0, their commit time is not known yet.
+     */
+    Change committedAt(long timestamp) {
+        this.timestamp = timestamp;
+        return this;
+    }
+
+    Change commit(long lsn, long endLsn, long timestamp) {
+        this.kind = Kind.COMMIT;
+        this.relation = null;
+        this.hasOld = false;
+        this.hasNew = false;
+        this.lsn = lsn;
+        this.endLsn = endLsn;
+        this.timestamp = timestamp;
+        this.streamed = false;
+        this.heartbeat = false;
+        return this;
+    }
+
+    /**
+     * A heartbeat message at {@code lsn}, outside of any transaction. It is an empty commit to
+     * the listener, which confirms it in order and does not deliver it.
+     */
+    Change heartbeat(long lsn) {
+        commit(lsn, lsn, 0);
+        this.heartbeat = true;
+        return this;
+    }
+
+    Change abort(int xid, int subXid) {
+        this.kind = Kind.ABORT;
+        this.heartbeat = false;
+        this.relation = null;
+        this.hasOld = false;
+        this.hasNew = false;
+        this.lsn = 0;
+        this.timestamp = 0;
+        return streamed(xid, subXid);
+    }
+
+    /** Sets the LSN and time of an abort, sent with proto_version 4. */
+    Change position(long lsn, long timestamp) {
+        this.lsn = lsn;
+        this.timestamp = timestamp;
+        return this;
+    }
+
+    /** Sets the xid of a regular transaction's row or commit, announced by its Begin message. */
+    Change transaction(int xid) {
+        this.xid = xid;
+        this.subXid = xid;
+        return this;
+    }
+
+    /** Marks this change as part of a transaction streamed before it committed. */
+    Change streamed(int xid, int subXid) {
+        this.streamed = true;
+        this.xid = xid;
+        this.subXid = subXid;
+        return this;
+    }
+
+    TupleView wrapOld(ByteBuffer buffer) {
+        oldRow.wrap(buffer, relation.columns());
+        hasOld = true;
+        return oldRow;
+    }
+
+    TupleView wrapNew(ByteBuffer buffer) {
+        newRow.wrap(buffer, relation.columns());
+        hasNew = true;
+        return newRow;
+    }
+
+    public Kind kind() { return kind; }
+
+    public RelationInfo relation() { return relation; }
+
+    public String table() { return relation == null ? null : relation.name(); }
+
+    /** The old row image, or {@code null} if the message carried none. */
+    public TupleView oldRow() { return hasOld ? oldRow : null; }
+
+    /** The new row image, or {@code null} for deletes and commits. */
+    public TupleView newRow() { return hasNew ? newRow : null; }
+
+    public long lsn() { return lsn; }
+
+    /** End LSN of the committed transaction; the position confirmed to the server. */
+    public long endLsn() { return endLsn; }
+
+    /**
+     * Commit time in microseconds since 2000-01-01 UTC: of the transaction a commit or a regular
+     * row belongs to, or of an abort. 0 for streamed rows and when unknown.
+     */
+    public long timestamp() { return timestamp; }
+
+    /**
+     * Whether this change belongs to a large transaction that the server streamed while it was
+     * still in progress (proto_version 2, {@code streaming=on}).
+     */
+    public boolean streamed() { return streamed; }
+
+    boolean isHeartbeat() { return heartbeat; }
+
+    /** Top-level transaction id of a row change or of a commit, unsigned. */
+    public long xid() { return Integer.toUnsignedLong(xid); }
+
+    /**
+     * The (sub)transaction that made a streamed row change, or the one rolled back by an
+     * {@code ABORT}. Equal to {@link #xid()} unless a subtransaction is involved.
+     */
+    public long subXid() { return Integer.toUnsignedLong(subXid); }
+
+    /**
+     * Hash of the relation and the replica identity key of the row, used to keep changes to
+     * the same row in order. Relations without key columns hash by relation only.
+     */
+    public int partitionHash() {
+        if (relation == null) return 0;
+        TupleView row = hasNew ? newRow : oldRow;
+        int h = relation.id();
+        for (int i = 0; i < row.size(); i++) {
+            if (row.column(i).key()) h = 31 * h + row.hash(i);
+        }
+        return h;
+    }
+
+    public Change copy() {
+        Change copy = new Change();
+        copy.copyFrom(this);
+        return copy;
+    }
+
+    void copyFrom(Change other) {
+        this.kind = other.kind;
+        this.relation = other.relation;
+        this.hasOld = other.hasOld;
+        this.hasNew = other.hasNew;
+        this.lsn = other.lsn;
+        this.endLsn = other.endLsn;
+        this.timestamp = other.timestamp;
+        this.streamed = other.streamed;
+        this.heartbeat = other.heartbeat;
+        this.xid = other.xid;
+        this.subXid = other.subXid;
+        if (other.hasOld) oldRow.copyFrom(other.oldRow);
+        if (other.hasNew) newRow.copyFrom(other.newRow);
+    }
+
+    public String toJson() {
+        return JsonWriter.local().write(this).toString();
+    }
+}
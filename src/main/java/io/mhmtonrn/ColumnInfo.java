@@ -1,3 +1,16 @@
 package io.mhmtonrn;
 
-record ColumnInfo(String name, int typeOID) {}
\ No newline at end of file
+/**
+ * @param key whether the column is part of the relation's replica identity key
+ * @param codec decoder for the column's text values, resolved once from {@code typeOID}
+ * @param binaryCodec decoder for values sent in binary mode
+ */
+public record ColumnInfo(String name, int typeOID, boolean key, TypeCodec codec, TypeCodec binaryCodec) {
+    public ColumnInfo(String name, int typeOID, boolean key) {
+        this(name, typeOID, key, TypeCodecs.forOid(typeOID), TypeCodecs.binaryForOid(typeOID));
+    }
+
+    public ColumnInfo(String name, int typeOID) {
+        this(name, typeOID, false);
+    }
+}
@@ -0,0 +1,51 @@
+package io.mhmtonrn;
+
+/**
+ * Hands decoded changes to the application's listeners. An implementation must call
+ * {@link AckTracker.Transaction#release()} once the listeners are done with the change;
+ * until then the transaction is not acknowledged to the server.
+ */
+interface EventDelivery {
+
+    void deliver(Change change, AckTracker.Transaction transaction);
+
+    /**
+     * Delivers the rows held for a streamed transaction, then its commit, and closes
+     * {@code rows}. A delivery that collects each transaction itself takes the buffer as it is.
+     */
+    default void deliverTransaction(TransactionBuffer rows, Change commit, AckTracker.Transaction transaction) {
+        try {
+            rows.replay(row -> {
+                transaction.retain();
+                deliver(row, transaction);
+            });
+        } finally {
+            rows.close();
+        }
+        transaction.retain();
+        deliver(commit, transaction);
+    }
+
+    /** Returns and clears a listener failure raised off the calling thread, if any. */
+    default Exception takeFailure() {
+        return null;
+    }
+
+    /** Waits until every delivered change has been released. */
+    default void awaitIdle() {}
+
+    /** Publishes changes held back by a time limit that has passed; called between reads. */
+    default void maybeFlush() {}
+
+    /** Publishes every change held back, whatever its age; called before the replication thread blocks. */
+    default void flush() {}
+
+    /** Forgets changes held for a transaction that was cut off by a restart. */
+    default void reset() {}
+
+    /** Stops the threads of the delivery, if it has any; changes still queued are dropped. */
+    default void close() {}
+
+    /** Records the lag of each change in {@code sink} once its listeners are done; before the first delivery. */
+    default void trackLag(ReplicationLag.Sink sink) {}
+}
@@ -0,0 +1,81 @@
+package io.mhmtonrn;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Writes to the database now and then so the slot keeps moving while the published tables are
+ * quiet: without changes to confirm, the slot's position stays put and holds back the WAL the
+ * rest of the database writes. Either emits a non-transactional logical decoding message,
+ * which the listener confirms without delivering it, or upserts into a heartbeat table, e.g.
+ * {@code CREATE TABLE wal4j_heartbeat (id int PRIMARY KEY, ts timestamptz)}, that must be in
+ * the publication; its rows are delivered like any other.
+ */
+public final class Heartbeat {
+    /** Prefix of the heartbeat messages. */
+    static final String PREFIX = "wal4j.heartbeat";
+
+    /** An unquoted table name, optionally schema-qualified; it goes into the SQL as it is. */
+    private static final Pattern TABLE = Pattern.compile("[A-Za-z_][A-Za-z0-9_$]*(\\.[A-Za-z_][A-Za-z0-9_$]*)?");
+
+    private final JdbcRelationCatalog.ConnectionSource source;
+    private final String sql;
+    private ScheduledExecutorService executor;
+    private Connection connection;
+
+    /** Beats into {@code table}, a plain and optionally schema-qualified name, or emits messages when it is empty. */
+    Heartbeat(JdbcRelationCatalog.ConnectionSource source, String table) {
+        if (!table.isEmpty() && !TABLE.matcher(table).matches()) {
+            throw new IllegalArgumentException("Not a plain table name: " + table);
+        }
+        this.source = source;
+        this.sql = table.isEmpty()
+                ? "SELECT pg_logical_emit_message(false, '" + PREFIX + "', now()::text)"
+                : "INSERT INTO " + table + " (id, ts) VALUES (1, now()) ON CONFLICT (id) DO UPDATE SET ts = excluded.ts";
+    }
+
+    void start(long intervalMillis) {
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "wal4j-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::beat, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /** Stops beating and closes the connection. */
+    void stop() {
+        if (executor != null) executor.shutdownNow();
+        synchronized (this) {
+            disconnect();
+        }
+    }
+
+    synchronized void beat() {
+        try {
+            if (connection == null) connection = source.open();
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(sql);
+            }
+        } catch (SQLException e) {
+            // the next beat reconnects
+            System.err.println("Heartbeat failed: " + e);
+            disconnect();
+        }
+    }
+
+    private void disconnect() {
+        if (connection == null) return;
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        connection = null;
+    }
+}
@@ -0,0 +1,97 @@
+package io.mhmtonrn;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * What the replication thread does when {@code readPending()} has nothing for it.
+ * {@link #idle()} is called once per empty poll, {@link #reset()} as soon as work arrives.
+ */
+public interface IdleStrategy {
+    void idle();
+
+    void reset();
+
+    /**
+     * Builds the strategy named by {@code replication.poll.strategy}. {@code blocking} is not an
+     * idle strategy; the listener switches to {@code read()} for it and never idles.
+     */
+    static IdleStrategy of(String name, int spins, int yields, long minParkNanos, long maxParkNanos) {
+        return switch (name) {
+            case "busy-spin" -> new BusySpin();
+            case "spin-yield" -> new SpinThenYield(spins);
+            case "backoff", "blocking" -> new Backoff(spins, yields, minParkNanos, maxParkNanos);
+            case "sleep" -> new Sleep(Sleep.NANOS);
+            default -> throw new IllegalArgumentException("Unknown poll strategy: " + name);
+        };
+    }
+
+    final class BusySpin implements IdleStrategy {
+        public void idle() { Thread.onSpinWait(); }
+        public void reset() {}
+    }
+
+    final class SpinThenYield implements IdleStrategy {
+        private final int spins;
+        private int count;
+
+        SpinThenYield(int spins) { this.spins = spins; }
+
+        public void idle() {
+            if (count++ < spins) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+
+        public void reset() { count = 0; }
+    }
+
+    /** Spins, then yields, then parks for an exponentially growing period up to the maximum. */
+    final class Backoff implements IdleStrategy {
+        private final int spins;
+        private final int yields;
+        private final long minParkNanos;
+        private final long maxParkNanos;
+        private int count;
+        private long parkNanos;
+
+        Backoff(int spins, int yields, long minParkNanos, long maxParkNanos) {
+            this.spins = spins;
+            this.yields = yields;
+            this.minParkNanos = minParkNanos;
+            this.maxParkNanos = maxParkNanos;
+            this.parkNanos = minParkNanos;
+        }
+
+        public void idle() {
+            if (count < spins) {
+                count++;
+                Thread.onSpinWait();
+            } else if (count < spins + yields) {
+                count++;
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(parkNanos);
+                parkNanos = Math.min(parkNanos << 1, maxParkNanos);
+            }
+        }
+
+        public void reset() {
+            count = 0;
+            parkNanos = minParkNanos;
+        }
+    }
+
+    /** The original fixed sleep; parks for 10 ms every time, whatever the park limits. */
+    final class Sleep implements IdleStrategy {
+        static final long NANOS = 10_000_000;
+
+        private final long nanos;
+
+        Sleep(long nanos) { this.nanos = nanos; }
+
+        public void idle() { LockSupport.parkNanos(nanos); }
+        public void reset() {}
+    }
+}
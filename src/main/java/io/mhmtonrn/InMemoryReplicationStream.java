@@ -0,0 +1,89 @@
+package io.mhmtonrn;
+
+import org.postgresql.replication.LogSequenceNumber;
+import org.postgresql.replication.PGReplicationStream;
+
+import java.nio.ByteBuffer;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A {@link PGReplicationStream} that replays pgoutput messages from memory instead of a
+ * replication slot, optionally paced to a fixed number of messages per second.
+ * Each message advances the receive LSN by its length, as if it had been read from WAL.
+ */
+public class InMemoryReplicationStream implements PGReplicationStream {
+    private final Iterator<byte[]> messages;
+    private final long nanosPerMessage;
+    private final long startNanos = System.nanoTime();
+    private long sent;
+    private long receiveLsn;
+    private volatile LogSequenceNumber flushedLsn = LogSequenceNumber.INVALID_LSN;
+    private volatile LogSequenceNumber appliedLsn = LogSequenceNumber.INVALID_LSN;
+    private volatile boolean closed;
+
+    /** @param messagesPerSecond pacing rate, or 0 to deliver as fast as the consumer reads */
+    public InMemoryReplicationStream(Iterator<byte[]> messages, long messagesPerSecond) {
+        this.messages = messages;
+        this.nanosPerMessage = messagesPerSecond > 0 ? 1_000_000_000L / messagesPerSecond : 0;
+    }
+
+    public static InMemoryReplicationStream of(List<byte[]> messages) {
+        return new InMemoryReplicationStream(messages.iterator(), 0);
+    }
+
+    @Override
+    public ByteBuffer read() throws SQLException {
+        while (true) {
+            ByteBuffer buffer = readPending();
+            if (buffer != null) return buffer;
+            if (!messages.hasNext()) {
+                // an exhausted source behaves like an idle slot
+                LockSupport.parkNanos(1_000_000);
+            } else {
+                LockSupport.parkNanos(Math.max(dueNanos() - System.nanoTime(), 1_000));
+            }
+        }
+    }
+
+    @Override
+    public ByteBuffer readPending() throws SQLException {
+        if (closed) throw new SQLException("Replication stream is closed");
+        if (nanosPerMessage > 0 && System.nanoTime() < dueNanos()) return null;
+        if (!messages.hasNext()) return null;
+        byte[] message = messages.next();
+        sent++;
+        receiveLsn += message.length;
+        return ByteBuffer.wrap(message);
+    }
+
+    private long dueNanos() {
+        return startNanos + sent * nanosPerMessage;
+    }
+
+    @Override
+    public LogSequenceNumber getLastReceiveLSN() { return LogSequenceNumber.valueOf(receiveLsn); }
+
+    @Override
+    public LogSequenceNumber getLastFlushedLSN() { return flushedLsn; }
+
+    @Override
+    public LogSequenceNumber getLastAppliedLSN() { return appliedLsn; }
+
+    @Override
+    public void setFlushedLSN(LogSequenceNumber lsn) { this.flushedLsn = lsn; }
+
+    @Override
+    public void setAppliedLSN(LogSequenceNumber lsn) { this.appliedLsn = lsn; }
+
+    @Override
+    public void forceUpdateStatus() {}
+
+    @Override
+    public boolean isClosed() { return closed; }
+
+    @Override
+    public void close() { closed = true; }
+}
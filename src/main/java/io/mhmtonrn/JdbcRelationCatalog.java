@@ -0,0 +1,86 @@
+package io.mhmtonrn;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads relation definitions from pg_class and pg_attribute over a regular connection,
+ * opened on first use and reopened after a failure. Columns are listed the way pgoutput
+ * sends them: live, non-generated, in attribute order, with the replica identity key flag
+ * taken from the primary key, the replica identity index, or every column for
+ * {@code REPLICA IDENTITY FULL}. Publications with column lists are not taken into account.
+ */
+final class JdbcRelationCatalog implements RelationCatalog {
+
+    interface ConnectionSource {
+        Connection open() throws SQLException;
+    }
+
+    private static final String RELATION = """
+            SELECT n.nspname, c.relname FROM pg_class c JOIN pg_namespace n ON n.oid = c.relnamespace
+            WHERE c.oid = ?::oid""";
+
+    private static final String COLUMNS = """
+            SELECT a.attname, a.atttypid,
+                   c.relreplident = 'f' OR a.attnum = ANY ((
+                       SELECT i.indkey::int2[] FROM pg_index i
+                       WHERE i.indrelid = c.oid
+                         AND CASE c.relreplident WHEN 'd' THEN i.indisprimary
+                                                 WHEN 'i' THEN i.indisreplident ELSE false END
+                       LIMIT 1)::int2[])
+            FROM pg_attribute a JOIN pg_class c ON c.oid = a.attrelid
+            WHERE a.attrelid = ?::oid AND a.attnum > 0 AND NOT a.attisdropped AND a.attgenerated = ''
+            ORDER BY a.attnum""";
+
+    private final ConnectionSource source;
+    private Connection connection;
+
+    JdbcRelationCatalog(ConnectionSource source) {
+        this.source = source;
+    }
+
+    @Override
+    public synchronized RelationInfo lookup(int relId) throws SQLException {
+        try {
+            return query(relId);
+        } catch (SQLException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private RelationInfo query(int relId) throws SQLException {
+        if (connection == null) connection = source.open();
+        String namespace, name;
+        try (PreparedStatement statement = connection.prepareStatement(RELATION)) {
+            statement.setLong(1, Integer.toUnsignedLong(relId));
+            try (ResultSet rs = statement.executeQuery()) {
+                if (!rs.next()) return null;
+                namespace = rs.getString(1);
+                name = rs.getString(2);
+            }
+        }
+        List<ColumnInfo> columns = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(COLUMNS)) {
+            statement.setLong(1, Integer.toUnsignedLong(relId));
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) columns.add(new ColumnInfo(rs.getString(1), (int) rs.getLong(2), rs.getBoolean(3)));
+            }
+        }
+        return new RelationInfo(relId, namespace, name, columns);
+    }
+
+    private void close() {
+        if (connection == null) return;
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        connection = null;
+    }
+}
@@ -0,0 +1,68 @@
+package io.mhmtonrn;
+
+import org.postgresql.replication.LogSequenceNumber;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Reads pg_replication_slots, joined with the pg_stat_replication row of the walsender serving
+ * the slot, over a regular connection opened on first use and reopened after a failure.
+ */
+final class JdbcSlotProbe implements SlotProbe {
+
+    private static final String SLOT = """
+            SELECT s.active, s.wal_status,
+                   CASE WHEN pg_is_in_recovery() THEN pg_last_wal_replay_lsn() ELSE pg_current_wal_lsn() END,
+                   s.restart_lsn, s.confirmed_flush_lsn, r.sent_lsn, r.flush_lsn
+            FROM pg_replication_slots s LEFT JOIN pg_stat_replication r ON r.pid = s.active_pid
+            WHERE s.slot_name = ?""";
+
+    private final String slot;
+    private final JdbcRelationCatalog.ConnectionSource source;
+    private Connection connection;
+
+    JdbcSlotProbe(String slot, JdbcRelationCatalog.ConnectionSource source) {
+        this.slot = slot;
+        this.source = source;
+    }
+
+    @Override
+    public synchronized SlotStatus probe() throws SQLException {
+        try {
+            return query();
+        } catch (SQLException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private SlotStatus query() throws SQLException {
+        if (connection == null) connection = source.open();
+        try (PreparedStatement statement = connection.prepareStatement(SLOT)) {
+            statement.setString(1, slot);
+            try (ResultSet rs = statement.executeQuery()) {
+                if (!rs.next()) return null;
+                return new SlotStatus(slot, rs.getBoolean(1), rs.getString(2), lsn(rs.getString(3)),
+                        lsn(rs.getString(4)), lsn(rs.getString(5)), lsn(rs.getString(6)), lsn(rs.getString(7)), 0, 0);
+            }
+        }
+    }
+
+    private static long lsn(String value) {
+        return value == null ? 0 : LogSequenceNumber.valueOf(value).asLong();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (connection == null) return;
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        connection = null;
+    }
+}
@@ -0,0 +1,21 @@
+package io.mhmtonrn;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+final class JsonEncoder implements RowEncoder {
+    static final JsonEncoder INSTANCE = new JsonEncoder();
+
+    @Override
+    public String format() { return "json"; }
+
+    @Override
+    public byte[] encode(Change change) {
+        return JsonWriter.local().write(change).toByteArray();
+    }
+
+    @Override
+    public void encode(Change change, OutputStream out) throws IOException {
+        JsonWriter.local().write(change).writeTo(out);
+    }
+}
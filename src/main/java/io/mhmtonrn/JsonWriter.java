@@ -0,0 +1,244 @@
+package io.mhmtonrn;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a {@link Change} as UTF-8 JSON into a reusable buffer, copying column values
+ * straight from the tuple bytes. Values are already UTF-8 on the wire, so only quotes,
+ * backslashes and control characters need escaping; everything else is copied in runs.
+ */
+public final class JsonWriter {
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+    private static final ThreadLocal<JsonWriter> LOCAL = ThreadLocal.withInitial(JsonWriter::new);
+
+    private byte[] buf = new byte[1024];
+    private int len;
+    /** Table and column names, already quoted and escaped; they repeat on every row. */
+    private final Map<String, byte[]> names = new HashMap<>();
+    /** Quoted column keys of the relation written last; consecutive rows usually share it. */
+    private List<ColumnInfo> keyColumns;
+    private byte[][] keys;
+
+    /** A writer owned by the calling thread, reset and ready for use. */
+    public static JsonWriter local() {
+        JsonWriter writer = LOCAL.get();
+        writer.len = 0;
+        return writer;
+    }
+
+    public JsonWriter write(Change change) {
+        len = 0;
+        switch (change.kind()) {
+            case INSERT -> {
+                header("insert", change);
+                field("data").tuple(change.newRow());
+            }
+            case UPDATE -> {
+                header("update", change);
+                field("old");
+                if (change.oldRow() == null) raw(NULL); else tuple(change.oldRow());
+                field("new").tuple(change.newRow());
+            }
+            case DELETE -> {
+                header("delete", change);
+                field("old").tuple(change.oldRow());
+            }
+            case COMMIT -> {
+                put('{').key("type").name("commit");
+                field("lsn").number(change.lsn());
+                field("timestamp").number(change.timestamp());
+                if (change.streamed()) field("xid").number(change.xid());
+            }
+            case ABORT -> {
+                put('{').key("type").name("abort");
+                field("xid").number(change.xid());
+                field("subxid").number(change.subXid());
+                field("lsn").number(change.lsn());
+                field("timestamp").number(change.timestamp());
+            }
+        }
+        put('}');
+        return this;
+    }
+
+    private void header(String type, Change change) {
+        put('{').key("type").name(type);
+        field("table").name(change.table());
+        if (change.streamed()) field("xid").number(change.xid());
+    }
+
+    private JsonWriter field(String name) {
+        return put(',').key(name);
+    }
+
+    private JsonWriter key(String name) {
+        return name(name).put(':');
+    }
+
+    private JsonWriter name(String name) {
+        byte[] quoted = names.get(name);
+        if (quoted == null) {
+            if (names.size() > 4096) names.clear();
+            quoted = new JsonWriter().string(name).toByteArray();
+            names.put(name, quoted);
+        }
+        return raw(quoted);
+    }
+
+    private JsonWriter tuple(TupleView row) {
+        if (row.columns() != keyColumns) {
+            keyColumns = row.columns();
+            keys = new byte[keyColumns.size()][];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = new JsonWriter().key(keyColumns.get(i).name()).toByteArray();
+            }
+        }
+        put('{');
+        boolean first = true;
+        for (int i = 0; i < row.size(); i++) {
+            // unchanged TOAST values were not sent; leave them out rather than claim null
+            if (row.isUnchanged(i)) continue;
+            if (!first) put(',');
+            first = false;
+            raw(keys[i]);
+            if (row.isNull(i)) {
+                raw(NULL);
+            } else if (row.textual(i)) {
+                put('"');
+                escaped(row.buffer(), row.offset(i), row.length(i));
+                put('"');
+            } else {
+                // binary mode: render through the column's codec, as the server would print it
+                string(row.getString(i));
+            }
+        }
+        return put('}');
+    }
+
+    JsonWriter string(String value) {
+        if (value == null) return raw(NULL);
+        byte[] data = value.getBytes(StandardCharsets.UTF_8);
+        put('"');
+        escaped(ByteBuffer.wrap(data), 0, data.length);
+        return put('"');
+    }
+
+    JsonWriter number(long value) {
+        if (value == Long.MIN_VALUE) return raw(Long.toString(value).getBytes(StandardCharsets.US_ASCII));
+        ensure(20);
+        if (value < 0) {
+            buf[len++] = '-';
+            value = -value;
+        }
+        int start = len;
+        do {
+            buf[len++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        for (int i = start, j = len - 1; i < j; i++, j--) {
+            byte t = buf[i];
+            buf[i] = buf[j];
+            buf[j] = t;
+        }
+        return this;
+    }
+
+    private void escaped(ByteBuffer source, int offset, int length) {
+        if (source.hasArray()) {
+            escaped(source.array(), source.arrayOffset() + offset, length);
+            return;
+        }
+        ensure(length);
+        int run = offset;
+        int end = offset + length;
+        for (int p = offset; p < end; p++) {
+            byte b = source.get(p);
+            if (b == '"' || b == '\\' || (b >= 0 && b < 0x20)) {
+                copy(source, run, p - run);
+                escape(b);
+                run = p + 1;
+            }
+        }
+        copy(source, run, end - run);
+    }
+
+    private void escaped(byte[] source, int offset, int length) {
+        ensure(length);
+        int run = offset;
+        int end = offset + length;
+        for (int p = offset; p < end; p++) {
+            byte b = source[p];
+            if (b == '"' || b == '\\' || (b >= 0 && b < 0x20)) {
+                System.arraycopy(source, run, buf, len, p - run);
+                len += p - run;
+                escape(b);
+                ensure(end - p);
+                run = p + 1;
+            }
+        }
+        System.arraycopy(source, run, buf, len, end - run);
+        len += end - run;
+    }
+
+    private void escape(byte b) {
+        ensure(6);
+        buf[len++] = '\\';
+        switch (b) {
+            case '"' -> buf[len++] = '"';
+            case '\\' -> buf[len++] = '\\';
+            case '\n' -> buf[len++] = 'n';
+            case '\r' -> buf[len++] = 'r';
+            case '\t' -> buf[len++] = 't';
+            case '\b' -> buf[len++] = 'b';
+            case '\f' -> buf[len++] = 'f';
+            default -> {
+                buf[len++] = 'u';
+                buf[len++] = '0';
+                buf[len++] = '0';
+                buf[len++] = HEX[b >> 4];
+                buf[len++] = HEX[b & 0xF];
+            }
+        }
+    }
+
+    private void copy(ByteBuffer source, int offset, int length) {
+        if (length == 0) return;
+        ensure(length);
+        source.get(offset, buf, len, length);
+        len += length;
+    }
+
+    private JsonWriter raw(byte[] data) {
+        ensure(data.length);
+        System.arraycopy(data, 0, buf, len, data.length);
+        len += data.length;
+        return this;
+    }
+
+    private JsonWriter put(char c) {
+        ensure(1);
+        buf[len++] = (byte) c;
+        return this;
+    }
+
+    private void ensure(int extra) {
+        if (len + extra > buf.length) buf = Arrays.copyOf(buf, Math.max(buf.length << 1, len + extra));
+    }
+
+    public int length() { return len; }
+
+    public byte[] toByteArray() { return Arrays.copyOf(buf, len); }
+
+    public void writeTo(OutputStream out) throws IOException { out.write(buf, 0, len); }
+
+    @Override
+    public String toString() { return new String(buf, 0, len, StandardCharsets.UTF_8); }
+}
@@ -0,0 +1,69 @@
+package io.mhmtonrn;
+
+import org.postgresql.replication.LogSequenceNumber;
+import org.postgresql.replication.PGReplicationStream;
+
+import java.sql.SQLException;
+
+/**
+ * Sends the confirmed LSN from {@link AckTracker} back to the server in batches: once
+ * {@code batchCommits} transactions have committed since the last update, or once
+ * {@code intervalNanos} has passed with something new to confirm. Runs on the replication
+ * thread, which owns the stream.
+ */
+final class LsnAcknowledger {
+    private final AckTracker tracker;
+    private final long batchCommits;
+    private final long intervalNanos;
+    private volatile long lastSentLsn;
+    private volatile long lastReceivedLsn;
+    private long lastSentCommits;
+    private long lastSentNanos = System.nanoTime();
+
+    LsnAcknowledger(AckTracker tracker, long batchCommits, long intervalNanos) {
+        this.tracker = tracker;
+        this.batchCommits = batchCommits;
+        this.intervalNanos = intervalNanos;
+    }
+
+    void maybeFlush(PGReplicationStream stream) throws SQLException {
+        long commits = tracker.committed();
+        long now = System.nanoTime();
+        if (commits - lastSentCommits < batchCommits && now - lastSentNanos < intervalNanos) return;
+        send(stream, commits, now);
+    }
+
+    /** Confirms whatever is confirmable now, e.g. before the stream blocks in {@code read()}. */
+    void flush(PGReplicationStream stream) throws SQLException {
+        send(stream, tracker.committed(), System.nanoTime());
+    }
+
+    private void send(PGReplicationStream stream, long commits, long now) throws SQLException {
+        lastReceivedLsn = stream.getLastReceiveLSN().asLong();
+        long lsn = tracker.confirmedLsn();
+        if (lsn <= lastSentLsn) return;
+        LogSequenceNumber confirmed = LogSequenceNumber.valueOf(lsn);
+        stream.setAppliedLSN(confirmed);
+        stream.setFlushedLSN(confirmed);
+        stream.forceUpdateStatus();
+        lastSentLsn = lsn;
+        lastSentCommits = commits;
+        lastSentNanos = now;
+    }
+
+    long lastSentLsn() {
+        return lastSentLsn;
+    }
+
+    /** The stream's last received LSN as of the last update check; readable from any thread. */
+    long lastReceivedLsn() {
+        return lastReceivedLsn;
+    }
+
+    /** The stream was reopened; it resumes from whatever the server last confirmed. */
+    void reset() {
+        tracker.reset();
+        lastSentCommits = tracker.committed();
+        lastSentNanos = System.nanoTime();
+    }
+}
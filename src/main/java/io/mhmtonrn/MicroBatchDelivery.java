@@ -0,0 +1,83 @@
+package io.mhmtonrn;
+
+import io.mhmtonrn.event.CDCEvent;
+import io.mhmtonrn.event.CDCEventBatch;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects changes into a {@link CDCEventBatch} and publishes it once it holds
+ * {@code maxSize} events or its first event is {@code maxWaitNanos} old, whichever comes
+ * first. The age limit is checked on every delivery and by {@link #maybeFlush()}, which the
+ * replication thread calls between reads, so a quiet stream still flushes on time, and the
+ * batch is flushed whatever its age before a blocking read.
+ * Each change keeps its transaction retained until the batch was published, so an LSN is
+ * confirmed only after every batch holding part of its transaction completed.
+ */
+final class MicroBatchDelivery implements EventDelivery {
+    private final Object source;
+    private final ApplicationEventPublisher publisher;
+    private final RowEncoder encoder;
+    private ReplicationLag.Sink lag;
+    private final int maxSize;
+    private final long maxWaitNanos;
+    private List<CDCEvent> events = new ArrayList<>();
+    private final List<AckTracker.Transaction> transactions = new ArrayList<>();
+    private long firstNanos;
+
+    MicroBatchDelivery(Object source, ApplicationEventPublisher publisher, RowEncoder encoder, int maxSize, long maxWaitNanos) {
+        if (maxSize < 1) throw new IllegalArgumentException("Batch size must be positive: " + maxSize);
+        this.source = source;
+        this.publisher = publisher;
+        this.encoder = encoder;
+        this.maxSize = maxSize;
+        this.maxWaitNanos = maxWaitNanos;
+    }
+
+    @Override
+    public synchronized void deliver(Change change, AckTracker.Transaction transaction) {
+        if (events.isEmpty()) firstNanos = System.nanoTime();
+        // the flyweight is reused for the next message, so the batch keeps its own copy
+        events.add(new CDCEvent(source, change.copy(), encoder));
+        transactions.add(transaction);
+        if (events.size() >= maxSize) publish();
+        else maybeFlush();
+    }
+
+    /** Publishes the pending batch if it is older than the wait limit. */
+    @Override
+    public synchronized void maybeFlush() {
+        if (!events.isEmpty() && System.nanoTime() - firstNanos >= maxWaitNanos) publish();
+    }
+
+    @Override
+    public synchronized void flush() {
+        if (!events.isEmpty()) publish();
+    }
+
+    private void publish() {
+        List<CDCEvent> batch = events;
+        List<AckTracker.Transaction> done = List.copyOf(transactions);
+        events = new ArrayList<>(Math.min(maxSize, 1024));
+        transactions.clear();
+        // on failure the stream restarts from the confirmed LSN, so nothing is released
+        publisher.publishEvent(new CDCEventBatch(source, batch));
+        if (lag != null) {
+            for (CDCEvent event : batch) lag.record(event.getChange());
+        }
+        for (AckTracker.Transaction transaction : done) transaction.release();
+    }
+
+    @Override
+    public void trackLag(ReplicationLag.Sink sink) {
+        this.lag = sink;
+    }
+
+    @Override
+    public synchronized void reset() {
+        events.clear();
+        transactions.clear();
+    }
+}
@@ -0,0 +1,197 @@
+package io.mhmtonrn;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Decodes streamed transactions on worker threads (proto_version 4, {@code streaming=parallel},
+ * where the server interleaves several large transactions). The reading thread only looks at
+ * the tag of each message: row messages inside a stream block are copied to the worker that
+ * owns their top-level xid and decoded there, so a huge transaction is decoded in the
+ * background while small transactions keep flowing. At Stream Commit {@link #take} hands the
+ * decoded changes back to the publishing thread, which releases transactions in commit order.
+ * Relation messages are decoded on the reading thread before any row that uses them, and each
+ * row takes along the definition of its relation as of when it was read, so a later Relation
+ * message for the same id does not change how rows still queued are decoded.
+ */
+final class ParallelApplier {
+
+    private interface Task {}
+    private record Row(long xid, int topXid, int relId, RelationInfo relation, byte[] message) implements Task {}
+    private record Commit(long xid, CompletableFuture<TransactionBuffer> result) implements Task {}
+    private record Abort(long xid, long subXid) implements Task {}
+    private record Clear() implements Task {}
+
+    private final Map<Integer, RelationInfo> relationMap;
+    private final SpillStore spill;
+    private final StreamContext stream = new StreamContext();
+    private final RelationHandler relations;
+    private final BlockingQueue<Task>[] queues;
+    private volatile Exception failure;
+
+    @SuppressWarnings("unchecked")
+    ParallelApplier(Map<Integer, RelationInfo> relationMap, SpillStore spill, int workers, int queueSize) {
+        this.relationMap = relationMap;
+        this.spill = spill;
+        this.relations = new RelationHandler(relationMap, stream);
+        this.queues = new BlockingQueue[workers];
+        for (int i = 0; i < workers; i++) {
+            BlockingQueue<Task> queue = new ArrayBlockingQueue<>(queueSize);
+            queues[i] = queue;
+            Thread worker = new Thread(() -> work(queue), "wal4j-apply-" + i);
+            worker.setDaemon(true);
+            worker.start();
+        }
+    }
+
+    /**
+     * Takes a message read from the stream if it belongs to a streamed transaction's body.
+     * Returns {@code false} for everything else, which is decoded as usual.
+     */
+    boolean offer(ByteBuffer buffer) {
+        int start = buffer.position();
+        byte tag = buffer.get(start);
+        switch (tag) {
+            case 'S' -> {
+                stream.xid = buffer.getInt(start + 1);
+                stream.inStream = true;
+                return false;
+            }
+            case 'E' -> {
+                stream.inStream = false;
+                return false;
+            }
+            case 'R' -> {
+                if (!stream.inStream) return false;
+                buffer.get();
+                relations.handle(buffer, null);
+                return true;
+            }
+            case 'I', 'U', 'D' -> {
+                if (!stream.inStream) return false;
+                // tag, then the (sub)transaction xid, then the relation id
+                int relId = buffer.getInt(start + 5);
+                RelationInfo relation = relationMap.get(relId);
+                byte[] message = new byte[buffer.remaining()];
+                buffer.get(message);
+                long xid = Integer.toUnsignedLong(stream.xid);
+                put(xid, new Row(xid, stream.xid, relId, relation, message));
+                return true;
+            }
+            default -> {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Waits for the worker to finish decoding {@code xid} and returns its changes, or {@code null}
+     * if it had none. The caller closes the buffer once it has replayed it.
+     *
+     * @throws IllegalStateException if a row of {@code xid} could not be decoded
+     */
+    TransactionBuffer take(long xid) {
+        CompletableFuture<TransactionBuffer> result = new CompletableFuture<>();
+        put(xid, new Commit(xid, result));
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("Streamed transaction " + xid + " could not be decoded", e.getCause());
+        }
+    }
+
+    void abort(long xid, long subXid) {
+        put(xid, new Abort(xid, subXid));
+    }
+
+    /** Forgets open transactions and stream state, e.g. after the stream restarts. */
+    void reset() {
+        stream.reset();
+        for (BlockingQueue<Task> queue : queues) put(queue, new Clear());
+    }
+
+    Exception takeFailure() {
+        Exception e = failure;
+        if (e != null) failure = null;
+        return e;
+    }
+
+    private void put(long xid, Task task) {
+        put(queues[Math.floorMod(Long.hashCode(xid), queues.length)], task);
+    }
+
+    private static void put(BlockingQueue<Task> queue, Task task) {
+        try {
+            queue.put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while handing over a streamed transaction", e);
+        }
+    }
+
+    private void work(BlockingQueue<Task> queue) {
+        Map<Integer, RelationInfo> definitions = new HashMap<>();
+        TagDispatcher dispatcher = TagDispatcher.standard(definitions);
+        Map<Long, TransactionBuffer> open = new HashMap<>();
+        // a transaction with a row that failed to decode must never be handed out as complete
+        Map<Long, Exception> failed = new HashMap<>();
+        Change change = new Change();
+        while (true) {
+            Task task;
+            try {
+                task = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                switch (task) {
+                    case Row row -> {
+                        if (failed.containsKey(row.xid())) continue;
+                        try {
+                            if (row.relation() != null) definitions.put(row.relId(), row.relation());
+                            else definitions.remove(row.relId());
+                            dispatcher.enterStream(row.topXid());
+                            Change decoded = dispatcher.dispatch(ByteBuffer.wrap(row.message()), change);
+                            open.computeIfAbsent(row.xid(), xid -> spill.open()).add(decoded);
+                        } catch (Exception e) {
+                            failed.put(row.xid(), e);
+                            TransactionBuffer changes = open.remove(row.xid());
+                            if (changes != null) changes.close();
+                            throw e;
+                        }
+                    }
+                    case Commit commit -> {
+                        Exception e = failed.remove(commit.xid());
+                        if (e != null) commit.result().completeExceptionally(e);
+                        else commit.result().complete(open.remove(commit.xid()));
+                    }
+                    case Abort abort -> {
+                        if (abort.subXid() == abort.xid()) failed.remove(abort.xid());
+                        TransactionBuffer changes = abort.subXid() == abort.xid()
+                                ? open.remove(abort.xid()) : open.get(abort.xid());
+                        if (changes == null) continue;
+                        if (abort.subXid() == abort.xid()) {
+                            changes.close();
+                        } else {
+                            changes.discard(abort.subXid());
+                        }
+                    }
+                    case Clear clear -> {
+                        open.values().forEach(TransactionBuffer::close);
+                        open.clear();
+                        failed.clear();
+                    }
+                    default -> throw new IllegalStateException("Unknown task " + task);
+                }
+            } catch (Exception e) {
+                failure = e;
+                if (task instanceof Commit commit) commit.result().completeExceptionally(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package io.mhmtonrn;
+
+import io.mhmtonrn.event.CDCEvent;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Publishes changes asynchronously on a pool of workers, one queue per worker. Changes are
+ * routed by {@link Change#partitionHash()}, so changes to the same row are always handled by
+ * the same worker in order, while different rows and tables run in parallel. Commit events
+ * go to the first partition and may be seen before rows of the same transaction still
+ * running on other partitions; the transaction is only acknowledged once all of them finish.
+ */
+final class PartitionedDelivery implements EventDelivery {
+
+    private record Task(Change change, AckTracker.Transaction transaction) {}
+
+    private final Object source;
+    private final ApplicationEventPublisher publisher;
+    private final RowEncoder encoder;
+    private ReplicationLag.Sink lag;
+    private final BlockingQueue<Task>[] queues;
+    private final Thread[] workers;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile Exception failure;
+
+    @SuppressWarnings("unchecked")
+    PartitionedDelivery(Object source, ApplicationEventPublisher publisher, RowEncoder encoder, int workers, int queueSize) {
+        this.source = source;
+        this.publisher = publisher;
+        this.encoder = encoder;
+        this.queues = new BlockingQueue[workers];
+        this.workers = new Thread[workers];
+        for (int i = 0; i < workers; i++) {
+            BlockingQueue<Task> queue = new ArrayBlockingQueue<>(queueSize);
+            queues[i] = queue;
+            Thread worker = new Thread(() -> work(queue), "wal4j-delivery-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            this.workers[i] = worker;
+        }
+    }
+
+    @Override
+    public void deliver(Change change, AckTracker.Transaction transaction) {
+        int partition = change.kind() == Change.Kind.COMMIT ? 0 : Math.floorMod(change.partitionHash(), queues.length);
+        inFlight.incrementAndGet();
+        try {
+            // the flyweight is reused for the next message, so the worker gets its own copy
+            queues[partition].put(new Task(change.copy(), transaction));
+        } catch (InterruptedException e) {
+            inFlight.decrementAndGet();
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while delivering", e);
+        }
+    }
+
+    private void work(BlockingQueue<Task> queue) {
+        while (true) {
+            Task task;
+            try {
+                task = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                publisher.publishEvent(new CDCEvent(source, task.change(), encoder));
+                if (lag != null) lag.record(task.change());
+                task.transaction().release();
+            } catch (Throwable t) {
+                // left unreleased: the transaction is redelivered after the stream restarts;
+                // an Error must not end the worker, or the replication thread blocks on its queue
+                failure = t instanceof Exception e ? e : new IllegalStateException("Listener failed", t);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+
+    @Override
+    public void trackLag(ReplicationLag.Sink sink) {
+        this.lag = sink;
+    }
+
+    @Override
+    public Exception takeFailure() {
+        Exception e = failure;
+        if (e != null) failure = null;
+        return e;
+    }
+
+    /** Interrupts the workers, which end once their current change is handled. */
+    @Override
+    public void close() {
+        for (Thread worker : workers) worker.interrupt();
+    }
+
+    @Override
+    public void awaitIdle() {
+        while (inFlight.get() > 0) LockSupport.parkNanos(100_000);
+    }
+}
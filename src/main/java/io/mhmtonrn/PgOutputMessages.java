@@ -0,0 +1,165 @@
+package io.mhmtonrn;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes pgoutput (proto_version 1, and the streaming messages of 2) messages, one message per array, exactly as they arrive
+ * from readPending(). Used to build synthetic streams for tests and benchmarks.
+ */
+final class PgOutputMessages {
+    private PgOutputMessages() {}
+
+    /** Pass as a value to send the column as an unchanged TOAST value ({@code 'u'}); compared by identity. */
+    @SuppressWarnings("StringOperationCanBeSimplified")
+    static final String UNCHANGED = new String("<unchanged>");
+    private static final byte[] UNCHANGED_VALUE = new byte[0];
+
+    static byte[] begin(long finalLsn, long commitTime, int xid) {
+        return ByteBuffer.allocate(21).put((byte) 'B').putLong(finalLsn).putLong(commitTime).putInt(xid).array();
+    }
+
+    static byte[] commit(long lsn, long endLsn, long commitTime) {
+        return ByteBuffer.allocate(26).put((byte) 'C').put((byte) 0)
+                .putLong(lsn).putLong(endLsn).putLong(commitTime).array();
+    }
+
+    static byte[] relation(RelationInfo relation) {
+        byte[] ns = cstring(relation.namespace());
+        byte[] name = cstring(relation.name());
+        int size = 1 + 4 + ns.length + name.length + 1 + 2;
+        byte[][] names = new byte[relation.columns().size()][];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = cstring(relation.columns().get(i).name());
+            size += 1 + names[i].length + 4 + 4;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size).put((byte) 'R').putInt(relation.id())
+                .put(ns).put(name).put((byte) 'd').putShort((short) names.length);
+        for (int i = 0; i < names.length; i++) {
+            buffer.put((byte) (relation.columns().get(i).key() ? 1 : 0)).put(names[i])
+                    .putInt(relation.columns().get(i).typeOID()).putInt(-1);
+        }
+        return buffer.array();
+    }
+
+    static byte[] insert(int relId, String[] values) {
+        byte[][] tuple = encode(values);
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 4 + 1 + tupleSize(tuple)).put((byte) 'I').putInt(relId).put((byte) 'N');
+        putTuple(buffer, tuple);
+        return buffer.array();
+    }
+
+    /** An update; {@code oldValues} is sent as an 'O' tuple when not null (REPLICA IDENTITY FULL). */
+    static byte[] update(int relId, String[] oldValues, String[] newValues) {
+        byte[][] oldTuple = oldValues == null ? null : encode(oldValues);
+        byte[][] newTuple = encode(newValues);
+        int size = 1 + 4 + (oldTuple == null ? 0 : 1 + tupleSize(oldTuple)) + 1 + tupleSize(newTuple);
+        ByteBuffer buffer = ByteBuffer.allocate(size).put((byte) 'U').putInt(relId);
+        if (oldTuple != null) {
+            putTuple(buffer.put((byte) 'O'), oldTuple);
+        }
+        putTuple(buffer.put((byte) 'N'), newTuple);
+        return buffer.array();
+    }
+
+    /** An update that changed the key under the default replica identity: the old key travels as {@code 'K'}. */
+    static byte[] updateKey(int relId, String[] keyValues, String[] newValues) {
+        byte[] message = update(relId, keyValues, newValues);
+        message[1 + 4] = 'K';
+        return message;
+    }
+
+    static byte[] delete(int relId, String[] oldValues) {
+        byte[][] tuple = encode(oldValues);
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 4 + 1 + tupleSize(tuple)).put((byte) 'D').putInt(relId).put((byte) 'O');
+        putTuple(buffer, tuple);
+        return buffer.array();
+    }
+
+    /** An insert whose values are sent in binary mode; each value is already in its send form. */
+    static byte[] insertBinary(int relId, byte[][] values) {
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 4 + 1 + tupleSize(values)).put((byte) 'I').putInt(relId).put((byte) 'N');
+        buffer.putShort((short) values.length);
+        for (byte[] value : values) {
+            if (value == null) {
+                buffer.put((byte) 'n');
+            } else if (value == UNCHANGED_VALUE) {
+                buffer.put((byte) 'u');
+            } else {
+                buffer.put((byte) 'b').putInt(value.length).put(value);
+            }
+        }
+        return buffer.array();
+    }
+
+    static byte[] streamStart(int xid, boolean first) {
+        return ByteBuffer.allocate(6).put((byte) 'S').putInt(xid).put((byte) (first ? 1 : 0)).array();
+    }
+
+    static byte[] streamStop() {
+        return new byte[]{'E'};
+    }
+
+    static byte[] streamCommit(int xid, long lsn, long endLsn, long commitTime) {
+        return ByteBuffer.allocate(30).put((byte) 'c').putInt(xid).put((byte) 0)
+                .putLong(lsn).putLong(endLsn).putLong(commitTime).array();
+    }
+
+    static byte[] streamAbort(int xid, int subXid) {
+        return ByteBuffer.allocate(9).put((byte) 'A').putInt(xid).putInt(subXid).array();
+    }
+
+    /** Stream Abort as sent with proto_version 4, carrying the abort LSN and time. */
+    static byte[] streamAbort(int xid, int subXid, long abortLsn, long abortTime) {
+        return ByteBuffer.allocate(25).put((byte) 'A').putInt(xid).putInt(subXid)
+                .putLong(abortLsn).putLong(abortTime).array();
+    }
+
+    /** A logical decoding message, as emitted by {@code pg_logical_emit_message}. */
+    static byte[] message(boolean transactional, long lsn, String prefix, String content) {
+        byte[] name = cstring(prefix);
+        byte[] data = content.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(1 + 1 + 8 + name.length + 4 + data.length).put((byte) 'M')
+                .put((byte) (transactional ? 1 : 0)).putLong(lsn).put(name).putInt(data.length).put(data).array();
+    }
+
+    /** A row or relation message as sent inside a stream block, with the (sub)transaction xid after the tag. */
+    static byte[] inStream(int xid, byte[] message) {
+        return ByteBuffer.allocate(message.length + 4).put(message[0]).putInt(xid)
+                .put(message, 1, message.length - 1).array();
+    }
+
+    static byte[] cstring(String value) {
+        byte[] data = value.getBytes(StandardCharsets.UTF_8);
+        byte[] out = new byte[data.length + 1];
+        System.arraycopy(data, 0, out, 0, data.length);
+        return out;
+    }
+
+    private static byte[][] encode(String[] values) {
+        byte[][] out = new byte[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            out[i] = values[i] == null ? null : values[i] == UNCHANGED ? UNCHANGED_VALUE : values[i].getBytes(StandardCharsets.UTF_8);
+        }
+        return out;
+    }
+
+    private static int tupleSize(byte[][] tuple) {
+        int size = 2;
+        for (byte[] value : tuple) size += value == null || value == UNCHANGED_VALUE ? 1 : 1 + 4 + value.length;
+        return size;
+    }
+
+    private static void putTuple(ByteBuffer buffer, byte[][] tuple) {
+        buffer.putShort((short) tuple.length);
+        for (byte[] value : tuple) {
+            if (value == null) {
+                buffer.put((byte) 'n');
+            } else if (value == UNCHANGED_VALUE) {
+                buffer.put((byte) 'u');
+            } else {
+                buffer.put((byte) 't').putInt(value.length).put(value);
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package io.mhmtonrn;
+
+/**
+ * Idle versus working time of the replication thread. Written only by that thread,
+ * so plain volatile stores are enough; other threads may read at any time.
+ */
+public final class PollStats {
+    private volatile long idleNanos;
+    private volatile long workNanos;
+    private volatile long emptyPolls;
+    private volatile long messages;
+
+    void idle(long nanos) {
+        idleNanos += nanos;
+        emptyPolls++;
+    }
+
+    void work(long idleNanos, long workNanos) {
+        this.idleNanos += idleNanos;
+        this.workNanos += workNanos;
+        messages++;
+    }
+
+    public long idleNanos() { return idleNanos; }
+
+    public long workNanos() { return workNanos; }
+
+    public long emptyPolls() { return emptyPolls; }
+
+    public long messages() { return messages; }
+
+    /** Share of the measured time spent decoding and publishing, between 0 and 1. */
+    public double utilization() {
+        long idle = idleNanos, work = workNanos;
+        return idle + work == 0 ? 0 : (double) work / (idle + work);
+    }
+
+    @Override
+    public String toString() {
+        return "PollStats[messages=" + messages + ", emptyPolls=" + emptyPolls
+                + ", idleMs=" + idleNanos / 1_000_000 + ", workMs=" + workNanos / 1_000_000 + "]";
+    }
+}
@@ -0,0 +1,115 @@
+package io.mhmtonrn;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGProperty;
+import org.postgresql.replication.PGReplicationStream;
+import org.postgresql.replication.fluent.logical.ChainedLogicalStreamBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+@Component
+@ConditionalOnProperty(name = "replication.source", havingValue = "postgres", matchIfMissing = true)
+class PostgresStreamFactory implements ReplicationStreamFactory {
+    @Value("${replication.db.url}")
+    private String url;
+
+    @Value("${replication.db.username}")
+    private String username;
+
+    @Value("${replication.db.password}")
+    private String password;
+
+    @Value("${replication.db.slot}")
+    private String slot;
+
+    @Value("${replication.db.publication}")
+    private String publication;
+
+    /**
+     * pgoutput binary mode (PostgreSQL 14+): values are sent in their binary send form. Types
+     * without a codec in {@link TypeCodecs#registerBinary} are only available as raw bytes and
+     * render as hex in JSON and Avro text, which loses their text form; timestamptz renders in
+     * UTC and money without the currency format.
+     */
+    @Value("${replication.db.binary:false}")
+    private boolean binary;
+
+    /**
+     * Streams large transactions while they are in progress instead of after commit:
+     * {@code true} uses proto_version 2 (PostgreSQL 14+), {@code parallel} uses proto_version 4
+     * (PostgreSQL 16+) and lets the server interleave several of them; see
+     * {@code replication.streaming.*}.
+     */
+    @Value("${replication.db.streaming:false}")
+    private String streaming;
+
+    /**
+     * Writes a heartbeat every {@code replication.heartbeat.interval-millis}; see {@link Heartbeat}.
+     * Without a table it emits logical decoding messages, which needs PostgreSQL 14+.
+     */
+    @Value("${replication.heartbeat.enabled:false}")
+    private boolean heartbeat;
+
+    @Value("${replication.heartbeat.table:}")
+    private String heartbeatTable;
+
+    @Override
+    public RelationCatalog catalog() {
+        return new JdbcRelationCatalog(this::openRegular);
+    }
+
+    @Override
+    public SlotProbe slotProbe() {
+        return new JdbcSlotProbe(slot, this::openRegular);
+    }
+
+    @Override
+    public Heartbeat heartbeat() {
+        return heartbeat ? new Heartbeat(this::openRegular, heartbeatTable) : null;
+    }
+
+    private Connection openRegular() throws SQLException {
+        Properties props = new Properties();
+        PGProperty.USER.set(props, username);
+        PGProperty.PASSWORD.set(props, password);
+        return DriverManager.getConnection(regularUrl(url), props);
+    }
+
+    /** The URL without its {@code replication} parameter, for plain SQL sessions. */
+    static String regularUrl(String url) {
+        return url.replaceAll("([?&])replication=[^&]*&?", "$1").replaceAll("[?&]$", "");
+    }
+
+    @Override
+    public PGReplicationStream createStream() throws SQLException {
+        Properties props = new Properties();
+        PGProperty.USER.set(props, username);
+        PGProperty.PASSWORD.set(props, password);
+        PGProperty.ASSUME_MIN_SERVER_VERSION.set(props, "15.4");
+        PGProperty.REPLICATION.set(props, "postgres");
+        PGProperty.PREFER_QUERY_MODE.set(props, "simple");
+        props.setProperty("characterEncoding", "UTF-8");
+        Connection conn = DriverManager.getConnection(url, props);
+        PGConnection pgConn = conn.unwrap(PGConnection.class);
+        ChainedLogicalStreamBuilder builder = pgConn.getReplicationAPI()
+                .replicationStream()
+                .logical()
+                .withSlotName(slot)
+                .withSlotOption("proto_version", streaming.equals("parallel") ? 4 : streaming.equals("true") ? 2 : 1)
+                .withSlotOption("publication_names", publication);
+        if (binary) builder.withSlotOption("binary", true);
+        if (heartbeat && heartbeatTable.isEmpty()) builder.withSlotOption("messages", true);
+        if (streaming.equals("parallel")) builder.withSlotOption("streaming", "parallel");
+        else if (streaming.equals("true")) builder.withSlotOption("streaming", true);
+        return builder
+                .withStatusInterval(120, TimeUnit.SECONDS)
+                .start();
+    }
+}
@@ -0,0 +1,148 @@
+package io.mhmtonrn;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Encodes changes in the Protocol Buffers wire format. Each relation gets a proto3 message
+ * with one optional field per column, numbered by column position and typed from the column
+ * OID; null columns are omitted. {@link #schema(RelationInfo)} returns the matching
+ * {@code .proto} definition. Commits and aborts are fixed {@code Commit} and {@code Abort} messages.
+ */
+public final class ProtobufEncoder implements RowEncoder {
+    private static final int VARINT = 0;
+    private static final int FIXED64 = 1;
+    private static final int LENGTH = 2;
+    private static final int FIXED32 = 5;
+
+    private record Plan(ValueKind[] kinds, long[] tags, String schema) {}
+
+    private static final ThreadLocal<BinaryWriter> LOCAL = ThreadLocal.withInitial(BinaryWriter::new);
+    private final SchemaCache<Plan> schemas = new SchemaCache<>(ProtobufEncoder::plan);
+
+    @Override
+    public String format() { return "protobuf"; }
+
+    /** The {@code .proto} definition of the changes encoded for {@code relation}. */
+    public String schema(RelationInfo relation) {
+        return schemas.get(relation).schema().schema();
+    }
+
+    public int schemaVersion(RelationInfo relation) {
+        return schemas.get(relation).version();
+    }
+
+    @Override
+    public byte[] encode(Change change) {
+        return write(change).toByteArray();
+    }
+
+    @Override
+    public void encode(Change change, OutputStream out) throws IOException {
+        write(change).writeTo(out);
+    }
+
+    private BinaryWriter write(Change change) {
+        BinaryWriter out = LOCAL.get().reset();
+        if (change.kind() == Change.Kind.COMMIT) {
+            out.varint(tag(1, VARINT)).varint(change.lsn())
+                    .varint(tag(2, VARINT)).varint(change.endLsn())
+                    .varint(tag(3, VARINT)).varint(change.timestamp());
+            return xid(out, 4, change);
+        }
+        if (change.kind() == Change.Kind.ABORT) {
+            return out.varint(tag(1, VARINT)).varint(change.xid())
+                    .varint(tag(2, VARINT)).varint(change.subXid())
+                    .varint(tag(3, VARINT)).varint(change.lsn())
+                    .varint(tag(4, VARINT)).varint(change.timestamp());
+        }
+        Plan plan = schemas.get(change.relation()).schema();
+        out.varint(tag(1, VARINT)).varint(change.kind().ordinal() + 1);
+        row(out, 2, change.oldRow(), plan);
+        row(out, 3, change.newRow(), plan);
+        return xid(out, 4, change);
+    }
+
+    private static BinaryWriter xid(BinaryWriter out, int field, Change change) {
+        return change.streamed() ? out.varint(tag(field, VARINT)).varint(change.xid()) : out;
+    }
+
+    private static void row(BinaryWriter out, int field, TupleView row, Plan plan) {
+        if (row == null) return;
+        out.varint(tag(field, LENGTH));
+        int start = out.length();
+        ByteBuffer buffer = row.buffer();
+        for (int i = 0; i < row.size(); i++) {
+            if (row.isNull(i)) continue;
+            out.varint(plan.tags()[i]);
+            switch (plan.kinds()[i]) {
+                case BOOLEAN -> out.put(row.getBoolean(i) ? 1 : 0);
+                case INT, LONG -> out.varint(row.getLong(i));
+                case FLOAT -> out.intLE(Float.floatToIntBits((float) row.getDouble(i)));
+                case DOUBLE -> out.longLE(Double.doubleToLongBits(row.getDouble(i)));
+                case BYTES -> {
+                    if (row.isBinary(i)) {
+                        out.varint(row.length(i)).put(buffer, row.offset(i), row.length(i));
+                    } else {
+                        out.varint(BinaryWriter.hexLength(row.length(i))).putHex(buffer, row.offset(i), row.length(i));
+                    }
+                }
+                case STRING -> {
+                    if (row.textual(i)) {
+                        out.varint(row.length(i)).put(buffer, row.offset(i), row.length(i));
+                    } else {
+                        byte[] text = BinaryWriter.utf8(row.getString(i));
+                        out.varint(text.length).put(text);
+                    }
+                }
+            }
+        }
+        // the length prefix is only known once the row is written
+        out.insertVarint(start, out.length() - start);
+    }
+
+    private static long tag(int field, int wireType) {
+        return (long) field << 3 | wireType;
+    }
+
+    private static Plan plan(RelationInfo relation) {
+        List<ColumnInfo> columns = relation.columns();
+        ValueKind[] kinds = new ValueKind[columns.size()];
+        long[] tags = new long[kinds.length];
+        String message = AvroEncoder.name(relation.name());
+        StringBuilder schema = new StringBuilder("syntax = \"proto3\";\npackage ")
+                .append(AvroEncoder.name(relation.namespace())).append(";\n\nmessage ").append(message).append("Row {\n");
+        for (int i = 0; i < kinds.length; i++) {
+            kinds[i] = columns.get(i).codec().kind();
+            tags[i] = tag(i + 1, switch (kinds[i]) {
+                case BOOLEAN, INT, LONG -> VARINT;
+                case FLOAT -> FIXED32;
+                case DOUBLE -> FIXED64;
+                case BYTES, STRING -> LENGTH;
+            });
+            schema.append("  optional ").append(type(kinds[i])).append(' ')
+                    .append(AvroEncoder.name(columns.get(i).name())).append(" = ").append(i + 1).append(";\n");
+        }
+        schema.append("}\n\nmessage ").append(message).append("Change {\n")
+                .append("  enum Op { OP_UNSPECIFIED = 0; INSERT = 1; UPDATE = 2; DELETE = 3; }\n")
+                .append("  Op op = 1;\n  ").append(message).append("Row before = 2;\n  ")
+                .append(message).append("Row after = 3;\n  optional uint32 xid = 4;\n}\n\n")
+                .append("message Commit {\n  uint64 lsn = 1;\n  uint64 end_lsn = 2;\n  int64 timestamp = 3;\n  optional uint32 xid = 4;\n}\n\n")
+                .append("message Abort {\n  uint32 xid = 1;\n  uint32 sub_xid = 2;\n  uint64 lsn = 3;\n  int64 timestamp = 4;\n}\n");
+        return new Plan(kinds, tags, schema.toString());
+    }
+
+    private static String type(ValueKind kind) {
+        return switch (kind) {
+            case BOOLEAN -> "bool";
+            case INT -> "int32";
+            case LONG -> "int64";
+            case FLOAT -> "float";
+            case DOUBLE -> "double";
+            case BYTES -> "bytes";
+            case STRING -> "string";
+        };
+    }
+}
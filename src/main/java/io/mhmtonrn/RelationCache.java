@@ -0,0 +1,143 @@
+package io.mhmtonrn;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Relation definitions by relation id, shared by every decoder thread. Relation messages
+ * {@link #put} a definition, bumping its version when it differs from the cached one. A row
+ * for an id that was never announced, e.g. right after a restart, is resolved through the
+ * {@link RelationCatalog} instead of failing. When a file is configured the cache is loaded
+ * from it on startup and rewritten whenever a definition changes, so restarts begin warm.
+ */
+final class RelationCache extends AbstractMap<Integer, RelationInfo> {
+    private static final int FORMAT = 1;
+
+    record Entry(RelationInfo relation, int version) {}
+
+    private final ConcurrentHashMap<Integer, Entry> entries = new ConcurrentHashMap<>();
+    private volatile RelationCatalog catalog;
+    private volatile Path file;
+
+    /**
+     * Resolves unknown relations through {@code catalog} and persists the cache to {@code file},
+     * loading what it already holds; either may be {@code null}.
+     */
+    void attach(RelationCatalog catalog, Path file) {
+        this.catalog = catalog;
+        this.file = file;
+        if (file != null && Files.exists(file)) load(file);
+    }
+
+    @Override
+    public RelationInfo get(Object key) {
+        Entry entry = entries.get(key);
+        if (entry != null) return entry.relation();
+        RelationCatalog catalog = this.catalog;
+        if (catalog == null || !(key instanceof Integer relId)) return null;
+        entry = entries.computeIfAbsent(relId, id -> lookup(catalog, id));
+        if (entry != null) save();
+        return entry == null ? null : entry.relation();
+    }
+
+    @Override
+    public RelationInfo put(Integer relId, RelationInfo relation) {
+        Entry[] previous = new Entry[1];
+        Entry entry = entries.compute(relId, (id, current) -> {
+            previous[0] = current;
+            if (current != null && current.relation().equals(relation)) return current;
+            return new Entry(relation, current == null ? 1 : current.version() + 1);
+        });
+        if (entry != previous[0]) save();
+        return previous[0] == null ? null : previous[0].relation();
+    }
+
+    /** How many definitions of {@code relId} were seen, 0 if none. */
+    int version(int relId) {
+        Entry entry = entries.get(relId);
+        return entry == null ? 0 : entry.version();
+    }
+
+    @Override
+    public Set<Map.Entry<Integer, RelationInfo>> entrySet() {
+        Map<Integer, RelationInfo> view = new HashMap<>();
+        entries.forEach((id, entry) -> view.put(id, entry.relation()));
+        return view.entrySet();
+    }
+
+    private static Entry lookup(RelationCatalog catalog, int relId) {
+        try {
+            RelationInfo relation = catalog.lookup(relId);
+            return relation == null ? null : new Entry(relation, 1);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Catalog lookup of relation " + relId + " failed", e);
+        }
+    }
+
+    private synchronized void save() {
+        Path file = this.file;
+        if (file == null) return;
+        try {
+            Path dir = file.toAbsolutePath().getParent();
+            Files.createDirectories(dir);
+            Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+            try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(tmp))) {
+                List<Entry> snapshot = new ArrayList<>(entries.values());
+                out.writeInt(FORMAT);
+                out.writeInt(snapshot.size());
+                for (Entry entry : snapshot) {
+                    RelationInfo relation = entry.relation();
+                    out.writeInt(relation.id());
+                    out.writeInt(entry.version());
+                    out.writeUTF(relation.namespace());
+                    out.writeUTF(relation.name());
+                    out.writeShort(relation.columns().size());
+                    for (ColumnInfo column : relation.columns()) {
+                        out.writeUTF(column.name());
+                        out.writeInt(column.typeOID());
+                        out.writeBoolean(column.key());
+                    }
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // the cache still works, the next restart is just cold
+            e.printStackTrace();
+        }
+    }
+
+    private void load(Path file) {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+            if (in.readInt() != FORMAT) {
+                System.err.println("Ignoring relation cache " + file + " written in another format");
+                return;
+            }
+            for (int n = in.readInt(); n > 0; n--) {
+                int id = in.readInt();
+                int version = in.readInt();
+                String namespace = in.readUTF();
+                String name = in.readUTF();
+                List<ColumnInfo> columns = new ArrayList<>();
+                for (int c = in.readShort(); c > 0; c--) {
+                    columns.add(new ColumnInfo(in.readUTF(), in.readInt(), in.readBoolean()));
+                }
+                entries.put(id, new Entry(new RelationInfo(id, namespace, name, columns), version));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read relation cache " + file, e);
+        }
+    }
+}
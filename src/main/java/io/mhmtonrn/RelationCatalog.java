@@ -0,0 +1,10 @@
+package io.mhmtonrn;
+
+import java.sql.SQLException;
+
+/** Looks up a relation's definition when no Relation message for it has been seen. */
+public interface RelationCatalog {
+
+    /** The relation with OID {@code relId}, or {@code null} if it does not exist. */
+    RelationInfo lookup(int relId) throws SQLException;
+}
@@ -2,4 +2,4 @@ package io.mhmtonrn;
 
 import java.util.List;
 
-record RelationInfo(int id, String namespace, String name, List<ColumnInfo> columns) {}
+public record RelationInfo(int id, String namespace, String name, List<ColumnInfo> columns) {}
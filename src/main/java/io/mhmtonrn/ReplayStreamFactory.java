@@ -0,0 +1,26 @@
+package io.mhmtonrn;
+
+import org.postgresql.replication.PGReplicationStream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+
+@Component
+@ConditionalOnProperty(name = "replication.source", havingValue = "replay")
+class ReplayStreamFactory implements ReplicationStreamFactory {
+    @Value("${replication.replay.dir}")
+    private Path dir;
+
+    @Override
+    public PGReplicationStream createStream() throws SQLException {
+        try {
+            return new SegmentReplayStream(dir);
+        } catch (IOException e) {
+            throw new SQLException("Cannot open replay segments in " + dir, e);
+        }
+    }
+}
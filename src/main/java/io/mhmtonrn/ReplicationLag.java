@@ -0,0 +1,178 @@
+package io.mhmtonrn;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Replication lag of row changes, from the commit time on the server to each stage: the
+ * message was read, decoded, and handled by a sink's listeners. Kept per stage, table and sink
+ * in HdrHistogram recorders, which record without locking or allocating; commits and
+ * transaction batches count under {@link #TRANSACTION}. Rows of streamed transactions are only
+ * counted with their commit, their commit time is not known before. The server clock is
+ * compared with this process's, so clock skew shows up as lag.
+ */
+public final class ReplicationLag {
+    public enum Stage { RECEIVE, DECODE, DELIVER }
+
+    /** Table name under which commits and whole transactions are counted. */
+    public static final String TRANSACTION = "*";
+
+    /** Microseconds between 1970-01-01 and 2000-01-01, the epoch of pgoutput timestamps. */
+    static final long PG_EPOCH_MICROS = 946_684_800_000_000L;
+
+    private static final long RESYNC_NANOS = 60_000_000_000L;
+
+    /** One histogram: a stage of a table in a sink. */
+    public static final class Series {
+        private final Stage stage;
+        private final String table;
+        private final String sink;
+        private final Recorder recorder = new Recorder(3);
+        private final Histogram total = new Histogram(3);
+        private Histogram interval;
+
+        private Series(Stage stage, String table, String sink) {
+            this.stage = stage;
+            this.table = table;
+            this.sink = sink;
+        }
+
+        public Stage stage() { return stage; }
+
+        /** The schema-qualified table, or {@link #TRANSACTION}. */
+        public String table() { return table; }
+
+        /** The sink of the {@code DELIVER} stage, {@code null} for the others. */
+        public String sink() { return sink; }
+
+        /** Lag in microseconds at {@code percentile}, between 0 and 100, since startup. */
+        public synchronized long percentile(double percentile) {
+            return snapshot().getValueAtPercentile(percentile);
+        }
+
+        /** A copy of everything recorded since startup, in microseconds. */
+        public synchronized Histogram histogram() {
+            return snapshot().copy();
+        }
+
+        private Histogram snapshot() {
+            interval = recorder.getIntervalHistogram(interval);
+            total.add(interval);
+            return total;
+        }
+    }
+
+    /** Where the lag of one stage, or of one sink's deliveries, is recorded. */
+    public final class Sink {
+        private final Stage stage;
+        private final String name;
+        /** Series by namespace, then table name, so recording builds no qualified name. */
+        private final ConcurrentHashMap<String, ConcurrentHashMap<String, Series>> tables = new ConcurrentHashMap<>();
+
+        private Sink(Stage stage, String name) {
+            this.stage = stage;
+            this.name = name;
+        }
+
+        /** Records the lag of {@code change} as of now. */
+        public void record(Change change) {
+            record(change, nowMicros());
+        }
+
+        void record(Change change, long nowMicros) {
+            long committed = change.timestamp();
+            if (committed <= 0 || change.kind() == Change.Kind.ABORT) return;
+            RelationInfo relation = change.relation();
+            String namespace = relation == null ? "" : relation.namespace();
+            String table = relation == null ? TRANSACTION : relation.name();
+            ConcurrentHashMap<String, Series> namespaced = tables.get(namespace);
+            if (namespaced == null) namespaced = tables.computeIfAbsent(namespace, n -> new ConcurrentHashMap<>());
+            Series series = namespaced.get(table);
+            if (series == null) series = namespaced.computeIfAbsent(table, t -> create(namespace.isEmpty() ? t : namespace + "." + t));
+            series.recorder.recordValue(Math.max(0, nowMicros - committed - PG_EPOCH_MICROS));
+        }
+
+        private Series create(String table) {
+            Series series = new Series(stage, table, name);
+            all.add(series);
+            for (Consumer<Series> listener : listeners) listener.accept(series);
+            return series;
+        }
+    }
+
+    private final Sink received = new Sink(Stage.RECEIVE, null);
+    private final Sink decoded = new Sink(Stage.DECODE, null);
+    private final ConcurrentHashMap<String, Sink> sinks = new ConcurrentHashMap<>();
+    private final List<Series> all = new CopyOnWriteArrayList<>();
+    private final List<Consumer<Series>> listeners = new CopyOnWriteArrayList<>();
+    private volatile Anchor anchor;
+
+    private record Anchor(long nanos, long micros) {}
+
+    public ReplicationLag() {
+        resync(System.nanoTime());
+    }
+
+    /** Lag when the message was read, {@code receivedNanos} on the {@link System#nanoTime()} clock. */
+    void received(Change change, long receivedNanos) {
+        received.record(change, micros(receivedNanos));
+    }
+
+    void decoded(Change change) {
+        decoded.record(change, nowMicros());
+    }
+
+    /** The deliveries of the sink {@code name}, e.g. for listeners that report when they are done. */
+    public Sink sink(String name) {
+        return sinks.computeIfAbsent(name, n -> new Sink(Stage.DELIVER, n));
+    }
+
+    /** Every series recorded so far. */
+    public List<Series> series() {
+        return new ArrayList<>(all);
+    }
+
+    /**
+     * The series of {@code stage} and {@code table}, e.g. {@code public.items} or
+     * {@link #TRANSACTION}, in {@code sink} for deliveries, or {@code null}.
+     */
+    public Series series(Stage stage, String table, String sink) {
+        for (Series series : all) {
+            if (series.stage == stage && series.table.equals(table) && Objects.equals(series.sink, sink)) return series;
+        }
+        return null;
+    }
+
+    /** Calls {@code listener} for every series, now and as new ones appear. */
+    void onSeries(Consumer<Series> listener) {
+        listeners.add(listener);
+        all.forEach(listener);
+    }
+
+    long nowMicros() {
+        return micros(System.nanoTime());
+    }
+
+    /**
+     * Wall clock time of a {@link System#nanoTime()} reading without allocating; re-anchored to
+     * the wall clock now and then so the two do not drift apart.
+     */
+    private long micros(long nanos) {
+        Anchor anchor = this.anchor;
+        if (nanos - anchor.nanos() > RESYNC_NANOS) anchor = resync(nanos);
+        return anchor.micros() + (nanos - anchor.nanos()) / 1000;
+    }
+
+    private Anchor resync(long nanos) {
+        Anchor anchor = new Anchor(nanos, System.currentTimeMillis() * 1000 - (System.nanoTime() - nanos) / 1000);
+        this.anchor = anchor;
+        return anchor;
+    }
+}
@@ -1,174 +1,519 @@
 package io.mhmtonrn;
 
-import io.mhmtonrn.event.CDCEvent;
-import org.json.JSONObject;
-import org.postgresql.PGConnection;
-import org.postgresql.PGProperty;
-import org.postgresql.replication.LogSequenceNumber;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.postgresql.replication.PGReplicationStream;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
-import java.sql.Connection;
-import java.sql.DriverManager;
+import java.nio.file.Path;
 import java.sql.SQLException;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
 
 @Service
-public class ReplicationListener implements CommandLineRunner {
-    @Value("${replication.db.url}")
-    private String url;
+public class ReplicationListener implements CommandLineRunner, DisposableBean {
+    @Value("${replication.capture.dir:}")
+    private String captureDir;
 
-    @Value("${replication.db.username}")
-    private String username;
+    @Value("${replication.capture.segment-size:67108864}")
+    private int captureSegmentSize;
 
-    @Value("${replication.db.password}")
-    private String password;
+    @Value("${replication.ack.batch-commits:100}")
+    private long ackBatchCommits;
 
-    @Value("${replication.db.slot}")
-    private String slot;
+    @Value("${replication.ack.interval-millis:1000}")
+    private long ackIntervalMillis;
+
+    @Value("${replication.poll.strategy:backoff}")
+    private String pollStrategy;
+
+    @Value("${replication.poll.spins:100}")
+    private int pollSpins;
+
+    @Value("${replication.poll.yields:50}")
+    private int pollYields;
+
+    @Value("${replication.poll.min-park-nanos:1000}")
+    private long pollMinParkNanos;
+
+    @Value("${replication.poll.max-park-nanos:1000000}")
+    private long pollMaxParkNanos;
+
+    @Value("${replication.pipeline.enabled:false}")
+    private boolean pipelineEnabled;
+
+    @Value("${replication.pipeline.ring-size:1024}")
+    private int pipelineRingSize;
+
+    @Value("${replication.pipeline.decode-ahead:256}")
+    private int pipelineDecodeAhead;
+
+    @Value("${replication.pipeline.reader-wait:backoff}")
+    private String pipelineReaderWait;
+
+    @Value("${replication.pipeline.decoder-wait:backoff}")
+    private String pipelineDecoderWait;
+
+    @Value("${replication.pipeline.publisher-wait:backoff}")
+    private String pipelinePublisherWait;
+
+    @Value("${replication.output.format:json}")
+    private String outputFormat;
+
+    @Value("${replication.streaming.delivery:on-commit}")
+    private String streamingDelivery;
+
+    @Value("${replication.db.streaming:false}")
+    private String streaming;
+
+    @Value("${replication.streaming.apply-workers:0}")
+    private int applyWorkers;
+
+    @Value("${replication.streaming.apply-queue-size:1024}")
+    private int applyQueueSize;
+
+    /** Emptied of spill files on startup; by default a directory of this process under java.io.tmpdir/wal4j-spill. */
+    @Value("${replication.spill.dir:}")
+    private String spillDir;
+
+    @Value("${replication.spill.memory-budget:268435456}")
+    private long spillMemoryBudget;
+
+    @Value("${replication.spill.segment-size:67108864}")
+    private int spillSegmentSize;
+
+    @Value("${replication.batch.max-size:5000}")
+    private int batchMaxSize;
+
+    @Value("${replication.batch.max-wait-millis:20}")
+    private long batchMaxWaitMillis;
+
+    /** Off-heap bytes for the unchanged TOAST value cache; 0 disables it. */
+    @Value("${replication.toast.cache-bytes:0}")
+    private int toastCacheBytes;
+
+    @Value("${replication.toast.max-entries:100000}")
+    private int toastMaxEntries;
+
+    @Value("${replication.toast.min-value-size:256}")
+    private int toastMinValueSize;
+
+    /** Where relation definitions are kept across restarts; empty to keep them in memory only. */
+    @Value("${replication.relations.file:}")
+    private String relationCacheFile;
+
+    @Value("${replication.delivery.mode:sync}")
+    private String deliveryMode;
+
+    @Value("${replication.delivery.workers:0}")
+    private int deliveryWorkers;
+
+    @Value("${replication.delivery.queue-size:1024}")
+    private int deliveryQueueSize;
+
+    @Value("${replication.delivery.partitions:4096}")
+    private int deliveryPartitions;
+
+    @Value("${replication.delivery.max-in-flight:10000}")
+    private int deliveryMaxInFlight;
+
+    @Value("${replication.slot-monitor.enabled:false}")
+    private boolean slotMonitorEnabled;
+
+    @Value("${replication.slot-monitor.interval-millis:10000}")
+    private long slotMonitorIntervalMillis;
+
+    @Value("${replication.slot-monitor.max-retained-bytes:1073741824}")
+    private long slotMaxRetainedBytes;
+
+    @Value("${replication.slot-monitor.max-lag-bytes:268435456}")
+    private long slotMaxLagBytes;
+
+    @Value("${replication.heartbeat.interval-millis:10000}")
+    private long heartbeatIntervalMillis;
+
+    @Value("${replication.lag.enabled:true}")
+    private boolean lagEnabled;
+
+    @Value("${replication.metrics.enabled:true}")
+    private boolean metricsEnabled;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
 
-    @Value("${replication.db.publication}")
-    private String publication;
     private final ApplicationEventPublisher applicationEventPublisher;
+    private final ReplicationStreamFactory streamFactory;
 
-    private final List<ReplicationEventHandler> handlers = new ArrayList<>();
+    private TagDispatcher dispatcher;
+    private final Change change = new Change();
+    private final PollStats pollStats = new PollStats();
+    private final ReplicationLag lag = new ReplicationLag();
+    private boolean trackLag;
+    private long receivedNanos;
+    private final AckTracker ackTracker = new AckTracker();
+    private AckTracker.Transaction transaction;
+    private ReplicationPipeline pipeline;
+    private EventDelivery delivery;
+    private StreamedTransactions streams;
+    private final RelationCache relationMap = new RelationCache();
+    private ParallelApplier applier;
+    private SpillStore spill = SpillStore.unbounded();
+    private volatile SlotMonitor slotMonitor;
+    private volatile Heartbeat heartbeat;
+    private volatile boolean running = true;
+    private Thread thread;
 
-    public ReplicationListener(ApplicationEventPublisher applicationEventPublisher) {
+    public ReplicationListener(ApplicationEventPublisher applicationEventPublisher, ReplicationStreamFactory streamFactory) {
         this.applicationEventPublisher = applicationEventPublisher;
-        Map<Integer, RelationInfo> relationMap = new HashMap<>();
-        handlers.add(new RelationHandler(relationMap));
-        handlers.add(new InsertHandler(relationMap));
-        handlers.add(new UpdateHandler(relationMap));
-        handlers.add(new DeleteHandler(relationMap));
-        handlers.add(new CommitHandler());
-        handlers.add(new BeginHandler());
+        this.streamFactory = streamFactory;
+        this.dispatcher = TagDispatcher.standard(relationMap);
+        this.delivery = new SyncDelivery(this, applicationEventPublisher, null);
+        this.streams = new StreamedTransactions(ackTracker, StreamedTransactions.Mode.ON_COMMIT);
     }
 
     @Override
     public void run(String... args) {
-        new Thread(() -> {
+        thread = new Thread(() -> {
             try {
                 listenLoop();
-            } catch (SQLException e) {
+            } catch (SQLException | IOException e) {
                 throw new RuntimeException(e);
             }
-        }).start();
+        }, "wal4j-replication");
+        thread.start();
+    }
 
+    /** Ends the replication loop, which closes the stream and stops the threads it started. */
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        // a blocking read only returns with the next message; do not wait for it forever
+        if (thread != null) thread.join(5_000);
+        if (heartbeat != null) heartbeat.stop();
+        if (slotMonitor != null) slotMonitor.stop();
     }
 
-    private void listenLoop() throws SQLException {
-        PGReplicationStream stream = createStream();
+    private void listenLoop() throws SQLException, IOException {
+        relationMap.attach(streamFactory.catalog(), relationCacheFile.isEmpty() ? null : Path.of(relationCacheFile));
+        ToastCache toast = toastCacheBytes > 0 ? new ToastCache(toastCacheBytes, toastMaxEntries, toastMinValueSize) : null;
+        if (toast != null) dispatcher = TagDispatcher.standard(relationMap, toast);
+        dispatcher.streamAbortPositions(streaming.equals("parallel"));
+        PGReplicationStream stream = streamFactory.createStream();
+        SegmentWriter capture = captureDir.isEmpty() ? null : new SegmentWriter(Path.of(captureDir), captureSegmentSize);
+        boolean blocking = pollStrategy.equals("blocking");
+        IdleStrategy idle = idleStrategy(pollStrategy);
+        LsnAcknowledger acknowledger = new LsnAcknowledger(ackTracker, ackBatchCommits, TimeUnit.MILLISECONDS.toNanos(ackIntervalMillis));
+        SlotProbe slotProbe = slotMonitorEnabled ? streamFactory.slotProbe() : null;
+        if (slotProbe != null) {
+            slotMonitor = new SlotMonitor(this, applicationEventPublisher, slotProbe, slotMaxRetainedBytes, slotMaxLagBytes,
+                    acknowledger::lastReceivedLsn, acknowledger::lastSentLsn);
+            slotMonitor.start(slotMonitorIntervalMillis);
+        }
+        heartbeat = streamFactory.heartbeat();
+        if (heartbeat != null) heartbeat.start(heartbeatIntervalMillis);
+        StreamedTransactions.Mode streamingMode = StreamedTransactions.mode(streamingDelivery);
+        int appliers = applyWorkers(applyWorkers, streaming, streamingMode);
+        spill = spillDir.isEmpty()
+                ? SpillStore.inTempDir(Path.of(System.getProperty("java.io.tmpdir"), "wal4j-spill"), spillMemoryBudget, spillSegmentSize)
+                : new SpillStore(Path.of(spillDir), spillMemoryBudget, spillSegmentSize);
+        applier = appliers > 0 ? new ParallelApplier(relationMap, spill, appliers, applyQueueSize) : null;
+        streams = new StreamedTransactions(ackTracker, streamingMode, spill, applier, toast);
+        RowEncoder encoder = RowEncoder.of(outputFormat);
+        delivery = new SyncDelivery(this, applicationEventPublisher, encoder);
+        if (deliveryMode.equals("async")) {
+            int workers = deliveryWorkers > 0 ? deliveryWorkers : Runtime.getRuntime().availableProcessors();
+            delivery = new PartitionedDelivery(this, applicationEventPublisher, encoder, workers, deliveryQueueSize);
+        } else if (deliveryMode.equals("virtual")) {
+            delivery = new VirtualThreadDelivery(this, applicationEventPublisher, encoder, deliveryPartitions, deliveryMaxInFlight);
+        } else if (deliveryMode.equals("batch")) {
+            delivery = new MicroBatchDelivery(this, applicationEventPublisher, encoder, batchMaxSize,
+                    TimeUnit.MILLISECONDS.toNanos(batchMaxWaitMillis));
+        } else if (deliveryMode.equals("transaction")) {
+            if (streamingMode != StreamedTransactions.Mode.ON_COMMIT) {
+                throw new IllegalArgumentException("Transaction batches deliver streamed transactions on commit only");
+            }
+            delivery = new TransactionBatchDelivery(this, applicationEventPublisher, encoder, spill);
+        } else if (!deliveryMode.equals("sync")) {
+            throw new IllegalArgumentException("Unknown delivery mode: " + deliveryMode);
+        }
+        boolean retriesInPlace = delivery instanceof SyncDelivery;
+        trackLag = lagEnabled;
+        if (trackLag) delivery.trackLag(lag.sink(deliveryMode));
+        ReplicationMetrics metrics = metricsEnabled && meterRegistry != null ? new ReplicationMetrics(meterRegistry) : null;
+        if (metrics != null) {
+            metrics.instrument(dispatcher);
+            metrics.watch(pollStats);
+            metrics.watch(spill.stats());
+            metrics.watch(lag);
+            if (slotMonitor != null) metrics.watch(slotMonitor);
+            delivery = metrics.meter(delivery);
+        }
+        if (pipelineEnabled) {
+            pipeline = new ReplicationPipeline(pipelineRingSize, pipelineDecodeAhead, dispatcher, this::publish,
+                    idleStrategy(pipelineReaderWait), idleStrategy(pipelineDecoderWait), idleStrategy(pipelinePublisherWait));
+            pipeline.start();
+        }
         int errorCount = 0;
 
-        while (true) {
-            try {
-                ByteBuffer buffer = stream.readPending();
-                if (buffer == null) {
-                    Thread.sleep(10);
-                    continue;
-                }
-                while (buffer.hasRemaining()) {
-                    char tag = (char) buffer.get();
-                    for (ReplicationEventHandler handler : handlers) {
-                        if (handler.canHandle(tag)) {
-                            JSONObject event = handler.handle(buffer);
-                            if (event != null) {
-                                applicationEventPublisher.publishEvent(new CDCEvent(this,event.toString()));
-                            }
-                            break;
+        try {
+            while (running) {
+                try {
+                    long polled = System.nanoTime();
+                    ByteBuffer buffer = stream.readPending();
+                    if (buffer == null && blocking) {
+                        settle(stream, acknowledger);
+                        buffer = stream.read();
+                    }
+                    long received = System.nanoTime();
+                    if (buffer == null) {
+                        checkStages();
+                        delivery.maybeFlush();
+                        acknowledger.maybeFlush(stream);
+                        idle.idle();
+                        pollStats.idle(System.nanoTime() - polled);
+                        continue;
+                    }
+                    idle.reset();
+                    if (metrics != null) metrics.read(buffer.remaining());
+                    if (capture != null) {
+                        capture.append(stream.getLastReceiveLSN().asLong(), buffer);
+                    }
+                    boolean applied = applier != null && applier.offer(buffer);
+                    // a worker failed: nothing after it, e.g. its Stream Commit, may be handled
+                    checkStages();
+                    if (!applied) {
+                        if (pipeline != null) {
+                            pipeline.offer(buffer, stream.getLastReceiveLSN().asLong());
+                            checkStages();
+                        } else {
+                            receivedNanos = received;
+                            process(buffer);
+                        }
+                    }
+                    Exception failure = delivery.takeFailure();
+                    if (failure != null) throw failure;
+                    delivery.maybeFlush();
+                    acknowledger.maybeFlush(stream);
+                    // time blocked inside read() is waiting, not work
+                    pollStats.work(blocking ? received - polled : 0, System.nanoTime() - (blocking ? received : polled));
+                    if (errorCount > 0 && metrics != null) metrics.recovered();
+                    errorCount = 0; // reset on success
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    errorCount++;
+                    if (metrics != null) metrics.error(errorCount);
+                    // a transaction that failed part way, or a frame lost in the pipeline, can only
+                    // be redelivered by restarting from the confirmed LSN
+                    if (errorCount >= 3 || transaction != null || streams.interrupted() || pipeline != null
+                            || !retriesInPlace) {
+                        System.err.println("Error threshold reached. Restarting replication stream...");
+                        try {
+                            stream.close();
+                        } catch (Exception ex) {
+                            ex.printStackTrace();
+                        }
+                        if (pipeline != null) {
+                            pipeline.awaitDrained();
+                            pipeline.resume();
                         }
+                        delivery.awaitIdle();
+                        delivery.reset();
+                        // the publisher is idle once drained and sees this through the ring cursors
+                        transaction = null;
+                        streams.clear();
+                        dispatcher.reset();
+                        if (applier != null) applier.reset();
+                        acknowledger.reset();
+                        // messages since the confirmed LSN are captured again after the restart
+                        if (capture != null) capture.flush();
+                        stream = streamFactory.createStream();
+                        errorCount = 0;
+                        if (metrics != null) metrics.reconnected();
                     }
                 }
-                updateLSN(stream);
-                errorCount = 0; // reset on success
+            }
+        } finally {
+            if (heartbeat != null) heartbeat.stop();
+            if (slotMonitor != null) slotMonitor.stop();
+            if (pipeline != null) pipeline.stop();
+            delivery.close();
+            if (capture != null) capture.close();
+            try {
+                stream.close();
             } catch (Exception e) {
                 e.printStackTrace();
-                errorCount++;
-                if (errorCount >= 3) {
-                    System.err.println("Error threshold reached. Restarting replication stream...");
-                    try {
-                        stream.close();
-                    } catch (Exception ex) {
-                        ex.printStackTrace();
-                    }
-                    stream = createStream();
-                    errorCount = 0;
-                }
             }
         }
     }
 
-    private PGReplicationStream createStream() throws SQLException {
-        Properties props = new Properties();
-        PGProperty.USER.set(props, username);
-        PGProperty.PASSWORD.set(props, password);
-        PGProperty.ASSUME_MIN_SERVER_VERSION.set(props, "15.4");
-        PGProperty.REPLICATION.set(props, "postgres");
-        PGProperty.PREFER_QUERY_MODE.set(props, "simple");
-        props.setProperty("characterEncoding", "UTF-8");
-        Connection conn = DriverManager.getConnection(url, props);
-        PGConnection pgConn = conn.unwrap(PGConnection.class);
-        return pgConn.getReplicationAPI()
-                .replicationStream()
-                .logical()
-                .withSlotName(slot)
-                .withSlotOption("proto_version", 1)
-                .withSlotOption("publication_names", publication)
-                .withStatusInterval(120, TimeUnit.SECONDS)
-                .start();
-    }
-
-    private void updateLSN(PGReplicationStream stream) throws SQLException {
-        LogSequenceNumber lsn = stream.getLastReceiveLSN();
-        stream.setAppliedLSN(lsn);
-        stream.setFlushedLSN(lsn);
-        stream.forceUpdateStatus();
+    /**
+     * Publishes and confirms everything held back before {@code read()} blocks: until the next
+     * message arrives there is no other chance to flush a batch or send an acknowledgement.
+     */
+    private void settle(PGReplicationStream stream, LsnAcknowledger acknowledger) throws Exception {
+        if (pipeline != null) pipeline.awaitDrained();
+        checkStages();
+        delivery.flush();
+        delivery.awaitIdle();
+        Exception failure = delivery.takeFailure();
+        if (failure != null) throw failure;
+        acknowledger.flush(stream);
+    }
+
+    /** Throws a failure of the apply workers or the pipeline, before anything more is confirmed. */
+    private void checkStages() throws Exception {
+        Exception failure = applier != null ? applier.takeFailure() : null;
+        if (failure == null && pipeline != null) failure = pipeline.takeFailure();
+        if (failure != null) throw failure;
+    }
+
+    /**
+     * Apply workers for streamed transactions. {@code streaming=parallel} interleaves large
+     * transactions, so they are decoded on workers by default; workers hold rows until Stream
+     * Commit, which eager delivery cannot wait for.
+     */
+    static int applyWorkers(int configured, String streaming, StreamedTransactions.Mode mode) {
+        if (mode != StreamedTransactions.Mode.ON_COMMIT) {
+            if (configured > 0) {
+                throw new IllegalArgumentException("Apply workers deliver streamed transactions on commit only; "
+                        + "set replication.streaming.apply-workers=0 for eager delivery");
+            }
+            return 0;
+        }
+        if (configured > 0) return configured;
+        return streaming.equals("parallel") ? Runtime.getRuntime().availableProcessors() : 0;
+    }
+
+    private IdleStrategy idleStrategy(String name) {
+        return IdleStrategy.of(name, pollSpins, pollYields, pollMinParkNanos, pollMaxParkNanos);
+    }
+
+    public PollStats getPollStats() {
+        return pollStats;
+    }
+
+    /** Memory use and spilling of transactions held until they commit. */
+    public SpillStats getSpillStats() {
+        return spill.stats();
+    }
+
+    /** The replication slot monitor, or {@code null} unless {@code replication.slot-monitor.enabled}. */
+    public SlotMonitor getSlotMonitor() {
+        return slotMonitor;
+    }
+
+    /** Lag from the commit on the server to reading, decoding and delivering changes, per table. */
+    public ReplicationLag getLag() {
+        return lag;
+    }
+
+    /** The staged pipeline, or {@code null} when the replication thread decodes and publishes itself. */
+    public ReplicationPipeline getPipeline() {
+        return pipeline;
+    }
+
+    void process(ByteBuffer buffer) {
+        while (buffer.hasRemaining()) {
+            Change decoded = dispatcher.dispatch(buffer, change);
+            if (decoded != null) {
+                publish(decoded);
+            }
+        }
+    }
+
+    private void publish(Change decoded) {
+        if (decoded.isHeartbeat()) {
+            // an empty transaction: confirmable once everything before it is
+            ackTracker.commit(ackTracker.begin(), decoded.endLsn());
+            return;
+        }
+        if (trackLag) {
+            // read times are only known when this thread also read the message
+            if (receivedNanos != 0) lag.received(decoded, receivedNanos);
+            lag.decoded(decoded);
+        }
+        if (decoded.streamed()) {
+            streams.handle(decoded, delivery);
+            return;
+        }
+        if (transaction == null) transaction = ackTracker.begin();
+        transaction.retain();
+        delivery.deliver(decoded, transaction);
+        if (decoded.kind() == Change.Kind.COMMIT) {
+            ackTracker.commit(transaction, decoded.endLsn());
+            transaction = null;
+        }
     }
 
     // Common utilities
+    static RelationInfo relation(Map<Integer, RelationInfo> relationMap, int relId) {
+        RelationInfo rel = relationMap.get(relId);
+        if (rel == null) throw new IllegalStateException("Row for unknown relation " + Integer.toUnsignedString(relId));
+        return rel;
+    }
+
     static String readString(ByteBuffer buffer) {
         ByteArrayOutputStream out = new ByteArrayOutputStream();
         byte b;
         while ((b = buffer.get()) != 0) out.write(b);
         return out.toString(StandardCharsets.UTF_8);
     }
+}
 
-    static Map<String, String> parseTuple(ByteBuffer buffer, List<ColumnInfo> columns) {
-        short colCount = buffer.getShort();
-        Map<String, String> row = new LinkedHashMap<>();
-        for (int i = 0; i < colCount; i++) {
-            byte fmt = buffer.get();
-            String col = columns.get(i).name();
-            if (fmt == 'n') {
-                row.put(col, null);
-            } else {
-                int len = buffer.getInt();
-                byte[] data = new byte[len];
-                buffer.get(data);
-                row.put(col, new String(data, StandardCharsets.UTF_8));
-            }
-        }
-        return row;
+interface ReplicationEventHandler {
+    char tag();
+    Change handle(ByteBuffer buffer, Change change);
+}
+
+/**
+ * Decoder state for proto_version 2 streaming: between Stream Start and Stream Stop, row and
+ * relation messages carry the xid of their (sub)transaction right after the tag.
+ */
+final class StreamContext {
+    boolean inStream;
+    int xid;
+    /** Stream Abort carries the abort LSN and time: proto_version 4 with {@code streaming=parallel}. */
+    boolean abortPositions;
+
+    /** Reads the xid prefix of a message if it is inside a stream block. */
+    int subXid(ByteBuffer buffer) {
+        return inStream ? buffer.getInt() : 0;
+    }
+
+    /** Marks {@code change} as streamed when it was decoded inside a stream block. */
+    Change mark(Change change, int subXid) {
+        return inStream ? change.streamed(xid, subXid) : change;
+    }
+
+    void reset() {
+        inStream = false;
+        xid = 0;
     }
 }
 
-interface ReplicationEventHandler {
-    boolean canHandle(char tag);
-    JSONObject handle(ByteBuffer buffer);
+/** The transaction opened by the last Begin message: its final (commit) LSN, commit time and xid. */
+final class TransactionContext {
+    long finalLsn;
+    long commitTime;
+    int xid;
 }
 
 class RelationHandler implements ReplicationEventHandler {
     private final Map<Integer, RelationInfo> relationMap;
-    RelationHandler(Map<Integer, RelationInfo> map) { this.relationMap = map; }
-    public boolean canHandle(char tag) { return tag == 'R'; }
-    public JSONObject handle(ByteBuffer buffer) {
+    private final StreamContext stream;
+    RelationHandler(Map<Integer, RelationInfo> map) { this(map, new StreamContext()); }
+    RelationHandler(Map<Integer, RelationInfo> map, StreamContext stream) { this.relationMap = map; this.stream = stream; }
+    public char tag() { return 'R'; }
+    public Change handle(ByteBuffer buffer, Change change) {
+        stream.subXid(buffer);
         int relId = buffer.getInt();
         String ns = ReplicationListener.readString(buffer);
         String name = ReplicationListener.readString(buffer);
@@ -176,11 +521,11 @@ class RelationHandler implements ReplicationEventHandler {
         short colCount = buffer.getShort();
         List<ColumnInfo> cols = new ArrayList<>();
         for (int i = 0; i < colCount; i++) {
-            buffer.get();
+            byte flags = buffer.get();
             String colName = ReplicationListener.readString(buffer);
             int oid = buffer.getInt();
             buffer.getInt();
-            cols.add(new ColumnInfo(colName, oid));
+            cols.add(new ColumnInfo(colName, oid, (flags & 1) != 0));
         }
         relationMap.put(relId, new RelationInfo(relId, ns, name, cols));
         return null;
@@ -189,65 +534,190 @@ class RelationHandler implements ReplicationEventHandler {
 
 class InsertHandler implements ReplicationEventHandler {
     private final Map<Integer, RelationInfo> relationMap;
-    InsertHandler(Map<Integer, RelationInfo> map) { this.relationMap = map; }
-    public boolean canHandle(char tag) { return tag == 'I'; }
-    public JSONObject handle(ByteBuffer buffer) {
+    private final StreamContext stream;
+    private final TransactionContext transaction;
+    private final ToastCache toast;
+    InsertHandler(Map<Integer, RelationInfo> map) { this(map, new StreamContext()); }
+    InsertHandler(Map<Integer, RelationInfo> map, StreamContext stream) { this(map, stream, new TransactionContext(), null); }
+    InsertHandler(Map<Integer, RelationInfo> map, StreamContext stream, TransactionContext transaction, ToastCache toast) {
+        this.relationMap = map; this.stream = stream; this.transaction = transaction; this.toast = toast;
+    }
+    public char tag() { return 'I'; }
+    public Change handle(ByteBuffer buffer, Change change) {
+        int subXid = stream.subXid(buffer);
         int relId = buffer.getInt();
-        RelationInfo rel = relationMap.get(relId);
+        RelationInfo rel = ReplicationListener.relation(relationMap, relId);
         buffer.get();
-        JSONObject data = new JSONObject(ReplicationListener.parseTuple(buffer, rel.columns()));
-        return new JSONObject().put("type","insert").put("table",rel.name()).put("data",data);
+        change.row(Change.Kind.INSERT, rel).committedAt(stream.inStream ? 0 : transaction.commitTime).transaction(transaction.xid);
+        change.wrapNew(buffer);
+        // a streamed row may still roll back; StreamedTransactions applies it once it is delivered
+        if (toast != null && !stream.inStream) toast.apply(change);
+        return stream.mark(change, subXid);
     }
 }
 
 class UpdateHandler implements ReplicationEventHandler {
     private final Map<Integer, RelationInfo> relationMap;
-    UpdateHandler(Map<Integer, RelationInfo> map) { this.relationMap = map; }
-    public boolean canHandle(char tag) { return tag == 'U'; }
-    public JSONObject handle(ByteBuffer buffer) {
+    private final StreamContext stream;
+    private final TransactionContext transaction;
+    private final ToastCache toast;
+    UpdateHandler(Map<Integer, RelationInfo> map) { this(map, new StreamContext()); }
+    UpdateHandler(Map<Integer, RelationInfo> map, StreamContext stream) { this(map, stream, new TransactionContext(), null); }
+    UpdateHandler(Map<Integer, RelationInfo> map, StreamContext stream, TransactionContext transaction, ToastCache toast) {
+        this.relationMap = map; this.stream = stream; this.transaction = transaction; this.toast = toast;
+    }
+    public char tag() { return 'U'; }
+    public Change handle(ByteBuffer buffer, Change change) {
+        int subXid = stream.subXid(buffer);
         int relId = buffer.getInt();
-        RelationInfo rel = relationMap.get(relId);
-        byte m = buffer.get(); if (m=='K') { skip(buffer); m = buffer.get(); }
-        Map<String,String> oldR = null;
-        if (m=='O') { oldR = ReplicationListener.parseTuple(buffer, rel.columns()); m = buffer.get(); }
+        RelationInfo rel = ReplicationListener.relation(relationMap, relId);
+        change.row(Change.Kind.UPDATE, rel).committedAt(stream.inStream ? 0 : transaction.commitTime).transaction(transaction.xid);
+        // 'K' (the key changed) and 'O' (REPLICA IDENTITY FULL) both become the old image, like for deletes
+        byte m = buffer.get();
+        if (m=='K' || m=='O') { change.wrapOld(buffer); m = buffer.get(); }
         if (m!='N') throw new IllegalStateException();
-        Map<String,String> newR = ReplicationListener.parseTuple(buffer, rel.columns());
-        return new JSONObject().put("type","update").put("table",rel.name())
-                .put("old", oldR==null? JSONObject.NULL : new JSONObject(oldR))
-                .put("new", new JSONObject(newR));
+        TupleView row = change.wrapNew(buffer);
+        if (row.unchangedCount() > 0 && change.oldRow() != null) fillFromOld(change.oldRow(), row);
+        // a streamed row may still roll back; StreamedTransactions applies it once it is delivered
+        if (toast != null && !stream.inStream) toast.apply(change);
+        return stream.mark(change, subXid);
     }
-    private void skip(ByteBuffer b) {
-        short c = b.getShort(); for(int i=0;i<c;i++){ if(b.get()!='n'){int l=b.getInt();b.position(b.position()+l);} }
+
+    /** With REPLICA IDENTITY FULL the old image carries the values left out of the new one. */
+    static void fillFromOld(TupleView oldRow, TupleView row) {
+        byte[][] values = new byte[row.size()][];
+        boolean[] binary = new boolean[row.size()];
+        boolean found = false;
+        for (int i = 0; i < row.size() && i < oldRow.size(); i++) {
+            if (row.isUnchanged(i) && !oldRow.isNull(i)) {
+                values[i] = oldRow.getBytes(i);
+                binary[i] = oldRow.isBinary(i);
+                found = true;
+            }
+        }
+        if (found) row.fillUnchanged(values, binary);
     }
 }
 
 class DeleteHandler implements ReplicationEventHandler {
     private final Map<Integer, RelationInfo> relationMap;
-    DeleteHandler(Map<Integer, RelationInfo> map) { this.relationMap = map; }
-    public boolean canHandle(char tag) { return tag == 'D'; }
-    public JSONObject handle(ByteBuffer buffer) {
+    private final StreamContext stream;
+    private final TransactionContext transaction;
+    private final ToastCache toast;
+    DeleteHandler(Map<Integer, RelationInfo> map) { this(map, new StreamContext()); }
+    DeleteHandler(Map<Integer, RelationInfo> map, StreamContext stream) { this(map, stream, new TransactionContext(), null); }
+    DeleteHandler(Map<Integer, RelationInfo> map, StreamContext stream, TransactionContext transaction, ToastCache toast) {
+        this.relationMap = map; this.stream = stream; this.transaction = transaction; this.toast = toast;
+    }
+    public char tag() { return 'D'; }
+    public Change handle(ByteBuffer buffer, Change change) {
+        int subXid = stream.subXid(buffer);
         int relId = buffer.getInt();
-        RelationInfo rel = relationMap.get(relId);
+        RelationInfo rel = ReplicationListener.relation(relationMap, relId);
         buffer.get();
-        Map<String,String> oldR = ReplicationListener.parseTuple(buffer, rel.columns());
-        return new JSONObject().put("type","delete").put("table",rel.name())
-                .put("old", new JSONObject(oldR));
+        change.row(Change.Kind.DELETE, rel).committedAt(stream.inStream ? 0 : transaction.commitTime).transaction(transaction.xid);
+        change.wrapOld(buffer);
+        // a streamed row may still roll back; StreamedTransactions applies it once it is delivered
+        if (toast != null && !stream.inStream) toast.apply(change);
+        return stream.mark(change, subXid);
     }
 }
 
 class BeginHandler implements ReplicationEventHandler {
-    public boolean canHandle(char tag) { return tag == 'B'; }
-    public JSONObject handle(ByteBuffer buffer) {
-        buffer.getLong(); return null;
+    private final TransactionContext transaction;
+    BeginHandler() { this(new TransactionContext()); }
+    BeginHandler(TransactionContext transaction) { this.transaction = transaction; }
+    public char tag() { return 'B'; }
+    public Change handle(ByteBuffer buffer, Change change) {
+        transaction.finalLsn = buffer.getLong();
+        transaction.commitTime = buffer.getLong();
+        transaction.xid = buffer.getInt();
+        return null;
     }
 }
 
 class CommitHandler implements ReplicationEventHandler {
-    public boolean canHandle(char tag) { return tag == 'C'; }
-    public JSONObject handle(ByteBuffer buffer) {
-        buffer.get(); long lsn=buffer.getLong(); buffer.getLong();
+    private final TransactionContext transaction;
+    CommitHandler() { this(new TransactionContext()); }
+    CommitHandler(TransactionContext transaction) { this.transaction = transaction; }
+    public char tag() { return 'C'; }
+    public Change handle(ByteBuffer buffer, Change change) {
+        buffer.get(); long lsn=buffer.getLong(); long endLsn=buffer.getLong();
+        long ts=buffer.getLong();
+        return change.commit(lsn, endLsn, ts).transaction(transaction.xid);
+    }
+}
+
+/**
+ * Logical decoding messages ({@code messages} option). Only non-transactional messages with the
+ * heartbeat prefix are decoded, as a {@link Change#heartbeat heartbeat}; the rest are skipped.
+ */
+class MessageHandler implements ReplicationEventHandler {
+    private final StreamContext stream;
+    private final ByteBuffer prefix;
+    MessageHandler(StreamContext stream, String prefix) {
+        this.stream = stream;
+        this.prefix = ByteBuffer.wrap((prefix + '\0').getBytes(StandardCharsets.UTF_8)).asReadOnlyBuffer();
+    }
+    public char tag() { return 'M'; }
+    public Change handle(ByteBuffer buffer, Change change) {
+        stream.subXid(buffer);
+        boolean transactional = (buffer.get() & 1) != 0;
+        long lsn = buffer.getLong();
+        int end = buffer.position();
+        while (buffer.get(end) != 0) end++;
+        // the prefix cstring, compared with its terminator
+        boolean heartbeat = !transactional && end + 1 - buffer.position() == prefix.remaining()
+                && buffer.slice(buffer.position(), prefix.remaining()).equals(prefix);
+        buffer.position(end + 1);
+        int length = buffer.getInt();
+        buffer.position(buffer.position() + length);
+        return heartbeat ? change.heartbeat(lsn) : null;
+    }
+}
+
+class StreamStartHandler implements ReplicationEventHandler {
+    private final StreamContext stream;
+    StreamStartHandler(StreamContext stream) { this.stream = stream; }
+    public char tag() { return 'S'; }
+    public Change handle(ByteBuffer buffer, Change change) {
+        stream.xid = buffer.getInt();
+        buffer.get(); // first segment of this transaction
+        stream.inStream = true;
+        return null;
+    }
+}
+
+class StreamStopHandler implements ReplicationEventHandler {
+    private final StreamContext stream;
+    StreamStopHandler(StreamContext stream) { this.stream = stream; }
+    public char tag() { return 'E'; }
+    public Change handle(ByteBuffer buffer, Change change) {
+        stream.inStream = false;
+        return null;
+    }
+}
+
+class StreamCommitHandler implements ReplicationEventHandler {
+    public char tag() { return 'c'; }
+    public Change handle(ByteBuffer buffer, Change change) {
+        int xid = buffer.getInt();
+        buffer.get(); long lsn=buffer.getLong(); long endLsn=buffer.getLong();
         long ts=buffer.getLong();
-        return new JSONObject().put("type","commit").put("lsn",lsn).put("timestamp",ts);
+        return change.commit(lsn, endLsn, ts).streamed(xid, xid);
     }
 }
 
+class StreamAbortHandler implements ReplicationEventHandler {
+    private final StreamContext stream;
+    StreamAbortHandler() { this(new StreamContext()); }
+    StreamAbortHandler(StreamContext stream) { this.stream = stream; }
+    public char tag() { return 'A'; }
+    public Change handle(ByteBuffer buffer, Change change) {
+        int xid = buffer.getInt();
+        int subXid = buffer.getInt();
+        change.abort(xid, subXid);
+        if (stream.abortPositions) change.position(buffer.getLong(), buffer.getLong());
+        return change;
+    }
+}
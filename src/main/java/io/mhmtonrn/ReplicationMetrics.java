@@ -0,0 +1,202 @@
+package io.mhmtonrn;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+
+/**
+ * Micrometer instruments of the replication thread, all registered up front: the hot path only
+ * indexes arrays of meters by tag byte or change kind and records primitives, so it does not
+ * allocate. Exposed under {@code wal4j.*}, e.g. on the actuator Prometheus endpoint.
+ */
+final class ReplicationMetrics {
+    private final MeterRegistry registry;
+    private final Counter[] messages = new Counter[256];
+    private final Timer[] decode = new Timer[256];
+    private final Counter unknownMessages;
+    private final Counter bytesRead;
+    private final Counter[] events = new Counter[Change.Kind.values().length];
+    private final Timer publish;
+    private final Counter errors;
+    private final Counter reconnects;
+    private volatile int consecutiveErrors;
+
+    ReplicationMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.unknownMessages = Counter.builder("wal4j.messages").tag("tag", "unknown")
+                .description("pgoutput messages read, by tag").register(registry);
+        this.bytesRead = Counter.builder("wal4j.read").baseUnit("bytes")
+                .description("Bytes read from the replication stream").register(registry);
+        for (Change.Kind kind : Change.Kind.values()) {
+            events[kind.ordinal()] = Counter.builder("wal4j.events").tag("kind", kind.name().toLowerCase())
+                    .description("Changes handed to the delivery").register(registry);
+        }
+        this.publish = Timer.builder("wal4j.publish")
+                .description("Time to hand a change to the delivery; the listeners' time for sync delivery")
+                .register(registry);
+        this.errors = Counter.builder("wal4j.errors").description("Failures in the replication loop").register(registry);
+        this.reconnects = Counter.builder("wal4j.reconnects").description("Replication stream restarts").register(registry);
+        Gauge.builder("wal4j.errors.consecutive", this, m -> m.consecutiveErrors)
+                .description("Failures since the last message handled successfully").register(registry);
+    }
+
+    /** Counts and times the messages of every tag {@code dispatcher} has a handler for. */
+    void instrument(TagDispatcher dispatcher) {
+        for (int tag = 0; tag < 256; tag++) {
+            ReplicationEventHandler handler = dispatcher.handlerFor((char) tag);
+            if (handler == null || messages[tag] != null) continue;
+            String name = String.valueOf((char) tag);
+            messages[tag] = Counter.builder("wal4j.messages").tag("tag", name)
+                    .description("pgoutput messages read, by tag").register(registry);
+            decode[tag] = Timer.builder("wal4j.decode").tag("tag", name)
+                    .tag("handler", handler.getClass().getSimpleName())
+                    .description("Time to decode a message").register(registry);
+        }
+        dispatcher.metrics(this);
+    }
+
+    void decoded(int tag, long nanos) {
+        Counter counter = messages[tag];
+        if (counter == null) {
+            unknownMessages.increment();
+            return;
+        }
+        counter.increment();
+        decode[tag].record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    void read(int bytes) {
+        bytesRead.increment(bytes);
+    }
+
+    void error(int consecutive) {
+        errors.increment();
+        consecutiveErrors = consecutive;
+    }
+
+    void recovered() {
+        consecutiveErrors = 0;
+    }
+
+    void reconnected() {
+        reconnects.increment();
+    }
+
+    /** Wraps {@code delivery} to count and time the changes handed to it. */
+    EventDelivery meter(EventDelivery delivery) {
+        return new MeteredDelivery(delivery);
+    }
+
+    void watch(PollStats poll) {
+        FunctionCounter.builder("wal4j.poll.empty", poll, PollStats::emptyPolls)
+                .description("Reads that returned nothing").register(registry);
+        Gauge.builder("wal4j.poll.utilization", poll, PollStats::utilization)
+                .description("Share of time spent decoding and publishing").register(registry);
+    }
+
+    void watch(SpillStats spill) {
+        Gauge.builder("wal4j.spill.heap", spill, SpillStats::heapBytes).baseUnit("bytes")
+                .description("Buffered changes held on the heap").register(registry);
+        FunctionCounter.builder("wal4j.spill.written", spill, SpillStats::spilledBytes).baseUnit("bytes")
+                .description("Bytes of buffered changes written to spill files").register(registry);
+        FunctionTimer.builder("wal4j.spill.write", spill, SpillStats::spilledChanges, SpillStats::spillNanos, TimeUnit.NANOSECONDS)
+                .description("Time to write changes to spill files").register(registry);
+        FunctionTimer.builder("wal4j.spill.read", spill, SpillStats::readChanges, SpillStats::readNanos, TimeUnit.NANOSECONDS)
+                .description("Time to read spilled changes back").register(registry);
+    }
+
+    /** Publishes the median, p99, p99.9 and maximum of every lag series, in seconds. */
+    void watch(ReplicationLag lag) {
+        lag.onSeries(series -> {
+            for (double quantile : new double[]{0.5, 0.99, 0.999, 1.0}) {
+                Gauge.builder("wal4j.lag", series, s -> s.percentile(quantile * 100) / 1e6).baseUnit("seconds")
+                        .tag("stage", series.stage().name().toLowerCase()).tag("table", series.table())
+                        .tag("sink", series.sink() == null ? "none" : series.sink())
+                        .tag("quantile", quantile == 1.0 ? "max" : String.valueOf(quantile))
+                        .description("Time from the commit on the server to a stage").register(registry);
+            }
+        });
+    }
+
+    /** Publishes the slot's retained WAL and the LSNs on both ends, as of the monitor's last poll. */
+    void watch(SlotMonitor monitor) {
+        slotGauge("wal4j.slot.retained", monitor, SlotStatus::retainedBytes, "WAL the slot holds back from removal");
+        slotGauge("wal4j.slot.lag", monitor, SlotStatus::confirmedLagBytes, "WAL written since the confirmed position");
+        lsnGauge("current", monitor, SlotStatus::currentLsn);
+        lsnGauge("restart", monitor, SlotStatus::restartLsn);
+        lsnGauge("confirmed_flush", monitor, SlotStatus::confirmedFlushLsn);
+        lsnGauge("sent", monitor, SlotStatus::sentLsn);
+        lsnGauge("received", monitor, SlotStatus::receivedLsn);
+        lsnGauge("flushed", monitor, SlotStatus::flushedLsn);
+        Gauge.builder("wal4j.slot.active", monitor, m -> m.status() == null ? Double.NaN : m.status().active() ? 1 : 0)
+                .description("Whether a walsender streams from the slot").register(registry);
+        Gauge.builder("wal4j.slot.alerts", monitor, m -> m.alerts().size())
+                .description("Slot alerts currently raised").register(registry);
+    }
+
+    private void slotGauge(String name, SlotMonitor monitor, ToLongFunction<SlotStatus> value, String description) {
+        Gauge.builder(name, monitor, m -> m.status() == null ? Double.NaN : value.applyAsLong(m.status()))
+                .baseUnit("bytes").description(description).register(registry);
+    }
+
+    private void lsnGauge(String position, SlotMonitor monitor, ToLongFunction<SlotStatus> value) {
+        Gauge.builder("wal4j.lsn", monitor, m -> m.status() == null ? Double.NaN : value.applyAsLong(m.status()))
+                .tag("position", position).description("Replication positions of the slot").register(registry);
+    }
+
+    final class MeteredDelivery implements EventDelivery {
+        private final EventDelivery delivery;
+
+        MeteredDelivery(EventDelivery delivery) {
+            this.delivery = delivery;
+        }
+
+        EventDelivery delegate() {
+            return delivery;
+        }
+
+        @Override
+        public void deliver(Change change, AckTracker.Transaction transaction) {
+            events[change.kind().ordinal()].increment();
+            long started = System.nanoTime();
+            delivery.deliver(change, transaction);
+            publish.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public void deliverTransaction(TransactionBuffer rows, Change commit, AckTracker.Transaction transaction) {
+            for (Change.Kind kind : Change.Kind.values()) events[kind.ordinal()].increment(rows.count(kind));
+            events[commit.kind().ordinal()].increment();
+            long started = System.nanoTime();
+            delivery.deliverTransaction(rows, commit, transaction);
+            publish.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public Exception takeFailure() { return delivery.takeFailure(); }
+
+        @Override
+        public void awaitIdle() { delivery.awaitIdle(); }
+
+        @Override
+        public void maybeFlush() { delivery.maybeFlush(); }
+
+        @Override
+        public void flush() { delivery.flush(); }
+
+        @Override
+        public void reset() { delivery.reset(); }
+
+        @Override
+        public void trackLag(ReplicationLag.Sink sink) { delivery.trackLag(sink); }
+
+        @Override
+        public void close() { delivery.close(); }
+    }
+}
@@ -0,0 +1,176 @@
+package io.mhmtonrn;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Staged pipeline over one preallocated ring of frames. The replication thread copies each
+ * message into a free frame, a decoder thread decodes frames in place and a publisher thread
+ * hands the decoded changes out. Each stage only follows the cursor of the stage before it, so
+ * there are no locks; a frame is reused only once the publisher is done with it, which keeps
+ * the flyweight changes valid while they are published. Once a frame fails to decode or
+ * publish, nothing after it is published until {@link #resume()}: the transaction it belonged
+ * to must not reach its commit and be confirmed, so the stream has to restart.
+ */
+public final class ReplicationPipeline {
+
+    static final class Frame {
+        private byte[] data = new byte[512];
+        private ByteBuffer buffer;
+        private final Change change = new Change();
+        private Change decoded;
+        private boolean failed;
+        long lsn;
+
+        void copy(ByteBuffer source) {
+            int length = source.remaining();
+            if (data.length < length) data = new byte[Math.max(length, data.length << 1)];
+            source.get(source.position(), data, 0, length);
+            buffer = ByteBuffer.wrap(data, 0, length);
+        }
+    }
+
+    private final Frame[] ring;
+    private final int mask;
+    private final int decodeAhead;
+    private final TagDispatcher dispatcher;
+    private final Consumer<Change> publisher;
+    private final IdleStrategy readerWait;
+    private final IdleStrategy decoderWait;
+    private final IdleStrategy publisherWait;
+
+    private final AtomicLong published = new AtomicLong(-1);
+    private final AtomicLong decoded = new AtomicLong(-1);
+    private final AtomicLong consumed = new AtomicLong(-1);
+    private volatile boolean running;
+    private volatile boolean halted;
+    private volatile Exception failure;
+    private volatile long readerStalls;
+    private volatile long decoderStalls;
+
+    /**
+     * @param size        ring capacity, a power of two; bounds how far reading runs ahead of publishing
+     * @param decodeAhead how many decoded frames may wait for the publisher
+     */
+    ReplicationPipeline(int size, int decodeAhead, TagDispatcher dispatcher, Consumer<Change> publisher,
+                        IdleStrategy readerWait, IdleStrategy decoderWait, IdleStrategy publisherWait) {
+        if (Integer.bitCount(size) != 1) throw new IllegalArgumentException("Ring size must be a power of two: " + size);
+        this.ring = new Frame[size];
+        for (int i = 0; i < size; i++) ring[i] = new Frame();
+        this.mask = size - 1;
+        this.decodeAhead = Math.min(decodeAhead, size);
+        this.dispatcher = dispatcher;
+        this.publisher = publisher;
+        this.readerWait = readerWait;
+        this.decoderWait = decoderWait;
+        this.publisherWait = publisherWait;
+    }
+
+    void start() {
+        running = true;
+        new Thread(this::decodeLoop, "wal4j-decoder").start();
+        new Thread(this::publishLoop, "wal4j-publisher").start();
+    }
+
+    void stop() {
+        running = false;
+    }
+
+    /** Copies a message into the next frame, waiting while the ring is full. Reader thread only. */
+    void offer(ByteBuffer buffer, long lsn) {
+        long next = published.get() + 1;
+        if (next - ring.length > consumed.get()) {
+            readerStalls++;
+            while (next - ring.length > consumed.get()) readerWait.idle();
+            readerWait.reset();
+        }
+        Frame frame = ring[(int) next & mask];
+        frame.copy(buffer);
+        frame.lsn = lsn;
+        published.lazySet(next);
+    }
+
+    /** Waits until every offered frame has been published, or skipped after a failure. */
+    void awaitDrained() {
+        while (consumed.get() < published.get()) readerWait.idle();
+        readerWait.reset();
+    }
+
+    /** Publishes again after a failure, once drained and the stream restarted. */
+    void resume() {
+        halted = false;
+    }
+
+    /** Returns and clears the last decode or publish failure. */
+    Exception takeFailure() {
+        Exception e = failure;
+        if (e != null) failure = null;
+        return e;
+    }
+
+    private void decodeLoop() {
+        long next = decoded.get() + 1;
+        boolean stalled = false;
+        while (running) {
+            if (next > published.get() || next - decodeAhead > consumed.get()) {
+                if (!stalled && next <= published.get()) {
+                    stalled = true;
+                    decoderStalls++;
+                }
+                decoderWait.idle();
+                continue;
+            }
+            stalled = false;
+            decoderWait.reset();
+            Frame frame = ring[(int) next & mask];
+            try {
+                // every readPending() buffer carries exactly one pgoutput message
+                frame.decoded = dispatcher.dispatch(frame.buffer, frame.change);
+                frame.failed = false;
+            } catch (Exception e) {
+                frame.decoded = null;
+                frame.failed = true;
+                failure = e;
+            }
+            decoded.lazySet(next++);
+        }
+    }
+
+    private void publishLoop() {
+        long next = consumed.get() + 1;
+        while (running) {
+            if (next > decoded.get()) {
+                publisherWait.idle();
+                continue;
+            }
+            publisherWait.reset();
+            Frame frame = ring[(int) next & mask];
+            if (frame.failed) halted = true;
+            if (!halted && frame.decoded != null) {
+                try {
+                    publisher.accept(frame.decoded);
+                } catch (Exception e) {
+                    halted = true;
+                    failure = e;
+                }
+            }
+            consumed.lazySet(next++);
+        }
+    }
+
+    /** Frames copied but not yet decoded. */
+    public long decodeBacklog() { return published.get() - decoded.get(); }
+
+    /** Frames decoded but not yet published. */
+    public long publishBacklog() { return decoded.get() - consumed.get(); }
+
+    /** Share of the ring in use, between 0 and 1. */
+    public double occupancy() { return (double) (published.get() - consumed.get()) / ring.length; }
+
+    /** Times the reader found the ring full. */
+    public long readerStalls() { return readerStalls; }
+
+    /** Times the decoder had to wait for the publisher to catch up. */
+    public long decoderStalls() { return decoderStalls; }
+}
@@ -0,0 +1,25 @@
+package io.mhmtonrn;
+
+import org.postgresql.replication.PGReplicationStream;
+
+import java.sql.SQLException;
+
+/** Opens the stream the listener reads from; selected with {@code replication.source}. */
+public interface ReplicationStreamFactory {
+    PGReplicationStream createStream() throws SQLException;
+
+    /** Where relation definitions come from when a row arrives before its Relation message. */
+    default RelationCatalog catalog() {
+        return null;
+    }
+
+    /** Where the slot monitor reads the replication slot's state from, if it can be watched. */
+    default SlotProbe slotProbe() {
+        return null;
+    }
+
+    /** The heartbeat that keeps the slot moving while nothing is published, if one is configured. */
+    default Heartbeat heartbeat() {
+        return null;
+    }
+}
@@ -0,0 +1,28 @@
+package io.mhmtonrn;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Encodes a decoded change into an output format. Implementations keep their scratch buffers
+ * per thread and may be shared by every delivery thread. Selected with
+ * {@code replication.output.format}.
+ */
+public interface RowEncoder {
+
+    String format();
+
+    byte[] encode(Change change);
+
+    void encode(Change change, OutputStream out) throws IOException;
+
+    static RowEncoder of(String format) {
+        return switch (format) {
+            case "json" -> JsonEncoder.INSTANCE;
+            case "avro" -> new AvroEncoder();
+            case "protobuf" -> new ProtobufEncoder();
+            case "cbor" -> new CborEncoder();
+            default -> throw new IllegalArgumentException("Unknown output format: " + format);
+        };
+    }
+}
@@ -0,0 +1,30 @@
+package io.mhmtonrn;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Per-relation schemas for the binary encoders, keyed by relation id. A schema is rebuilt,
+ * and its version bumped, only when a Relation message changes the relation's shape.
+ */
+final class SchemaCache<S> {
+
+    record Entry<S>(RelationInfo relation, int version, S schema) {}
+
+    private final Map<Integer, Entry<S>> entries = new ConcurrentHashMap<>();
+    private final Function<RelationInfo, S> builder;
+
+    SchemaCache(Function<RelationInfo, S> builder) {
+        this.builder = builder;
+    }
+
+    Entry<S> get(RelationInfo relation) {
+        Entry<S> entry = entries.get(relation.id());
+        if (entry != null && (entry.relation() == relation || entry.relation().equals(relation))) return entry;
+        return entries.compute(relation.id(), (id, current) -> {
+            if (current != null && current.relation().equals(relation)) return current;
+            return new Entry<>(relation, current == null ? 1 : current.version() + 1, builder.apply(relation));
+        });
+    }
+}
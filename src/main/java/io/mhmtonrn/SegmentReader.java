@@ -0,0 +1,48 @@
+package io.mhmtonrn;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/** Reads the records written by {@link SegmentWriter} in order, as slices of the mapped files. */
+class SegmentReader {
+    private final List<Path> files;
+    private int fileIndex;
+    private MappedByteBuffer segment;
+    private long lsn;
+
+    SegmentReader(Path dir) throws IOException {
+        try (var list = Files.list(dir)) {
+            this.files = list.filter(p -> p.toString().endsWith(SegmentWriter.SUFFIX)).sorted().toList();
+        }
+    }
+
+    /** Returns the next payload, or {@code null} when all segments are consumed. */
+    ByteBuffer next() throws IOException {
+        while (true) {
+            if (segment != null && segment.remaining() >= SegmentWriter.HEADER) {
+                int length = segment.getInt();
+                if (length > 0) {
+                    lsn = segment.getLong();
+                    ByteBuffer payload = segment.slice(segment.position(), length);
+                    segment.position(segment.position() + length);
+                    return payload;
+                }
+            }
+            if (fileIndex == files.size()) return null;
+            try (FileChannel channel = FileChannel.open(files.get(fileIndex++), StandardOpenOption.READ)) {
+                segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+        }
+    }
+
+    /** LSN of the payload last returned by {@link #next()}. */
+    long lsn() {
+        return lsn;
+    }
+}
@@ -0,0 +1,71 @@
+package io.mhmtonrn;
+
+import org.postgresql.replication.LogSequenceNumber;
+import org.postgresql.replication.PGReplicationStream;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays captured segment files as fast as the consumer reads, reporting the recorded LSNs.
+ * Once every segment is consumed the stream behaves like an idle slot.
+ */
+class SegmentReplayStream implements PGReplicationStream {
+    private final SegmentReader reader;
+    private LogSequenceNumber receiveLsn = LogSequenceNumber.INVALID_LSN;
+    private volatile LogSequenceNumber flushedLsn = LogSequenceNumber.INVALID_LSN;
+    private volatile LogSequenceNumber appliedLsn = LogSequenceNumber.INVALID_LSN;
+    private volatile boolean closed;
+
+    SegmentReplayStream(Path dir) throws IOException {
+        this.reader = new SegmentReader(dir);
+    }
+
+    @Override
+    public ByteBuffer read() throws SQLException {
+        ByteBuffer buffer;
+        while ((buffer = readPending()) == null) {
+            LockSupport.parkNanos(1_000_000);
+        }
+        return buffer;
+    }
+
+    @Override
+    public ByteBuffer readPending() throws SQLException {
+        if (closed) throw new SQLException("Replication stream is closed");
+        try {
+            ByteBuffer payload = reader.next();
+            if (payload != null) receiveLsn = LogSequenceNumber.valueOf(reader.lsn());
+            return payload;
+        } catch (IOException e) {
+            throw new SQLException("Cannot read replay segment", e);
+        }
+    }
+
+    @Override
+    public LogSequenceNumber getLastReceiveLSN() { return receiveLsn; }
+
+    @Override
+    public LogSequenceNumber getLastFlushedLSN() { return flushedLsn; }
+
+    @Override
+    public LogSequenceNumber getLastAppliedLSN() { return appliedLsn; }
+
+    @Override
+    public void setFlushedLSN(LogSequenceNumber lsn) { this.flushedLsn = lsn; }
+
+    @Override
+    public void setAppliedLSN(LogSequenceNumber lsn) { this.appliedLsn = lsn; }
+
+    @Override
+    public void forceUpdateStatus() {}
+
+    @Override
+    public boolean isClosed() { return closed; }
+
+    @Override
+    public void close() { closed = true; }
+}
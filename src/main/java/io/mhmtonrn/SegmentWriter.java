@@ -0,0 +1,68 @@
+package io.mhmtonrn;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends raw replication messages with their LSN to memory-mapped segment files.
+ * Each record is {@code [int length][long lsn][payload]}; a zero length marks the end of
+ * the written part of a segment. Segments are named by their sequence number so they sort
+ * in write order.
+ */
+class SegmentWriter implements Closeable {
+    static final int HEADER = Integer.BYTES + Long.BYTES;
+    static final String SUFFIX = ".seg";
+
+    private final Path dir;
+    private final int segmentSize;
+    private long segmentIndex;
+    private MappedByteBuffer segment;
+
+    SegmentWriter(Path dir, int segmentSize) throws IOException {
+        this.dir = Files.createDirectories(dir);
+        this.segmentSize = segmentSize;
+        // continue after the newest segment; older ones may have been pruned
+        try (var files = Files.list(dir)) {
+            this.segmentIndex = files.map(p -> p.getFileName().toString())
+                    .filter(name -> name.matches("\\d+\\" + SUFFIX))
+                    .mapToLong(name -> Long.parseLong(name.substring(0, name.length() - SUFFIX.length())) + 1)
+                    .max().orElse(0);
+        }
+    }
+
+    void append(long lsn, ByteBuffer payload) throws IOException {
+        int length = payload.remaining();
+        if (segment == null || segment.remaining() < HEADER + length + Integer.BYTES) {
+            roll(HEADER + length + Integer.BYTES);
+        }
+        segment.putInt(length).putLong(lsn).put(payload.duplicate());
+    }
+
+    private void roll(int minSize) throws IOException {
+        if (segment != null) segment.force();
+        Path file = dir.resolve(String.format("%020d%s", segmentIndex++, SUFFIX));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(segmentSize, minSize));
+        }
+    }
+
+    /** Forces what was written so far to disk. */
+    void flush() {
+        if (segment != null) segment.force();
+    }
+
+    @Override
+    public void close() {
+        if (segment != null) {
+            segment.force();
+            segment = null;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package io.mhmtonrn;
+
+import io.mhmtonrn.event.SlotAlertEvent;
+import io.mhmtonrn.event.SlotAlertEvent.Alert;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Polls the replication slot on its own thread and connection, so a stuck listener is noticed
+ * before the WAL the slot retains fills the primary's disk. Each alert publishes a
+ * {@link SlotAlertEvent} when it is raised and when it clears; a threshold of 0 disables it.
+ */
+public final class SlotMonitor {
+    private final Object source;
+    private final ApplicationEventPublisher publisher;
+    private final SlotProbe probe;
+    private final long maxRetainedBytes;
+    private final long maxLagBytes;
+    private final LongSupplier receivedLsn;
+    private final LongSupplier flushedLsn;
+    private final Set<Alert> raised = EnumSet.noneOf(Alert.class);
+    private ScheduledExecutorService executor;
+    private volatile SlotStatus status;
+
+    SlotMonitor(Object source, ApplicationEventPublisher publisher, SlotProbe probe, long maxRetainedBytes,
+                long maxLagBytes, LongSupplier receivedLsn, LongSupplier flushedLsn) {
+        this.source = source;
+        this.publisher = publisher;
+        this.probe = probe;
+        this.maxRetainedBytes = maxRetainedBytes;
+        this.maxLagBytes = maxLagBytes;
+        this.receivedLsn = receivedLsn;
+        this.flushedLsn = flushedLsn;
+    }
+
+    void start(long intervalMillis) {
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "wal4j-slot-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::poll, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /** Stops polling and releases the probe's connection. */
+    void stop() {
+        if (executor != null) executor.shutdownNow();
+        synchronized (this) {
+            probe.close();
+        }
+    }
+
+    synchronized void poll() {
+        SlotStatus probed;
+        try {
+            probed = probe.probe();
+        } catch (Exception e) {
+            // keep the last status; the next poll reconnects
+            System.err.println("Slot monitor could not read the slot: " + e);
+            return;
+        }
+        if (probed == null) {
+            System.err.println("Slot monitor: replication slot not found");
+            return;
+        }
+        SlotStatus current = probed.withLocal(receivedLsn.getAsLong(), flushedLsn.getAsLong());
+        status = current;
+        check(Alert.LOST, "lost".equals(current.walStatus()), current);
+        check(Alert.INACTIVE, !current.active(), current);
+        check(Alert.RETAINED_WAL, maxRetainedBytes > 0 && current.retainedBytes() > maxRetainedBytes, current);
+        check(Alert.CONFIRMED_LAG, maxLagBytes > 0 && current.confirmedLagBytes() > maxLagBytes, current);
+    }
+
+    private void check(Alert alert, boolean condition, SlotStatus current) {
+        if (condition == raised.contains(alert)) return;
+        if (condition) raised.add(alert);
+        else raised.remove(alert);
+        System.err.println("Slot " + current.slot() + (condition ? ": raised " : ": cleared ") + alert
+                + " (retained " + current.retainedBytes() + " bytes, lag " + current.confirmedLagBytes() + " bytes)");
+        try {
+            publisher.publishEvent(new SlotAlertEvent(source, alert, condition, current));
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /** The last status read, or {@code null} before the first successful poll. */
+    public SlotStatus status() {
+        return status;
+    }
+
+    /** Alerts currently raised. */
+    public synchronized Set<Alert> alerts() {
+        return Set.copyOf(raised);
+    }
+}
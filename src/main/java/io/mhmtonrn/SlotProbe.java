@@ -0,0 +1,13 @@
+package io.mhmtonrn;
+
+import java.sql.SQLException;
+
+/** Reads the state of the replication slot, outside of the replication connection. */
+public interface SlotProbe {
+
+    /** The slot's state without the local LSNs, or {@code null} if the slot does not exist. */
+    SlotStatus probe() throws SQLException;
+
+    /** Releases the connection, if the probe holds one. */
+    default void close() {}
+}
@@ -0,0 +1,31 @@
+package io.mhmtonrn;
+
+/**
+ * The replication slot as the server sees it, next to this listener's own position. LSNs are
+ * 0 when unknown, e.g. {@code sentLsn} and {@code serverFlushLsn} while no walsender serves the slot.
+ *
+ * @param currentLsn       the server's current WAL position (last replayed on a standby)
+ * @param restartLsn       oldest WAL the slot keeps on disk
+ * @param confirmedFlushLsn what the server last heard this listener confirm
+ * @param receivedLsn      last position read from the stream here
+ * @param flushedLsn       last position confirmed to the server from here
+ */
+public record SlotStatus(String slot, boolean active, String walStatus, long currentLsn, long restartLsn,
+                         long confirmedFlushLsn, long sentLsn, long serverFlushLsn,
+                         long receivedLsn, long flushedLsn) {
+
+    /** WAL the slot holds back from removal, in bytes. */
+    public long retainedBytes() {
+        return restartLsn == 0 ? 0 : Math.max(0, currentLsn - restartLsn);
+    }
+
+    /** WAL written since the last confirmed position, in bytes. */
+    public long confirmedLagBytes() {
+        return confirmedFlushLsn == 0 ? 0 : Math.max(0, currentLsn - confirmedFlushLsn);
+    }
+
+    SlotStatus withLocal(long receivedLsn, long flushedLsn) {
+        return new SlotStatus(slot, active, walStatus, currentLsn, restartLsn, confirmedFlushLsn,
+                sentLsn, serverFlushLsn, receivedLsn, flushedLsn);
+    }
+}
@@ -0,0 +1,64 @@
+package io.mhmtonrn;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of the transaction buffers: what went to disk because the memory budget was used
+ * up, and how long writing and reading it back took. Apply workers and the publishing thread
+ * update them concurrently; any thread may read.
+ */
+public final class SpillStats {
+    private final LongAdder spilledTransactions = new LongAdder();
+    private final LongAdder spilledChanges = new LongAdder();
+    private final LongAdder spilledBytes = new LongAdder();
+    private final LongAdder spillFiles = new LongAdder();
+    private final LongAdder spillNanos = new LongAdder();
+    private final LongAdder readChanges = new LongAdder();
+    private final LongAdder readNanos = new LongAdder();
+    private final SpillStore store;
+
+    SpillStats(SpillStore store) {
+        this.store = store;
+    }
+
+    void spilledTransaction() { spilledTransactions.increment(); }
+
+    void spillFile() { spillFiles.increment(); }
+
+    void spilled(long bytes, long nanos) {
+        spilledChanges.increment();
+        spilledBytes.add(bytes);
+        spillNanos.add(nanos);
+    }
+
+    void read(long nanos) {
+        readChanges.increment();
+        readNanos.add(nanos);
+    }
+
+    /** Bytes of buffered changes currently held on the heap, counted against the budget. */
+    public long heapBytes() { return store.reserved(); }
+
+    public long spilledTransactions() { return spilledTransactions.sum(); }
+
+    public long spilledChanges() { return spilledChanges.sum(); }
+
+    public long spilledBytes() { return spilledBytes.sum(); }
+
+    public long spillFiles() { return spillFiles.sum(); }
+
+    /** Time spent writing changes to spill files. */
+    public long spillNanos() { return spillNanos.sum(); }
+
+    public long readChanges() { return readChanges.sum(); }
+
+    /** Time spent decoding spilled changes when their transaction is replayed, excluding delivery. */
+    public long readNanos() { return readNanos.sum(); }
+
+    @Override
+    public String toString() {
+        return "SpillStats[heapBytes=" + heapBytes() + ", spilledTransactions=" + spilledTransactions()
+                + ", spilledChanges=" + spilledChanges() + ", spilledBytes=" + spilledBytes()
+                + ", spillMs=" + spillNanos() / 1_000_000 + ", readMs=" + readNanos() / 1_000_000 + "]";
+    }
+}
@@ -0,0 +1,129 @@
+package io.mhmtonrn;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Memory budget shared by every {@link TransactionBuffer}, and the directory their overflow
+ * is spilled to. Buffers reserve heap for each change they keep; once the budget is used up
+ * new changes go to memory-mapped files instead. Spill files only live as long as their
+ * transaction, so files left over from a previous run are removed when the store is created;
+ * a directory must therefore not be shared by running instances. {@link #inTempDir} gives
+ * each store its own.
+ */
+final class SpillStore {
+    static final String SUFFIX = ".spill";
+
+    private final Path dir;
+    private final long memoryBudget;
+    private final int segmentSize;
+    private final AtomicLong reserved = new AtomicLong();
+    private final AtomicLong files = new AtomicLong();
+    private final SpillStats stats = new SpillStats(this);
+
+    /** Spills to {@code dir}, created if missing and emptied of spill files. */
+    SpillStore(Path dir, long memoryBudget, int segmentSize) {
+        this.dir = dir;
+        this.memoryBudget = memoryBudget;
+        this.segmentSize = segmentSize;
+        if (dir != null) clean(dir);
+    }
+
+    /**
+     * Spills to a new directory of this process under {@code base}, named after its pid.
+     * Directories of processes that are gone are removed first.
+     */
+    static SpillStore inTempDir(Path base, long memoryBudget, int segmentSize) {
+        try {
+            Files.createDirectories(base);
+            try (Stream<Path> dirs = Files.list(base)) {
+                dirs.filter(SpillStore::orphaned).forEach(orphan -> {
+                    clean(orphan);
+                    delete(orphan);
+                });
+            }
+            return new SpillStore(Files.createTempDirectory(base, ProcessHandle.current().pid() + "-"),
+                    memoryBudget, segmentSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** A store that keeps everything on the heap. */
+    static SpillStore unbounded() {
+        return new SpillStore(null, Long.MAX_VALUE, 0);
+    }
+
+    TransactionBuffer open() {
+        return new TransactionBuffer(this);
+    }
+
+    /**
+     * Takes {@code bytes} from the budget, or returns {@code false} if they do not fit.
+     * Without a spill directory the budget is not enforced.
+     */
+    boolean reserve(long bytes) {
+        while (true) {
+            long current = reserved.get();
+            if (dir != null && current + bytes > memoryBudget) return false;
+            if (reserved.compareAndSet(current, current + bytes)) return true;
+        }
+    }
+
+    void release(long bytes) {
+        reserved.addAndGet(-bytes);
+    }
+
+    long reserved() {
+        return reserved.get();
+    }
+
+    int segmentSize() {
+        return segmentSize;
+    }
+
+    SpillStats stats() {
+        return stats;
+    }
+
+    Path newFile() throws IOException {
+        if (dir == null) throw new IllegalStateException("No spill directory configured");
+        stats.spillFile();
+        return dir.resolve(String.format("%020d%s", files.getAndIncrement(), SUFFIX));
+    }
+
+    private static void clean(Path dir) {
+        try {
+            Files.createDirectories(dir);
+            try (Stream<Path> stale = Files.list(dir)) {
+                stale.filter(p -> p.toString().endsWith(SUFFIX)).forEach(SpillStore::delete);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** A directory named {@code <pid>-...} whose process no longer runs. */
+    private static boolean orphaned(Path dir) {
+        String name = dir.getFileName().toString();
+        int dash = name.indexOf('-');
+        if (dash <= 0 || !Files.isDirectory(dir)) return false;
+        try {
+            return ProcessHandle.of(Long.parseLong(name.substring(0, dash))).map(p -> !p.isAlive()).orElse(true);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
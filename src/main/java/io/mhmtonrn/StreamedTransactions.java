@@ -0,0 +1,167 @@
+package io.mhmtonrn;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per-xid state of large transactions the server streams while they are still in progress
+ * (proto_version 2, {@code streaming=on}). In {@code on-commit} mode their changes are held in
+ * a {@link TransactionBuffer}, spilling to disk past the memory budget, until Stream Commit,
+ * then published as one regular transaction; a Stream Abort drops them, or only those of the
+ * aborted subtransaction. In {@code eager} mode changes are
+ * published as they arrive and a Stream Abort is published as an {@code ABORT} change, for
+ * listeners to undo what they applied for that xid.
+ * Streamed rows reach the {@link ToastCache} only here: on commit in {@code on-commit} mode,
+ * and as uncommitted in {@code eager} mode, so rolled back values are never remembered.
+ * Used only by the thread that publishes.
+ */
+final class StreamedTransactions {
+
+    enum Mode { ON_COMMIT, EAGER }
+
+    private static final class Pending {
+        TransactionBuffer changes;
+        AckTracker.Transaction ack;
+    }
+
+    private final AckTracker ackTracker;
+    private final Mode mode;
+    private final SpillStore spill;
+    private final ParallelApplier applier;
+    private final ToastCache toast;
+    private final Map<Long, Pending> open = new HashMap<>();
+    private boolean handling;
+
+    StreamedTransactions(AckTracker ackTracker, Mode mode) {
+        this(ackTracker, mode, SpillStore.unbounded(), null, null);
+    }
+
+    /**
+     * @param applier when not null, row changes are decoded and held by its workers and only
+     *                commits and aborts pass through here; requires {@code on-commit} mode
+     * @param toast   fills unchanged TOAST values of streamed rows, when not null
+     */
+    StreamedTransactions(AckTracker ackTracker, Mode mode, SpillStore spill, ParallelApplier applier, ToastCache toast) {
+        if (applier != null && mode != Mode.ON_COMMIT) {
+            throw new IllegalArgumentException("Parallel apply delivers streamed transactions on commit only");
+        }
+        this.ackTracker = ackTracker;
+        this.mode = mode;
+        this.spill = spill;
+        this.applier = applier;
+        this.toast = toast;
+    }
+
+    static Mode mode(String name) {
+        return switch (name) {
+            case "on-commit" -> Mode.ON_COMMIT;
+            case "eager" -> Mode.EAGER;
+            default -> throw new IllegalArgumentException("Unknown streaming delivery: " + name);
+        };
+    }
+
+    void handle(Change change, EventDelivery delivery) {
+        handling = true;
+        switch (change.kind()) {
+            case COMMIT -> commit(change, delivery);
+            case ABORT -> abort(change, delivery);
+            default -> row(change, delivery);
+        }
+        handling = false;
+    }
+
+    private void row(Change change, EventDelivery delivery) {
+        Pending txn = open.computeIfAbsent(change.xid(), xid -> new Pending());
+        if (mode == Mode.EAGER) {
+            if (txn.ack == null) txn.ack = ackTracker.open();
+            txn.ack.retain();
+            if (toast != null) toast.applyUncommitted(change);
+            delivery.deliver(change, txn.ack);
+        } else {
+            if (txn.changes == null) txn.changes = spill.open();
+            txn.changes.add(change);
+        }
+    }
+
+    private void commit(Change change, EventDelivery delivery) {
+        Pending txn = open.remove(change.xid());
+        AckTracker.Transaction ack;
+        if (mode == Mode.EAGER) {
+            ack = txn != null && txn.ack != null ? txn.ack : ackTracker.open();
+        } else {
+            // take() fails for a transaction a worker could not decode, before it joins the commit order
+            TransactionBuffer changes = applier != null ? applier.take(change.xid()) : txn != null ? txn.changes : null;
+            ack = ackTracker.begin();
+            if (changes != null && toast == null) {
+                delivery.deliverTransaction(changes, change, ack);
+                ackTracker.commit(ack, change.endLsn());
+                return;
+            }
+            if (changes != null) {
+                // the cache fills and remembers the rows in order, so they are delivered one by one
+                try {
+                    changes.replay(buffered -> {
+                        toast.apply(buffered);
+                        ack.retain();
+                        delivery.deliver(buffered, ack);
+                    });
+                } finally {
+                    changes.close();
+                }
+            }
+        }
+        ack.retain();
+        delivery.deliver(change, ack);
+        ackTracker.commit(ack, change.endLsn());
+    }
+
+    private void abort(Change change, EventDelivery delivery) {
+        if (applier != null) {
+            applier.abort(change.xid(), change.subXid());
+            return;
+        }
+        Pending txn = open.get(change.xid());
+        if (txn == null) return;
+        boolean whole = change.subXid() == change.xid();
+        if (whole) open.remove(change.xid());
+        if (mode == Mode.EAGER) {
+            if (txn.ack == null) return;  // nothing was published yet
+            txn.ack.retain();
+            delivery.deliver(change, txn.ack);
+            if (whole) ackTracker.abort(txn.ack);
+        } else if (txn.changes != null) {
+            if (whole) {
+                txn.changes.close();
+            } else {
+                txn.changes.discard(change.subXid());
+            }
+        }
+    }
+
+    /** Whether a change was being published when it failed, leaving a transaction half delivered. */
+    boolean interrupted() {
+        return handling;
+    }
+
+    int openTransactions() {
+        return open.size();
+    }
+
+    /** Changes held in memory or spilled until their transaction commits. */
+    long bufferedChanges() {
+        long count = 0;
+        for (Pending txn : open.values()) {
+            if (txn.changes != null) count += txn.changes.size();
+        }
+        return count;
+    }
+
+    /** Forgets every open transaction; the server resends them after a restart. */
+    void clear() {
+        for (Pending txn : open.values()) {
+            if (txn.changes != null) txn.changes.close();
+        }
+        open.clear();
+        handling = false;
+    }
+}
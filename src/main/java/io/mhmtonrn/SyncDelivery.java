@@ -0,0 +1,30 @@
+package io.mhmtonrn;
+
+import io.mhmtonrn.event.CDCEvent;
+import org.springframework.context.ApplicationEventPublisher;
+
+/** Publishes on the calling thread; listeners see the zero-copy change itself. */
+final class SyncDelivery implements EventDelivery {
+    private final Object source;
+    private final ApplicationEventPublisher publisher;
+    private final RowEncoder encoder;
+    private ReplicationLag.Sink lag;
+
+    SyncDelivery(Object source, ApplicationEventPublisher publisher, RowEncoder encoder) {
+        this.source = source;
+        this.publisher = publisher;
+        this.encoder = encoder;
+    }
+
+    @Override
+    public void deliver(Change change, AckTracker.Transaction transaction) {
+        publisher.publishEvent(new CDCEvent(source, change, encoder));
+        if (lag != null) lag.record(change);
+        transaction.release();
+    }
+
+    @Override
+    public void trackLag(ReplicationLag.Sink sink) {
+        this.lag = sink;
+    }
+}
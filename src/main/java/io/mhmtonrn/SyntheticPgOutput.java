@@ -0,0 +1,89 @@
+package io.mhmtonrn;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+
+/**
+ * Generates an endless (or bounded) pgoutput stream for one synthetic relation: a Relation
+ * message followed by transactions of Begin, a mix of Insert/Update/Delete, and Commit.
+ * Row messages are drawn from a pre-generated pool so generation never dominates the decode cost.
+ */
+public class SyntheticPgOutput implements Iterator<byte[]> {
+    static final int REL_ID = 16384;
+    private static final int POOL_SIZE = 256;
+
+    private final RelationInfo relation;
+    private final int rowsPerTransaction;
+    private final long transactions;
+    private final byte[][] rows = new byte[POOL_SIZE][];
+    private final SplittableRandom random;
+    private final int columns;
+    private final int valueSize;
+    private final double nullRatio;
+
+    private boolean relationSent;
+    private long transaction;
+    private int rowInTransaction = -1;
+    private int nextRow;
+
+    /** @param transactions number of transactions to generate, or 0 for an endless stream */
+    public SyntheticPgOutput(int columns, int valueSize, double nullRatio, int rowsPerTransaction, long transactions) {
+        this.columns = columns;
+        this.valueSize = valueSize;
+        this.nullRatio = nullRatio;
+        this.rowsPerTransaction = rowsPerTransaction;
+        this.transactions = transactions;
+        this.random = new SplittableRandom(42);
+        List<ColumnInfo> cols = new ArrayList<>();
+        for (int i = 0; i < columns; i++) cols.add(new ColumnInfo("column_" + i, 25, i == 0));
+        this.relation = new RelationInfo(REL_ID, "public", "synthetic", cols);
+        for (int i = 0; i < POOL_SIZE; i++) {
+            int kind = random.nextInt(10);
+            rows[i] = kind < 6 ? PgOutputMessages.insert(REL_ID, row())
+                    : kind < 9 ? PgOutputMessages.update(REL_ID, null, row())
+                    : PgOutputMessages.delete(REL_ID, row());
+        }
+    }
+
+    public RelationInfo relation() { return relation; }
+
+    public String[] row() {
+        String[] values = new String[columns];
+        for (int i = 0; i < columns; i++) {
+            if (i > 0 && random.nextDouble() < nullRatio) continue;
+            char[] chars = new char[valueSize];
+            for (int c = 0; c < valueSize; c++) chars[c] = (char) ('a' + random.nextInt(26));
+            values[i] = new String(chars);
+        }
+        return values;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return transactions == 0 || transaction < transactions;
+    }
+
+    @Override
+    public byte[] next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        if (!relationSent) {
+            relationSent = true;
+            return PgOutputMessages.relation(relation);
+        }
+        long lsn = (transaction + 1) << 16;
+        if (rowInTransaction < 0) {
+            rowInTransaction = 0;
+            return PgOutputMessages.begin(lsn, 0, (int) transaction);
+        }
+        if (rowInTransaction < rowsPerTransaction) {
+            rowInTransaction++;
+            return rows[nextRow++ & (POOL_SIZE - 1)];
+        }
+        rowInTransaction = -1;
+        transaction++;
+        return PgOutputMessages.commit(lsn, lsn + 1, 0);
+    }
+}
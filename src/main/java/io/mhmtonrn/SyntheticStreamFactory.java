@@ -0,0 +1,34 @@
+package io.mhmtonrn;
+
+import org.postgresql.replication.PGReplicationStream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConditionalOnProperty(name = "replication.source", havingValue = "synthetic")
+class SyntheticStreamFactory implements ReplicationStreamFactory {
+    @Value("${replication.synthetic.rate:0}")
+    private long rate;
+
+    @Value("${replication.synthetic.columns:8}")
+    private int columns;
+
+    @Value("${replication.synthetic.value-size:16}")
+    private int valueSize;
+
+    @Value("${replication.synthetic.null-ratio:0.1}")
+    private double nullRatio;
+
+    @Value("${replication.synthetic.rows-per-transaction:10}")
+    private int rowsPerTransaction;
+
+    @Value("${replication.synthetic.transactions:0}")
+    private long transactions;
+
+    @Override
+    public PGReplicationStream createStream() {
+        SyntheticPgOutput source = new SyntheticPgOutput(columns, valueSize, nullRatio, rowsPerTransaction, transactions);
+        return new InMemoryReplicationStream(source, rate);
+    }
+}
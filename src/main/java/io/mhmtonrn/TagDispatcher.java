@@ -0,0 +1,115 @@
+package io.mhmtonrn;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/**
+ * Routes pgoutput messages to their handler through a table indexed by the tag byte.
+ * Tags without a registered handler go to the fallback.
+ */
+final class TagDispatcher {
+
+    /** Handles messages whose tag has no registered handler. */
+    interface UnknownTagHandler {
+        Change handle(char tag, ByteBuffer buffer, Change change);
+    }
+
+    /** Skips the rest of the message; each readPending() buffer carries exactly one pgoutput message. */
+    static final UnknownTagHandler SKIP = (tag, buffer, change) -> {
+        buffer.position(buffer.limit());
+        return null;
+    };
+
+    private final ReplicationEventHandler[] handlers = new ReplicationEventHandler[256];
+    private final StreamContext stream = new StreamContext();
+    private final TransactionContext transaction = new TransactionContext();
+    private UnknownTagHandler fallback = SKIP;
+    private ReplicationMetrics metrics;
+
+    /**
+     * Handlers for proto_version 1, plus the streaming messages of proto_version 2 and the
+     * logical decoding messages of {@link Heartbeat}s.
+     */
+    static TagDispatcher standard(Map<Integer, RelationInfo> relationMap) {
+        return standard(relationMap, null);
+    }
+
+    /** Standard handlers that fill unchanged TOAST values from {@code toast}, when not null. */
+    static TagDispatcher standard(Map<Integer, RelationInfo> relationMap, ToastCache toast) {
+        TagDispatcher dispatcher = new TagDispatcher();
+        StreamContext stream = dispatcher.stream;
+        return dispatcher
+                .register(new RelationHandler(relationMap, stream))
+                .register(new InsertHandler(relationMap, stream, dispatcher.transaction, toast))
+                .register(new UpdateHandler(relationMap, stream, dispatcher.transaction, toast))
+                .register(new DeleteHandler(relationMap, stream, dispatcher.transaction, toast))
+                .register(new CommitHandler(dispatcher.transaction))
+                .register(new BeginHandler(dispatcher.transaction))
+                .register(new StreamStartHandler(stream))
+                .register(new StreamStopHandler(stream))
+                .register(new MessageHandler(stream, Heartbeat.PREFIX))
+                .register(new StreamCommitHandler())
+                .register(new StreamAbortHandler(stream));
+    }
+
+    /** Decodes the following messages as part of a stream block of {@code xid}. */
+    void enterStream(int xid) {
+        stream.inStream = true;
+        stream.xid = xid;
+    }
+
+    /** Whether Stream Abort messages carry the abort LSN and time, as negotiated for the slot. */
+    void streamAbortPositions(boolean enabled) {
+        stream.abortPositions = enabled;
+    }
+
+    /** Forgets decoder state tied to the connection, e.g. an open stream block. */
+    void reset() {
+        stream.reset();
+    }
+
+    TagDispatcher register(ReplicationEventHandler handler) {
+        return register(handler.tag(), handler);
+    }
+
+    TagDispatcher register(char tag, ReplicationEventHandler handler) {
+        if (tag > 0xFF) throw new IllegalArgumentException("Tag out of range: " + (int) tag);
+        handlers[tag] = handler;
+        return this;
+    }
+
+    TagDispatcher fallback(UnknownTagHandler fallback) {
+        this.fallback = fallback;
+        return this;
+    }
+
+    /** Counts and times every dispatched message; {@code null} turns it off. */
+    void metrics(ReplicationMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    ReplicationEventHandler handlerFor(char tag) {
+        return handlers[tag & 0xFF];
+    }
+
+    Change dispatch(ByteBuffer buffer, Change change) {
+        int tag = buffer.get() & 0xFF;
+        ReplicationEventHandler handler = handlers[tag];
+        if (metrics != null) {
+            return dispatchTimed(tag, handler, buffer, change);
+        }
+        if (handler == null) {
+            return fallback.handle((char) tag, buffer, change);
+        }
+        return handler.handle(buffer, change);
+    }
+
+    private Change dispatchTimed(int tag, ReplicationEventHandler handler, ByteBuffer buffer, Change change) {
+        long started = System.nanoTime();
+        try {
+            return handler == null ? fallback.handle((char) tag, buffer, change) : handler.handle(buffer, change);
+        } finally {
+            metrics.decoded(tag, System.nanoTime() - started);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package io.mhmtonrn;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Last seen large values per row, keyed by relation and replica identity key, used to fill in
+ * the columns an update leaves out because their TOASTed value did not change ({@code 'u'}).
+ * Only values of at least {@code minValueSize} bytes are kept: the server moves the largest
+ * values of an oversized row out of line first, so small ones are rarely TOASTed. Values live
+ * in one direct buffer written as a ring, so memory is bounded and off the heap; an entry is
+ * gone once the ring wrapped past it. The heap only holds the index, limited to
+ * {@code maxEntries} least recently used keys.
+ * Only as good as the changes it saw: rows last written before it started are misses.
+ */
+final class ToastCache {
+    /** Entry: {@code [short columns]} then per column {@code [short index][byte binary][int length][value]}. */
+    private static final int COLUMN_HEADER = Short.BYTES + 1 + Integer.BYTES;
+
+    private record Key(byte[] bytes) {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key other && Arrays.equals(bytes, other.bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(bytes);
+        }
+    }
+
+    private final ByteBuffer ring;
+    private final int capacity;
+    private final int minValueSize;
+    private final Map<Key, Long> index;
+    private long written;
+    private volatile long hits;
+    private volatile long misses;
+
+    ToastCache(int capacity, int maxEntries, int minValueSize) {
+        this.ring = ByteBuffer.allocateDirect(capacity);
+        this.capacity = capacity;
+        this.minValueSize = minValueSize;
+        this.index = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Long> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Fills the unchanged columns of an update from the cache, then remembers the large values
+     * of inserted and updated rows and forgets deleted ones. An update that changed the key is
+     * looked up by its old key, which is then forgotten.
+     */
+    synchronized void apply(Change change) {
+        switch (change.kind()) {
+            case INSERT -> remember(change.relation(), change.newRow());
+            case UPDATE -> {
+                TupleView row = change.newRow();
+                Key oldKey = oldKey(change);
+                if (row.unchangedCount() > 0) fill(oldKey != null ? oldKey : key(change.relation(), row), row);
+                if (oldKey != null) index.remove(oldKey);
+                remember(change.relation(), row);
+            }
+            case DELETE -> {
+                if (index.isEmpty()) return;
+                Key key = key(change.relation(), change.oldRow());
+                if (key != null) index.remove(key);
+            }
+            default -> {}
+        }
+    }
+
+    /**
+     * Fills the unchanged columns of a change that may still be rolled back, like a streamed
+     * row delivered eagerly, and forgets its row: the cached value may no longer be the last
+     * committed one.
+     */
+    synchronized void applyUncommitted(Change change) {
+        TupleView row = change.kind() == Change.Kind.DELETE ? change.oldRow() : change.newRow();
+        if (row == null || index.isEmpty()) return;
+        Key key = key(change.relation(), row);
+        if (change.kind() == Change.Kind.UPDATE) {
+            Key oldKey = oldKey(change);
+            if (row.unchangedCount() > 0) fill(oldKey != null ? oldKey : key, row);
+            if (oldKey != null) index.remove(oldKey);
+        }
+        if (key != null) index.remove(key);
+    }
+
+    /** Key of the old image of an update, or {@code null} if it has none. */
+    private static Key oldKey(Change change) {
+        TupleView old = change.oldRow();
+        return old == null ? null : key(change.relation(), old);
+    }
+
+    private void fill(Key key, TupleView row) {
+        Long position = key == null ? null : index.get(key);
+        if (position == null || written - position > capacity) {
+            misses += row.unchangedCount();
+            return;
+        }
+        byte[][] values = new byte[row.size()][];
+        boolean[] binary = new boolean[row.size()];
+        int p = (int) (position % capacity);
+        int n = ring.getShort(p);
+        p += Short.BYTES;
+        int found = 0;
+        for (int c = 0; c < n; c++) {
+            int column = ring.getShort(p);
+            int len = ring.getInt(p + 3);
+            if (column < row.size() && row.isUnchanged(column)) {
+                values[column] = new byte[len];
+                ring.get(p + COLUMN_HEADER, values[column]);
+                binary[column] = ring.get(p + Short.BYTES) != 0;
+                found++;
+            }
+            p += COLUMN_HEADER + len;
+        }
+        hits += found;
+        misses += row.unchangedCount() - found;
+        if (found > 0) row.fillUnchanged(values, binary);
+    }
+
+    private void remember(RelationInfo relation, TupleView row) {
+        int size = Short.BYTES, columns = 0;
+        for (int i = 0; i < row.size(); i++) {
+            if (row.length(i) >= minValueSize) {
+                size += COLUMN_HEADER + row.length(i);
+                columns++;
+            }
+        }
+        Key key = key(relation, row);
+        if (key == null) return;
+        // nothing new to keep: the entry for this key, if any, is stale now
+        if (columns == 0 || size > capacity) {
+            index.remove(key);
+            return;
+        }
+        // entries never wrap: skip the tail of the ring if the entry does not fit before the end
+        int p = (int) (written % capacity);
+        if (p + size > capacity) {
+            written += capacity - p;
+            p = 0;
+        }
+        index.put(key, written);
+        written += size;
+        ring.putShort(p, (short) columns);
+        p += Short.BYTES;
+        for (int i = 0; i < row.size(); i++) {
+            int len = row.length(i);
+            if (len < minValueSize) continue;
+            ring.putShort(p, (short) i).put(p + Short.BYTES, (byte) (row.isBinary(i) ? 1 : 0)).putInt(p + 3, len);
+            ring.put(p + COLUMN_HEADER, row.buffer(), row.offset(i), len);
+            p += COLUMN_HEADER + len;
+        }
+    }
+
+    /** Relation id and raw key column values, or {@code null} if a key value is missing. */
+    private static Key key(RelationInfo relation, TupleView row) {
+        int size = Integer.BYTES;
+        for (int i = 0; i < row.size(); i++) {
+            if (!row.column(i).key()) continue;
+            if (row.isUnchanged(i)) return null;
+            size += Integer.BYTES + Math.max(row.length(i), 0);
+        }
+        if (size == Integer.BYTES) return null;
+        ByteBuffer key = ByteBuffer.allocate(size).putInt(relation.id());
+        for (int i = 0; i < row.size(); i++) {
+            if (!row.column(i).key()) continue;
+            key.putInt(row.length(i));
+            if (row.length(i) > 0) key.put(key.position(), row.buffer(), row.offset(i), row.length(i)).position(key.position() + row.length(i));
+        }
+        return new Key(key.array());
+    }
+
+    /** Unchanged values filled in from the cache. */
+    long hits() { return hits; }
+
+    /** Unchanged values that could not be filled in. */
+    long misses() { return misses; }
+}
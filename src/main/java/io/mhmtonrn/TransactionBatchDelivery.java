@@ -0,0 +1,68 @@
+package io.mhmtonrn;
+
+import io.mhmtonrn.event.TransactionBatch;
+import org.springframework.context.ApplicationEventPublisher;
+
+/**
+ * Collects the row changes of each transaction in a {@link TransactionBuffer} and publishes
+ * them as one {@link TransactionBatch} when the commit arrives, on the calling thread.
+ * Rows are released as soon as they are buffered; the commit is released after the listeners
+ * return, so the transaction is confirmed only once the batch was handled. A streamed
+ * transaction arrives already buffered and is published from that buffer.
+ */
+final class TransactionBatchDelivery implements EventDelivery {
+    private final Object source;
+    private final ApplicationEventPublisher publisher;
+    private final RowEncoder encoder;
+    private ReplicationLag.Sink lag;
+    private final SpillStore spill;
+    private TransactionBuffer rows;
+
+    TransactionBatchDelivery(Object source, ApplicationEventPublisher publisher, RowEncoder encoder, SpillStore spill) {
+        this.source = source;
+        this.publisher = publisher;
+        this.encoder = encoder;
+        this.spill = spill;
+    }
+
+    @Override
+    public void deliver(Change change, AckTracker.Transaction transaction) {
+        if (change.kind() != Change.Kind.COMMIT) {
+            if (rows == null) rows = spill.open();
+            rows.add(change);
+            transaction.release();
+            return;
+        }
+        TransactionBuffer batch = rows;
+        rows = null;
+        try {
+            publisher.publishEvent(batch == null
+                    ? new TransactionBatch(source, change, 0, action -> {}, encoder)
+                    : new TransactionBatch(source, change, batch.size(), batch::replay, encoder));
+        } finally {
+            if (batch != null) batch.close();
+        }
+        if (lag != null) lag.record(change);
+        transaction.release();
+    }
+
+    @Override
+    public void deliverTransaction(TransactionBuffer streamed, Change commit, AckTracker.Transaction transaction) {
+        reset();
+        rows = streamed;
+        transaction.retain();
+        deliver(commit, transaction);
+    }
+
+    @Override
+    public void trackLag(ReplicationLag.Sink sink) {
+        this.lag = sink;
+    }
+
+    /** Drops the rows of a transaction that was cut off; the server resends it after a restart. */
+    @Override
+    public void reset() {
+        if (rows != null) rows.close();
+        rows = null;
+    }
+}
@@ -0,0 +1,188 @@
+package io.mhmtonrn;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * The row changes of one transaction, held until it commits. Changes are copied to the heap
+ * while the {@link SpillStore} budget allows; after that every further change of the
+ * transaction is appended to memory-mapped spill files, so replay order is heap first, then
+ * disk. Spilled records are {@code [int length][byte kind][byte flags][int xid][int subXid]
+ * [long timestamp][int relation][old TupleData][new TupleData]} and are decoded again into one
+ * reused {@link Change} on {@link #replay}, with the same xid and commit time as a heap copy.
+ * Used by one thread at a time.
+ */
+final class TransactionBuffer implements Closeable {
+    private static final int RECORD_HEADER = Integer.BYTES + 2 + 3 * Integer.BYTES + Long.BYTES;
+    /** Rough heap cost of a copied change besides its tuple bytes. */
+    private static final int CHANGE_OVERHEAD = 256;
+    private static final byte HAS_OLD = 1, HAS_NEW = 2, STREAMED = 4;
+    private static final Change.Kind[] KINDS = Change.Kind.values();
+
+    private final SpillStore store;
+    private final List<Change> heap = new ArrayList<>();
+    private long heapBytes;
+    private final List<Path> files = new ArrayList<>();
+    private MappedByteBuffer segment;
+    private long spilled;
+    private final List<RelationInfo> relations = new ArrayList<>();
+    private final Map<RelationInfo, Integer> relationIndex = new IdentityHashMap<>();
+    /** Aborted subtransactions whose spilled changes are skipped on replay. */
+    private final Set<Long> discarded = new HashSet<>();
+    private final long[] counts = new long[KINDS.length];
+
+    TransactionBuffer(SpillStore store) {
+        this.store = store;
+    }
+
+    /** Keeps a copy of {@code change}, which may be a reused flyweight. */
+    void add(Change change) {
+        long bytes = CHANGE_OVERHEAD + rawSize(change.oldRow()) + rawSize(change.newRow());
+        counts[change.kind().ordinal()]++;
+        if (files.isEmpty() && store.reserve(bytes)) {
+            heap.add(change.copy());
+            heapBytes += bytes;
+        } else {
+            spill(change);
+        }
+    }
+
+    /** Drops the changes made by an aborted subtransaction. */
+    void discard(long subXid) {
+        heap.removeIf(change -> {
+            if (change.subXid() != subXid) return false;
+            long bytes = CHANGE_OVERHEAD + rawSize(change.oldRow()) + rawSize(change.newRow());
+            heapBytes -= bytes;
+            store.release(bytes);
+            counts[change.kind().ordinal()]--;
+            return true;
+        });
+        if (spilled > 0) discarded.add(subXid);
+    }
+
+    /** Number of changes held; spilled changes of aborted subtransactions still count. */
+    long size() {
+        return heap.size() + spilled;
+    }
+
+    /** Number of changes of one kind held, counted like {@link #size()}. */
+    long count(Change.Kind kind) {
+        return counts[kind.ordinal()];
+    }
+
+    boolean isSpilled() {
+        return spilled > 0;
+    }
+
+    /**
+     * Passes every change to {@code action} in the order they were added. Spilled changes are
+     * decoded into one reused instance, valid only during the call, like any dispatched change.
+     */
+    void replay(Consumer<Change> action) {
+        for (Change change : heap) action.accept(change);
+        if (spilled == 0) return;
+        segment = null;
+        Change change = new Change();
+        for (Path file : files) {
+            MappedByteBuffer data;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            while (data.remaining() >= Integer.BYTES) {
+                long started = System.nanoTime();
+                int length = data.getInt();
+                if (length == 0) break;  // the rest of the segment was never written
+                int next = data.position() + length;
+                if (read(data, change)) {
+                    store.stats().read(System.nanoTime() - started);
+                    action.accept(change);
+                }
+                data.position(next);
+            }
+        }
+    }
+
+    /** Returns the heap to the budget and deletes the spill files. */
+    @Override
+    public void close() {
+        store.release(heapBytes);
+        heapBytes = 0;
+        heap.clear();
+        segment = null;
+        for (Path file : files) SpillStore.delete(file);
+        files.clear();
+        spilled = 0;
+        discarded.clear();
+        Arrays.fill(counts, 0);
+    }
+
+    private void spill(Change change) {
+        long started = System.nanoTime();
+        TupleView oldRow = change.oldRow(), newRow = change.newRow();
+        int length = RECORD_HEADER - Integer.BYTES + rawSize(oldRow) + rawSize(newRow);
+        try {
+            ensure(Integer.BYTES + length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Integer relation = relationIndex.get(change.relation());
+        if (relation == null) {
+            relation = relations.size();
+            relations.add(change.relation());
+            relationIndex.put(change.relation(), relation);
+        }
+        byte flags = (byte) ((oldRow != null ? HAS_OLD : 0) | (newRow != null ? HAS_NEW : 0)
+                | (change.streamed() ? STREAMED : 0));
+        segment.putInt(length).put((byte) change.kind().ordinal()).put(flags)
+                .putInt((int) change.xid()).putInt((int) change.subXid()).putLong(change.timestamp()).putInt(relation);
+        if (oldRow != null) oldRow.copyRaw(segment);
+        if (newRow != null) newRow.copyRaw(segment);
+        if (spilled++ == 0) store.stats().spilledTransaction();
+        store.stats().spilled(Integer.BYTES + length, System.nanoTime() - started);
+    }
+
+    private boolean read(MappedByteBuffer data, Change change) {
+        Change.Kind kind = KINDS[data.get()];
+        byte flags = data.get();
+        int xid = data.getInt();
+        int subXid = data.getInt();
+        long timestamp = data.getLong();
+        if (discarded.contains(Integer.toUnsignedLong(subXid))) return false;
+        change.row(kind, relations.get(data.getInt())).committedAt(timestamp);
+        if ((flags & STREAMED) != 0) change.streamed(xid, subXid);
+        else change.transaction(xid);
+        if ((flags & HAS_OLD) != 0) change.wrapOld(data);
+        if ((flags & HAS_NEW) != 0) change.wrapNew(data);
+        return true;
+    }
+
+    /** Makes room for {@code size} bytes plus the zero length that ends a segment. */
+    private void ensure(int size) throws IOException {
+        if (segment != null && segment.remaining() >= size + Integer.BYTES) return;
+        Path file = store.newFile();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(store.segmentSize(), size + Integer.BYTES));
+        }
+        files.add(file);
+    }
+
+    private static int rawSize(TupleView row) {
+        return row == null ? 0 : row.rawSize();
+    }
+}
@@ -0,0 +1,263 @@
+package io.mhmtonrn;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Flyweight view over a pgoutput TupleData block. Only column offsets and lengths are
+ * recorded while decoding; values are materialized when a consumer asks for them.
+ * A view is reused for every row, so it is only valid until the next message is decoded.
+ * Columns the server left out of an update because their TOASTed value did not change
+ * ({@code 'u'}) read as null until {@link #fillUnchanged} supplies their value.
+ */
+public final class TupleView {
+    private static final int NULL = -1;
+    private static final int UNCHANGED = -2;
+
+    private ByteBuffer buffer;
+    private List<ColumnInfo> columns;
+    private int count;
+    private int start;
+    private int end;
+    private int[] offsets = new int[16];
+    private int[] lengths = new int[16];
+    private boolean[] binary = new boolean[16];
+    private byte[] owned;
+    private byte[] merged;
+    private int unchanged;
+
+    void wrap(ByteBuffer buffer, List<ColumnInfo> columns) {
+        this.buffer = buffer;
+        this.columns = columns;
+        this.start = buffer.position();
+        this.count = buffer.getShort();
+        this.unchanged = 0;
+        ensureCapacity(count);
+        for (int i = 0; i < count; i++) {
+            byte fmt = buffer.get();
+            binary[i] = fmt == 'b';
+            if (fmt == 'n') {
+                lengths[i] = NULL;
+            } else if (fmt == 'u') {
+                lengths[i] = UNCHANGED;
+                unchanged++;
+            } else {
+                int len = buffer.getInt();
+                offsets[i] = buffer.position();
+                lengths[i] = len;
+                buffer.position(buffer.position() + len);
+            }
+        }
+        this.end = buffer.position();
+    }
+
+    static void skip(ByteBuffer buffer) {
+        short count = buffer.getShort();
+        for (int i = 0; i < count; i++) {
+            byte fmt = buffer.get();
+            if (fmt != 'n' && fmt != 'u') {
+                int len = buffer.getInt();
+                buffer.position(buffer.position() + len);
+            }
+        }
+    }
+
+    public int size() { return count; }
+
+    public String name(int i) { return columns.get(i).name(); }
+
+    public ColumnInfo column(int i) { return columns.get(i); }
+
+    /** Whether column {@code i} has no value: SQL null, or an unchanged TOAST value that was not sent. */
+    public boolean isNull(int i) { return lengths[i] < 0; }
+
+    /** Whether column {@code i} is a TOASTed value the server did not resend because it did not change. */
+    public boolean isUnchanged(int i) { return lengths[i] == UNCHANGED; }
+
+    /** Number of {@link #isUnchanged} columns. */
+    public int unchangedCount() { return unchanged; }
+
+    public int length(int i) { return lengths[i]; }
+
+    /** Whether column {@code i} was sent in binary mode ({@code 'b'}) rather than as text. */
+    public boolean isBinary(int i) { return binary[i]; }
+
+    /** The codec for the wire form column {@code i} arrived in. */
+    TypeCodec codec(int i) {
+        ColumnInfo column = columns.get(i);
+        return binary[i] ? column.binaryCodec() : column.codec();
+    }
+
+    /** Whether the raw bytes of column {@code i} are its UTF-8 text and can be copied as is. */
+    boolean textual(int i) {
+        return !binary[i] || columns.get(i).binaryCodec().textual();
+    }
+
+    int offset(int i) { return offsets[i]; }
+
+    ByteBuffer buffer() { return buffer; }
+
+    List<ColumnInfo> columns() { return columns; }
+
+    /** The value in text form; binary values are rendered the way the server prints them. */
+    public String getString(int i) {
+        int len = lengths[i];
+        if (len < 0) return null;
+        if (!textual(i)) return codec(i).toText(buffer, offsets[i], len);
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + offsets[i], len, StandardCharsets.UTF_8);
+        }
+        return new String(getBytes(i), StandardCharsets.UTF_8);
+    }
+
+    /** The raw value bytes: the text, or the binary send form in binary mode. */
+    public byte[] getBytes(int i) {
+        int len = lengths[i];
+        if (len < 0) return null;
+        byte[] data = new byte[len];
+        buffer.get(offsets[i], data, 0, len);
+        return data;
+    }
+
+    /** Copies the raw value of column {@code i} into {@code dst} and returns the number of bytes written. */
+    public int getBytes(int i, byte[] dst, int dstOffset) {
+        int len = lengths[i];
+        if (len < 0) return 0;
+        buffer.get(offsets[i], dst, dstOffset, len);
+        return len;
+    }
+
+    /** The decoded value of column {@code i}, as chosen by its {@link TypeCodec}. */
+    public Object getValue(int i) {
+        int len = lengths[i];
+        if (len < 0) return null;
+        return codec(i).decode(buffer, offsets[i], len);
+    }
+
+    public long getLong(int i) {
+        return codec(i).decodeLong(buffer, offsets[i], present(i));
+    }
+
+    public int getInt(int i) {
+        return Math.toIntExact(getLong(i));
+    }
+
+    public double getDouble(int i) {
+        return codec(i).decodeDouble(buffer, offsets[i], present(i));
+    }
+
+    public boolean getBoolean(int i) {
+        return codec(i).decodeBoolean(buffer, offsets[i], present(i));
+    }
+
+    public Instant getInstant(int i) {
+        int len = lengths[i];
+        if (len < 0) return null;
+        return codec(i).decodeInstant(buffer, offsets[i], len);
+    }
+
+    public BigDecimal getDecimal(int i) {
+        int len = lengths[i];
+        if (len < 0) return null;
+        return codec(i).decodeDecimal(buffer, offsets[i], len);
+    }
+
+    /** Length of a column read as a primitive, which cannot represent null. */
+    private int present(int i) {
+        int len = lengths[i];
+        if (len < 0) throw new NullPointerException("Column " + name(i) + " is null");
+        return len;
+    }
+
+    /** Hash of the raw value of column {@code i}, computed without materializing it. */
+    public int hash(int i) {
+        int len = lengths[i];
+        if (len < 0) return 0;
+        int h = 1;
+        for (int p = offsets[i], end = p + len; p < end; p++) h = 31 * h + buffer.get(p);
+        return h;
+    }
+
+    /** Column names to text values; unchanged TOAST columns are left out. */
+    public Map<String, String> toMap() {
+        Map<String, String> row = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            if (!isUnchanged(i)) row.put(name(i), getString(i));
+        }
+        return row;
+    }
+
+    /**
+     * Rebuilds this view with values for its unchanged columns: {@code values[i]} holds the raw
+     * value of column {@code i} and {@code binaryValues[i]} its wire form. Columns without a
+     * value stay unchanged. The rebuilt tuple lives in a buffer owned by this view.
+     */
+    void fillUnchanged(byte[][] values, boolean[] binaryValues) {
+        int size = Short.BYTES;
+        for (int i = 0; i < count; i++) {
+            int len = isUnchanged(i) && values[i] != null ? values[i].length : lengths[i];
+            size += 1 + (len >= 0 ? Integer.BYTES + len : 0);
+        }
+        // a second fill reads from the buffer the first one built
+        if (merged == null || merged.length < size || buffer.hasArray() && buffer.array() == merged) {
+            merged = new byte[Math.max(size, 256)];
+        }
+        ByteBuffer out = ByteBuffer.wrap(merged);
+        out.putShort((short) count);
+        for (int i = 0; i < count; i++) {
+            if (isUnchanged(i) && values[i] != null) {
+                out.put((byte) (binaryValues[i] ? 'b' : 't')).putInt(values[i].length).put(values[i]);
+            } else if (lengths[i] == NULL) {
+                out.put((byte) 'n');
+            } else if (lengths[i] == UNCHANGED) {
+                out.put((byte) 'u');
+            } else {
+                out.put((byte) (binary[i] ? 'b' : 't')).putInt(lengths[i]).put(out.position(), buffer, offsets[i], lengths[i]);
+                out.position(out.position() + lengths[i]);
+            }
+        }
+        wrap(out.flip(), columns);
+    }
+
+    /** Size of the TupleData block this view was decoded from. */
+    int rawSize() { return end - start; }
+
+    /** Appends the TupleData block this view was decoded from, which {@link #wrap} can decode again. */
+    void copyRaw(ByteBuffer dst) {
+        dst.put(dst.position(), buffer, start, end - start);
+        dst.position(dst.position() + end - start);
+    }
+
+    /** Makes this view an independent copy of {@code other}, owning its own bytes. */
+    void copyFrom(TupleView other) {
+        int size = other.end - other.start;
+        if (owned == null || owned.length < size) owned = new byte[Math.max(size, 64)];
+        other.buffer.get(other.start, owned, 0, size);
+        this.buffer = ByteBuffer.wrap(owned);
+        this.columns = other.columns;
+        this.count = other.count;
+        this.unchanged = other.unchanged;
+        this.start = 0;
+        this.end = size;
+        ensureCapacity(count);
+        for (int i = 0; i < count; i++) {
+            offsets[i] = other.offsets[i] - other.start;
+            lengths[i] = other.lengths[i];
+            binary[i] = other.binary[i];
+        }
+    }
+
+    private void ensureCapacity(int n) {
+        if (offsets.length < n) {
+            offsets = Arrays.copyOf(offsets, n);
+            lengths = Arrays.copyOf(lengths, n);
+            binary = Arrays.copyOf(binary, n);
+        }
+    }
+}
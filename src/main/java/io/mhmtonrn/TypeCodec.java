@@ -0,0 +1,60 @@
+package io.mhmtonrn;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+/**
+ * Decodes one PostgreSQL type from its wire form (text, or binary for the codecs in
+ * {@link BinaryCodecs}), read in place from the replication buffer. The typed methods parse
+ * straight into primitives; a codec only overrides the ones that make sense for its type,
+ * the defaults go through the text.
+ */
+public interface TypeCodec {
+
+    /** How the binary output formats represent values of this type. */
+    ValueKind kind();
+
+    /** The value as a compact object: a boxed primitive, {@link Instant}, {@code UUID}, list, etc. */
+    Object decode(ByteBuffer buffer, int offset, int length);
+
+    /** The value in the server's text form, rendered from a binary value if needed. */
+    default String toText(ByteBuffer buffer, int offset, int length) {
+        return String.valueOf(decode(buffer, offset, length));
+    }
+
+    /** Whether the value bytes are already the UTF-8 text of the value. */
+    default boolean textual() {
+        return false;
+    }
+
+    default long decodeLong(ByteBuffer buffer, int offset, int length) {
+        return Long.parseLong(toText(buffer, offset, length));
+    }
+
+    default double decodeDouble(ByteBuffer buffer, int offset, int length) {
+        return Double.parseDouble(toText(buffer, offset, length));
+    }
+
+    default boolean decodeBoolean(ByteBuffer buffer, int offset, int length) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " is not a boolean type");
+    }
+
+    default Instant decodeInstant(ByteBuffer buffer, int offset, int length) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " is not a timestamp type");
+    }
+
+    default BigDecimal decodeDecimal(ByteBuffer buffer, int offset, int length) {
+        return new BigDecimal(toText(buffer, offset, length));
+    }
+
+    static String text(ByteBuffer buffer, int offset, int length) {
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + offset, length, StandardCharsets.UTF_8);
+        }
+        byte[] data = new byte[length];
+        buffer.get(offset, data, 0, length);
+        return new String(data, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,459 @@
+package io.mhmtonrn;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of {@link TypeCodec}s keyed by type OID, one for the text and one for the binary
+ * wire form. Types without a codec are decoded as text, or exposed as raw bytes in binary
+ * mode. Codecs are looked up once per column when a Relation message arrives, never per row.
+ */
+public final class TypeCodecs {
+    private TypeCodecs() {}
+
+    public static final TypeCodec TEXT = new Text(ValueKind.STRING);
+    public static final TypeCodec BOOL = new Bool();
+    public static final TypeCodec INT2 = new Int(ValueKind.INT);
+    public static final TypeCodec INT4 = new Int(ValueKind.INT);
+    public static final TypeCodec INT8 = new Int(ValueKind.LONG);
+    public static final TypeCodec FLOAT4 = new Floating(ValueKind.FLOAT);
+    public static final TypeCodec FLOAT8 = new Floating(ValueKind.DOUBLE);
+    public static final TypeCodec NUMERIC = new Numeric();
+    public static final TypeCodec UUID = new Uuid();
+    public static final TypeCodec DATE = new Date();
+    public static final TypeCodec TIMESTAMP = new Timestamp(false);
+    public static final TypeCodec TIMESTAMPTZ = new Timestamp(true);
+    public static final TypeCodec JSON = new Text(ValueKind.STRING);
+    public static final TypeCodec BYTEA = new Bytea();
+
+    private static final Map<Integer, TypeCodec> CODECS = new ConcurrentHashMap<>();
+    private static final Map<Integer, TypeCodec> BINARY = new ConcurrentHashMap<>();
+
+    static {
+        register(16, BOOL);
+        register(17, BYTEA);
+        register(20, INT8);
+        register(21, INT2);
+        register(23, INT4);
+        register(25, TEXT);
+        register(114, JSON);
+        register(700, FLOAT4);
+        register(701, FLOAT8);
+        register(1082, DATE);
+        register(1114, TIMESTAMP);
+        register(1184, TIMESTAMPTZ);
+        register(1700, NUMERIC);
+        register(2950, UUID);
+        register(3802, JSON);
+        register(1000, new Array(BOOL));
+        register(1001, new Array(BYTEA));
+        register(1005, new Array(INT2));
+        register(1007, new Array(INT4));
+        register(1016, new Array(INT8));
+        register(1009, new Array(TEXT));
+        register(1015, new Array(TEXT));   // varchar[]
+        register(1021, new Array(FLOAT4));
+        register(1022, new Array(FLOAT8));
+        register(1182, new Array(DATE));
+        register(1115, new Array(TIMESTAMP));
+        register(1185, new Array(TIMESTAMPTZ));
+        register(1231, new Array(NUMERIC));
+        register(2951, new Array(UUID));
+        register(199, new Array(JSON));
+        register(3807, new Array(JSON));
+
+        // the binary form of the text types is their text
+        for (int oid : new int[]{19, 25, 114, 1042, 1043}) registerBinary(oid, TEXT);
+        registerBinary(16, BinaryCodecs.BOOL);
+        registerBinary(17, BinaryCodecs.BYTEA);
+        registerBinary(20, BinaryCodecs.INT8);
+        registerBinary(21, BinaryCodecs.INT2);
+        registerBinary(23, BinaryCodecs.INT4);
+        registerBinary(700, BinaryCodecs.FLOAT4);
+        registerBinary(701, BinaryCodecs.FLOAT8);
+        registerBinary(1082, BinaryCodecs.DATE);
+        registerBinary(1114, BinaryCodecs.TIMESTAMP);
+        registerBinary(1184, BinaryCodecs.TIMESTAMPTZ);
+        registerBinary(1700, BinaryCodecs.NUMERIC);
+        registerBinary(2950, BinaryCodecs.UUID);
+        registerBinary(3802, BinaryCodecs.JSONB);
+        registerBinary(26, BinaryCodecs.OID);
+        registerBinary(18, BinaryCodecs.CHAR);
+        registerBinary(1083, BinaryCodecs.TIME);
+        registerBinary(1266, BinaryCodecs.TIMETZ);
+        registerBinary(1186, BinaryCodecs.INTERVAL);
+        registerBinary(869, BinaryCodecs.INET);
+        registerBinary(650, BinaryCodecs.INET);
+        registerBinary(790, BinaryCodecs.MONEY);
+        registerBinary(1000, new BinaryCodecs.Array(BinaryCodecs.BOOL));
+        registerBinary(1001, new BinaryCodecs.Array(BinaryCodecs.BYTEA));
+        registerBinary(1005, new BinaryCodecs.Array(BinaryCodecs.INT2));
+        registerBinary(1007, new BinaryCodecs.Array(BinaryCodecs.INT4));
+        registerBinary(1016, new BinaryCodecs.Array(BinaryCodecs.INT8));
+        registerBinary(1009, new BinaryCodecs.Array(TEXT));
+        registerBinary(1015, new BinaryCodecs.Array(TEXT));
+        registerBinary(1021, new BinaryCodecs.Array(BinaryCodecs.FLOAT4));
+        registerBinary(1022, new BinaryCodecs.Array(BinaryCodecs.FLOAT8));
+        registerBinary(1182, new BinaryCodecs.Array(BinaryCodecs.DATE));
+        registerBinary(1115, new BinaryCodecs.Array(BinaryCodecs.TIMESTAMP));
+        registerBinary(1185, new BinaryCodecs.Array(BinaryCodecs.TIMESTAMPTZ));
+        registerBinary(1231, new BinaryCodecs.Array(BinaryCodecs.NUMERIC));
+        registerBinary(2951, new BinaryCodecs.Array(BinaryCodecs.UUID));
+        registerBinary(199, new BinaryCodecs.Array(TEXT));
+        registerBinary(3807, new BinaryCodecs.Array(BinaryCodecs.JSONB));
+        registerBinary(1028, new BinaryCodecs.Array(BinaryCodecs.OID));
+        registerBinary(1183, new BinaryCodecs.Array(BinaryCodecs.TIME));
+        registerBinary(1270, new BinaryCodecs.Array(BinaryCodecs.TIMETZ));
+        registerBinary(1187, new BinaryCodecs.Array(BinaryCodecs.INTERVAL));
+        registerBinary(1041, new BinaryCodecs.Array(BinaryCodecs.INET));
+        registerBinary(651, new BinaryCodecs.Array(BinaryCodecs.INET));
+    }
+
+    /** Registers a codec for a type, e.g. an extension type whose OID is known. */
+    public static void register(int typeOID, TypeCodec codec) {
+        CODECS.put(typeOID, codec);
+    }
+
+    /** Registers a codec for the binary form of a type, used when pgoutput binary mode is on. */
+    public static void registerBinary(int typeOID, TypeCodec codec) {
+        BINARY.put(typeOID, codec);
+    }
+
+    public static TypeCodec forOid(int typeOID) {
+        return CODECS.getOrDefault(typeOID, TEXT);
+    }
+
+    public static TypeCodec binaryForOid(int typeOID) {
+        return BINARY.getOrDefault(typeOID, BinaryCodecs.RAW);
+    }
+
+    /** Codecs of the text wire form, whose value bytes are the text itself. */
+    abstract static class TextForm implements TypeCodec {
+        public String toText(ByteBuffer buffer, int offset, int length) {
+            return TypeCodec.text(buffer, offset, length);
+        }
+
+        public boolean textual() { return true; }
+    }
+
+    static final class Text extends TextForm {
+        private final ValueKind kind;
+
+        Text(ValueKind kind) { this.kind = kind; }
+
+        public ValueKind kind() { return kind; }
+
+        public Object decode(ByteBuffer buffer, int offset, int length) {
+            return TypeCodec.text(buffer, offset, length);
+        }
+
+    }
+
+    static final class Bool extends TextForm {
+        public ValueKind kind() { return ValueKind.BOOLEAN; }
+
+        public Object decode(ByteBuffer buffer, int offset, int length) {
+            return decodeBoolean(buffer, offset, length);
+        }
+
+        public boolean decodeBoolean(ByteBuffer buffer, int offset, int length) {
+            return buffer.get(offset) == 't';
+        }
+
+        public long decodeLong(ByteBuffer buffer, int offset, int length) {
+            return decodeBoolean(buffer, offset, length) ? 1 : 0;
+        }
+    }
+
+    static final class Int extends TextForm {
+        private final ValueKind kind;
+
+        Int(ValueKind kind) { this.kind = kind; }
+
+        public ValueKind kind() { return kind; }
+
+        public Object decode(ByteBuffer buffer, int offset, int length) {
+            long value = decodeLong(buffer, offset, length);
+            return kind == ValueKind.INT ? (Object) (int) value : (Object) value;
+        }
+
+        public long decodeLong(ByteBuffer buffer, int offset, int length) {
+            return parseLong(buffer, offset, offset + length);
+        }
+
+        public double decodeDouble(ByteBuffer buffer, int offset, int length) {
+            return decodeLong(buffer, offset, length);
+        }
+
+        public BigDecimal decodeDecimal(ByteBuffer buffer, int offset, int length) {
+            return BigDecimal.valueOf(decodeLong(buffer, offset, length));
+        }
+    }
+
+    static final class Floating extends TextForm {
+        private final ValueKind kind;
+
+        Floating(ValueKind kind) { this.kind = kind; }
+
+        public ValueKind kind() { return kind; }
+
+        public Object decode(ByteBuffer buffer, int offset, int length) {
+            double value = decodeDouble(buffer, offset, length);
+            return kind == ValueKind.FLOAT ? (Object) (float) value : (Object) value;
+        }
+
+        public double decodeDouble(ByteBuffer buffer, int offset, int length) {
+            String text = TypeCodec.text(buffer, offset, length);
+            return kind == ValueKind.FLOAT ? Float.parseFloat(text) : Double.parseDouble(text);
+        }
+    }
+
+    /** Decoded as {@link BigDecimal}, or as a double for {@code NaN} and the infinities. */
+    static final class Numeric extends TextForm {
+        public ValueKind kind() { return ValueKind.STRING; }
+
+        public Object decode(ByteBuffer buffer, int offset, int length) {
+            byte last = buffer.get(offset + length - 1);
+            if (last == 'N' || last == 'y') return decodeDouble(buffer, offset, length);
+            return decodeDecimal(buffer, offset, length);
+        }
+
+        public long decodeLong(ByteBuffer buffer, int offset, int length) {
+            return decodeDecimal(buffer, offset, length).longValueExact();
+        }
+    }
+
+    static final class Uuid extends TextForm {
+        public ValueKind kind() { return ValueKind.STRING; }
+
+        public Object decode(ByteBuffer buffer, int offset, int length) {
+            long msb = 0;
+            long lsb = 0;
+            int digits = 0;
+            for (int p = offset, end = offset + length; p < end; p++) {
+                byte b = buffer.get(p);
+                if (b == '-' || b == '{' || b == '}') continue;
+                int nibble = Character.digit(b, 16);
+                if (digits++ < 16) msb = msb << 4 | nibble; else lsb = lsb << 4 | nibble;
+            }
+            return new java.util.UUID(msb, lsb);
+        }
+    }
+
+    /** {@code decodeLong} is the epoch day; {@code infinity} maps to {@link LocalDate#MAX}. */
+    static final class Date extends TextForm {
+        public ValueKind kind() { return ValueKind.STRING; }
+
+        public Object decode(ByteBuffer buffer, int offset, int length) {
+            Scan scan = new Scan(buffer, offset, length);
+            if (scan.infinity() != 0) return scan.infinity() > 0 ? LocalDate.MAX : LocalDate.MIN;
+            LocalDate date = scan.date();
+            return scan.bc() ? date.withYear(1 - date.getYear()) : date;
+        }
+
+        public long decodeLong(ByteBuffer buffer, int offset, int length) {
+            return ((LocalDate) decode(buffer, offset, length)).toEpochDay();
+        }
+
+        public Instant decodeInstant(ByteBuffer buffer, int offset, int length) {
+            return Instant.ofEpochSecond(decodeLong(buffer, offset, length) * 86400);
+        }
+    }
+
+    /**
+     * ISO timestamps as the server prints them. Values without a zone decode to
+     * {@link LocalDateTime} and are read as UTC by {@code decodeInstant}; {@code decodeLong}
+     * is microseconds since the epoch.
+     */
+    static final class Timestamp extends TextForm {
+        private final boolean zoned;
+
+        Timestamp(boolean zoned) { this.zoned = zoned; }
+
+        public ValueKind kind() { return ValueKind.STRING; }
+
+        public Object decode(ByteBuffer buffer, int offset, int length) {
+            Instant instant = decodeInstant(buffer, offset, length);
+            if (zoned || instant == Instant.MAX || instant == Instant.MIN) return instant;
+            return LocalDateTime.ofEpochSecond(instant.getEpochSecond(), instant.getNano(), ZoneOffset.UTC);
+        }
+
+        public Instant decodeInstant(ByteBuffer buffer, int offset, int length) {
+            Scan scan = new Scan(buffer, offset, length);
+            if (scan.infinity() != 0) return scan.infinity() > 0 ? Instant.MAX : Instant.MIN;
+            LocalDate date = scan.date();
+            scan.p++;  // ' '
+            long seconds = scan.digits() * 3600L;
+            scan.p++;
+            seconds += scan.digits() * 60L;
+            scan.p++;
+            seconds += scan.digits();
+            int nanos = 0;
+            if (scan.peek() == '.') {
+                scan.p++;
+                int start = scan.p;
+                nanos = (int) scan.digits();
+                for (int n = scan.p - start; n < 9; n++) nanos *= 10;
+            }
+            int sign = scan.peek();
+            if (sign == '+' || sign == '-') {
+                scan.p++;
+                int offsetSeconds = (int) scan.digits() * 3600;
+                if (scan.peek() == ':') {
+                    scan.p++;
+                    offsetSeconds += (int) scan.digits() * 60;
+                }
+                if (scan.peek() == ':') {
+                    scan.p++;
+                    offsetSeconds += (int) scan.digits();
+                }
+                seconds -= sign == '+' ? offsetSeconds : -offsetSeconds;
+            }
+            if (scan.bc()) date = date.withYear(1 - date.getYear());
+            return Instant.ofEpochSecond(date.toEpochDay() * 86400 + seconds, nanos);
+        }
+
+        public long decodeLong(ByteBuffer buffer, int offset, int length) {
+            Instant instant = decodeInstant(buffer, offset, length);
+            return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1_000_000L), instant.getNano() / 1000);
+        }
+    }
+
+    /** Text form is {@code \x} followed by hex digits; decoded to a byte array. */
+    static final class Bytea extends TextForm {
+        public ValueKind kind() { return ValueKind.BYTES; }
+
+        public Object decode(ByteBuffer buffer, int offset, int length) {
+            byte[] data = new byte[(length - 2) / 2];
+            for (int i = 0, p = offset + 2; i < data.length; i++, p += 2) {
+                data[i] = (byte) (Character.digit(buffer.get(p), 16) << 4 | Character.digit(buffer.get(p + 1), 16));
+            }
+            return data;
+        }
+    }
+
+    /**
+     * One-dimensional or nested arrays, decoded to lists of element values; {@code NULL}
+     * elements become {@code null}. Quoted elements are unescaped before decoding.
+     */
+    static final class Array extends TextForm {
+        private final TypeCodec element;
+
+        Array(TypeCodec element) { this.element = element; }
+
+        public ValueKind kind() { return ValueKind.STRING; }
+
+        public Object decode(ByteBuffer buffer, int offset, int length) {
+            Scan scan = new Scan(buffer, offset, length);
+            if (scan.peek() == '[') {
+                // explicit bounds, e.g. [0:2]={1,2,3}
+                while (buffer.get(scan.p) != '=') scan.p++;
+                scan.p++;
+            }
+            return list(scan);
+        }
+
+        private List<Object> list(Scan scan) {
+            List<Object> values = new ArrayList<>();
+            scan.p++;  // '{'
+            if (scan.peek() == '}') {
+                scan.p++;
+                return values;
+            }
+            while (true) {
+                int c = scan.peek();
+                if (c == '{') {
+                    values.add(list(scan));
+                } else if (c == '"') {
+                    values.add(quoted(scan));
+                } else {
+                    int start = scan.p;
+                    while (scan.peek() != ',' && scan.peek() != '}') scan.p++;
+                    int len = scan.p - start;
+                    values.add(len == 4 && isNull(scan.buffer, start) ? null : element.decode(scan.buffer, start, len));
+                }
+                if (scan.buffer.get(scan.p++) == '}') return values;
+            }
+        }
+
+        private Object quoted(Scan scan) {
+            BinaryWriter text = new BinaryWriter();
+            scan.p++;
+            byte b;
+            while ((b = scan.buffer.get(scan.p++)) != '"') {
+                text.put(b == '\\' ? scan.buffer.get(scan.p++) : b);
+            }
+            byte[] data = text.toByteArray();
+            return element.decode(ByteBuffer.wrap(data), 0, data.length);
+        }
+
+        private static boolean isNull(ByteBuffer buffer, int p) {
+            return buffer.get(p) == 'N' && buffer.get(p + 1) == 'U' && buffer.get(p + 2) == 'L' && buffer.get(p + 3) == 'L';
+        }
+    }
+
+    static long parseLong(ByteBuffer buffer, int p, int end) {
+        boolean negative = buffer.get(p) == '-';
+        if (negative) p++;
+        long value = 0;
+        for (; p < end; p++) value = value * 10 - (buffer.get(p) - '0');
+        return negative ? value : -value;
+    }
+
+    /** Cursor over a date or timestamp in ISO form. */
+    private static final class Scan {
+        final ByteBuffer buffer;
+        final int start;
+        final int end;
+        int p;
+
+        Scan(ByteBuffer buffer, int offset, int length) {
+            this.buffer = buffer;
+            this.start = offset;
+            this.p = offset;
+            this.end = offset + length;
+        }
+
+        int peek() {
+            return p < end ? buffer.get(p) : -1;
+        }
+
+        long digits() {
+            long value = 0;
+            int c;
+            while ((c = peek()) >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                p++;
+            }
+            return value;
+        }
+
+        /** 1 for {@code infinity}, -1 for {@code -infinity}, otherwise 0. */
+        int infinity() {
+            int c = buffer.get(p);
+            return c == 'i' ? 1 : c == '-' && buffer.get(p + 1) == 'i' ? -1 : 0;
+        }
+
+        LocalDate date() {
+            int year = (int) digits();
+            p++;
+            int month = (int) digits();
+            p++;
+            int day = (int) digits();
+            return LocalDate.of(year, month, day);
+        }
+
+        /** Whether the value ends in {@code " BC"}; the year is then counted backwards. */
+        boolean bc() {
+            return end - start >= 3 && buffer.get(end - 1) == 'C' && buffer.get(end - 2) == 'B' && buffer.get(end - 3) == ' ';
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package io.mhmtonrn;
+
+/** How the binary output formats represent a column; see {@link TypeCodec#kind()}. */
+public enum ValueKind {
+    BOOLEAN, INT, LONG, FLOAT, DOUBLE, BYTES, STRING
+}
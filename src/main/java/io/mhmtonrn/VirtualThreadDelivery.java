@@ -0,0 +1,119 @@
+package io.mhmtonrn;
+
+import io.mhmtonrn.event.CDCEvent;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Publishes changes on virtual threads, for listeners that block on I/O. Changes are split
+ * into many key partitions the same way as {@link PartitionedDelivery}; a partition with
+ * pending changes is drained by its own virtual thread, so changes to one row stay in order
+ * while thousands of rows can be in flight at once. {@code maxInFlight} bounds the number of
+ * undelivered changes and pushes back on the replication thread when reached. Commit events
+ * go to the first partition, so like with {@link PartitionedDelivery} a listener may see a
+ * commit before rows of the same transaction still running on other partitions; the
+ * transaction is only acknowledged once all of them finish.
+ */
+final class VirtualThreadDelivery implements EventDelivery {
+
+    private record Task(Change change, AckTracker.Transaction transaction) {}
+
+    private final class Partition implements Runnable {
+        private final Queue<Task> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        void submit(Task task) {
+            queue.add(task);
+            schedule();
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) executor.execute(this);
+        }
+
+        @Override
+        public void run() {
+            try {
+                Task task;
+                while ((task = queue.poll()) != null) {
+                    handle(task);
+                }
+            } finally {
+                scheduled.set(false);
+            }
+            // a change may have been added after the last poll but before the flag was cleared
+            if (!queue.isEmpty()) schedule();
+        }
+    }
+
+    private final Object source;
+    private final ApplicationEventPublisher publisher;
+    private final RowEncoder encoder;
+    private ReplicationLag.Sink lag;
+    private final Partition[] partitions;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private volatile Exception failure;
+
+    VirtualThreadDelivery(Object source, ApplicationEventPublisher publisher, RowEncoder encoder, int partitions, int maxInFlight) {
+        this.source = source;
+        this.publisher = publisher;
+        this.encoder = encoder;
+        this.partitions = new Partition[partitions];
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    /** Called from a single thread, so partitions can be created lazily without locking. */
+    @Override
+    public void deliver(Change change, AckTracker.Transaction transaction) {
+        int index = change.kind() == Change.Kind.COMMIT ? 0 : Math.floorMod(change.partitionHash(), partitions.length);
+        Partition partition = partitions[index];
+        if (partition == null) partitions[index] = partition = new Partition();
+        inFlight.acquireUninterruptibly();
+        partition.submit(new Task(change.copy(), transaction));
+    }
+
+    private void handle(Task task) {
+        try {
+            publisher.publishEvent(new CDCEvent(source, task.change(), encoder));
+            if (lag != null) lag.record(task.change());
+            task.transaction().release();
+        } catch (Throwable t) {
+            // left unreleased: the transaction is redelivered after the stream restarts
+            failure = t instanceof Exception e ? e : new IllegalStateException("Listener failed", t);
+        } finally {
+            inFlight.release();
+        }
+    }
+
+    @Override
+    public Exception takeFailure() {
+        Exception e = failure;
+        if (e != null) failure = null;
+        return e;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public void awaitIdle() {
+        inFlight.acquireUninterruptibly(maxInFlight);
+        inFlight.release(maxInFlight);
+    }
+
+    @Override
+    public void trackLag(ReplicationLag.Sink sink) {
+        this.lag = sink;
+    }
+}
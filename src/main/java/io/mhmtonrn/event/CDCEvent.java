@@ -1,15 +1,86 @@
 package io.mhmtonrn.event;
 
+import io.mhmtonrn.Change;
+import io.mhmtonrn.JsonWriter;
+import io.mhmtonrn.RowEncoder;
 import org.springframework.context.ApplicationEvent;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
 public class CDCEvent extends ApplicationEvent {
-    private final String message;
+    private final Change change;
+    private final RowEncoder encoder;
+    private byte[] payload;
+    private String message;
 
     public CDCEvent(Object source, String message) {
         super(source);
+        this.change = null;
+        this.encoder = null;
         this.message = message;
     }
+
+    public CDCEvent(Object source, Change change) {
+        this(source, change, null);
+    }
+
+    /** An event whose payload is encoded by {@code encoder}; {@code null} means JSON. */
+    public CDCEvent(Object source, Change change, RowEncoder encoder) {
+        super(source);
+        this.change = change;
+        this.encoder = encoder;
+    }
+
+    /**
+     * The decoded change. It is a view over the replication buffer and is only valid during
+     * the listener callback; call {@link Change#copy()} to keep it.
+     */
+    public Change getChange() {
+        return change;
+    }
+
+    /** The output format of {@link #getPayload()}. */
+    public String getFormat() {
+        return encoder == null ? "json" : encoder.format();
+    }
+
+    /**
+     * The change in the configured output format (UTF-8 JSON by default), encoded on first use
+     * straight from the tuple bytes.
+     */
+    public byte[] getPayload() {
+        if (payload == null) {
+            if (change == null) {
+                payload = message.getBytes(StandardCharsets.UTF_8);
+            } else if (encoder == null) {
+                payload = JsonWriter.local().write(change).toByteArray();
+            } else {
+                payload = encoder.encode(change);
+            }
+        }
+        return payload;
+    }
+
+    /** Writes the payload without keeping a copy of it, unless one was already made. */
+    public void writePayload(OutputStream out) throws IOException {
+        if (payload != null || change == null) {
+            out.write(getPayload());
+        } else if (encoder == null) {
+            JsonWriter.local().write(change).writeTo(out);
+        } else {
+            encoder.encode(change, out);
+        }
+    }
+
+    /** The change as JSON text, whatever the payload format. */
     public String getMessage() {
+        if (message == null) {
+            message = encoder == null || encoder.format().equals("json")
+                    ? new String(getPayload(), StandardCharsets.UTF_8)
+                    : JsonWriter.local().write(change).toString();
+        }
         return message;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,35 @@
+package io.mhmtonrn.event;
+
+import io.mhmtonrn.Change;
+import org.springframework.context.ApplicationEvent;
+
+import java.util.List;
+
+/**
+ * Consecutive events collected up to a size or age limit, published instead of single
+ * {@link CDCEvent}s when {@code replication.delivery.mode=batch}. A batch may span several
+ * small transactions and end in the middle of one; {@code COMMIT} events mark the boundaries.
+ * The changes are copies and stay valid after the callback. Everything in the batch is
+ * confirmed to the server only once the listeners return.
+ */
+public class CDCEventBatch extends ApplicationEvent {
+    private final List<CDCEvent> events;
+
+    public CDCEventBatch(Object source, List<CDCEvent> events) {
+        super(source);
+        this.events = events;
+    }
+
+    public List<CDCEvent> getEvents() {
+        return events;
+    }
+
+    public int size() {
+        return events.size();
+    }
+
+    /** The changes of {@link #getEvents()}, in order. */
+    public List<Change> getChanges() {
+        return events.stream().map(CDCEvent::getChange).toList();
+    }
+}
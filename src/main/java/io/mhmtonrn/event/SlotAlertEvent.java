@@ -0,0 +1,47 @@
+package io.mhmtonrn.event;
+
+import io.mhmtonrn.SlotStatus;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published by the slot monitor ({@code replication.slot-monitor.enabled}) when an alert is
+ * raised and again when it clears, on the monitor's thread. Listeners can throttle or restart
+ * their sinks, or page someone before the primary runs out of disk.
+ */
+public class SlotAlertEvent extends ApplicationEvent {
+
+    public enum Alert {
+        /** The slot holds back more WAL than {@code max-retained-bytes}. */
+        RETAINED_WAL,
+        /** The confirmed position is more than {@code max-lag-bytes} behind the server. */
+        CONFIRMED_LAG,
+        /** No walsender is streaming from the slot. */
+        INACTIVE,
+        /** The server removed WAL the slot still needed; the slot can no longer be used. */
+        LOST
+    }
+
+    private final Alert alert;
+    private final boolean raised;
+    private final SlotStatus status;
+
+    public SlotAlertEvent(Object source, Alert alert, boolean raised, SlotStatus status) {
+        super(source);
+        this.alert = alert;
+        this.raised = raised;
+        this.status = status;
+    }
+
+    public Alert getAlert() {
+        return alert;
+    }
+
+    /** {@code true} when the condition started, {@code false} when it cleared. */
+    public boolean isRaised() {
+        return raised;
+    }
+
+    public SlotStatus getStatus() {
+        return status;
+    }
+}
@@ -0,0 +1,126 @@
+package io.mhmtonrn.event;
+
+import io.mhmtonrn.Change;
+import io.mhmtonrn.JsonWriter;
+import io.mhmtonrn.RowEncoder;
+import org.springframework.context.ApplicationEvent;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * One committed transaction, published instead of a {@link CDCEvent} per row when
+ * {@code replication.delivery.mode=transaction}. The row changes may be partly read back from
+ * spill files, so they are replayed on demand and only valid during the listener callback.
+ */
+public class TransactionBatch extends ApplicationEvent {
+    private final Change commit;
+    private final long size;
+    private final Consumer<Consumer<Change>> replay;
+    private final RowEncoder encoder;
+
+    /**
+     * @param commit the {@code COMMIT} change closing the transaction
+     * @param replay passes the row changes, in order, to the given consumer
+     */
+    public TransactionBatch(Object source, Change commit, long size, Consumer<Consumer<Change>> replay, RowEncoder encoder) {
+        super(source);
+        this.commit = commit;
+        this.size = size;
+        this.replay = replay;
+        this.encoder = encoder;
+    }
+
+    public long getXid() {
+        return commit.xid();
+    }
+
+    /** LSN of the commit record. */
+    public long getLsn() {
+        return commit.lsn();
+    }
+
+    /** End LSN of the transaction; the position confirmed to the server once listeners return. */
+    public long getEndLsn() {
+        return commit.endLsn();
+    }
+
+    /** Commit time in microseconds since 2000-01-01, as sent by the server. */
+    public long getCommitTimestamp() {
+        return commit.timestamp();
+    }
+
+    /** The commit itself, for encoding alongside the rows. */
+    public Change getCommit() {
+        return commit;
+    }
+
+    /** Number of row changes. */
+    public long size() {
+        return size;
+    }
+
+    /** Passes each row change in commit order; the instance passed may be reused between calls. */
+    public void forEach(Consumer<Change> action) {
+        replay.accept(action);
+    }
+
+    /** Copies of all row changes. Prefer {@link #forEach} for transactions that may not fit the heap. */
+    public List<Change> getChanges() {
+        List<Change> changes = new ArrayList<>((int) Math.min(size, Integer.MAX_VALUE));
+        forEach(change -> changes.add(change.copy()));
+        return changes;
+    }
+
+    /** The output format of {@link #writePayload}. */
+    public String getFormat() {
+        return encoder == null ? "json" : encoder.format();
+    }
+
+    /**
+     * Writes every row change in the configured output format: JSON as one object per line,
+     * binary formats each prefixed by its length as an unsigned varint.
+     */
+    public void writePayload(OutputStream out) throws IOException {
+        try {
+            forEach(change -> {
+                try {
+                    if (encoder == null || encoder.format().equals("json")) {
+                        JsonWriter.local().write(change).writeTo(out);
+                        out.write('\n');
+                    } else {
+                        byte[] payload = encoder.encode(change);
+                        for (int v = payload.length; ; v >>>= 7) {
+                            if ((v & ~0x7F) == 0) {
+                                out.write(v);
+                                break;
+                            }
+                            out.write((v & 0x7F) | 0x80);
+                        }
+                        out.write(payload);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /** {@link #writePayload} into one array. */
+    public byte[] getPayload() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            writePayload(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
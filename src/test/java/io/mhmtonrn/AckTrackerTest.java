@@ -0,0 +1,59 @@
+package io.mhmtonrn;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AckTrackerTest {
+
+    @Test
+    void confirmsOnlyTheCompletedPrefix() {
+        AckTracker tracker = new AckTracker();
+        AckTracker.Transaction first = tracker.begin();
+        first.retain();
+        tracker.commit(first, 100);
+        AckTracker.Transaction second = tracker.begin();
+        tracker.commit(second, 200);
+
+        assertEquals(0, tracker.confirmedLsn(), "second is done but first still has an event in flight");
+        first.release();
+        assertEquals(200, tracker.confirmedLsn());
+        assertEquals(2, tracker.committed());
+    }
+
+    @Test
+    void flushesCommitEndLsnInBatches() throws Exception {
+        List<byte[]> messages = new ArrayList<>();
+        new SyntheticPgOutput(2, 4, 0, 1, 3).forEachRemaining(messages::add);
+        InMemoryReplicationStream stream = InMemoryReplicationStream.of(messages);
+        AckTracker tracker = new AckTracker();
+        LsnAcknowledger acknowledger = new LsnAcknowledger(tracker, 2, Long.MAX_VALUE);
+
+        AckTracker.Transaction txn = null;
+        Change change = new Change();
+        TagDispatcher dispatcher = TagDispatcher.standard(new HashMap<>());
+        ByteBuffer buffer;
+        List<Long> flushed = new ArrayList<>();
+        while ((buffer = stream.readPending()) != null) {
+            Change decoded = dispatcher.dispatch(buffer, change);
+            if (decoded != null) {
+                if (txn == null) txn = tracker.begin();
+                if (decoded.kind() == Change.Kind.COMMIT) {
+                    tracker.commit(txn, decoded.endLsn());
+                    txn = null;
+                }
+            }
+            acknowledger.maybeFlush(stream);
+            flushed.add(stream.getLastFlushedLSN().asLong());
+        }
+
+        // commits end at (n << 16) + 1; only every second commit triggers a status update
+        assertEquals((2L << 16) + 1, stream.getLastFlushedLSN().asLong());
+        assertFalse(flushed.contains((1L << 16) + 1));
+    }
+}
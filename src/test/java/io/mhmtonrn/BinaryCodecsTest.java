@@ -0,0 +1,152 @@
+package io.mhmtonrn;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryCodecsTest {
+
+    private static final RelationInfo RELATION = new RelationInfo(5, "public", "typed", List.of(
+            new ColumnInfo("id", 20, true), new ColumnInfo("price", 1700), new ColumnInfo("at", 1184),
+            new ColumnInfo("ref", 2950), new ColumnInfo("doc", 3802), new ColumnInfo("tags", 1007),
+            new ColumnInfo("name", 25), new ColumnInfo("ok", 16), new ColumnInfo("blob", 17), new ColumnInfo("point", 600)));
+
+    private static final Instant AT = Instant.parse("2024-05-01T12:34:56.123456Z");
+    private static final UUID REF = UUID.fromString("a0eebc99-9c0b-4ef8-bb6d-6bb9bd380a11");
+
+    private final Change change = TagDispatcher.standard(new HashMap<>(Map.of(5, RELATION))).dispatch(
+            ByteBuffer.wrap(PgOutputMessages.insertBinary(5, new byte[][]{
+                    ByteBuffer.allocate(8).putLong(-7).array(),
+                    // -12345.6789: digits 1|2345|6789, weight 1, negative, dscale 4
+                    ByteBuffer.allocate(14).putShort((short) 3).putShort((short) 1).putShort((short) 0x4000)
+                            .putShort((short) 4).putShort((short) 1).putShort((short) 2345).putShort((short) 6789).array(),
+                    ByteBuffer.allocate(8).putLong((AT.getEpochSecond() * 1_000_000 + AT.getNano() / 1000)
+                            - BinaryCodecs.PG_EPOCH_MICROS).array(),
+                    ByteBuffer.allocate(16).putLong(REF.getMostSignificantBits()).putLong(REF.getLeastSignificantBits()).array(),
+                    ByteBuffer.allocate(8).put((byte) 1).put("{\"a\":1}".getBytes(StandardCharsets.UTF_8)).array(),
+                    // int4[] {1,NULL,3}: ndim, has nulls, element oid, size and lower bound, elements
+                    ByteBuffer.allocate(40).putInt(1).putInt(1).putInt(23).putInt(3).putInt(1)
+                            .putInt(4).putInt(1).putInt(-1).putInt(4).putInt(3).array(),
+                    "zoë".getBytes(StandardCharsets.UTF_8),
+                    {1},
+                    {0x0a, (byte) 0xff},
+                    ByteBuffer.allocate(16).putDouble(1).putDouble(2).array()})),
+            new Change());
+
+    @Test
+    void decodesBinaryValues() {
+        TupleView row = change.newRow();
+        assertTrue(row.isBinary(0));
+        assertEquals(-7L, row.getLong(0));
+        assertEquals(new BigDecimal("-12345.6789"), row.getDecimal(1));
+        assertEquals("-12345.6789", row.getString(1));
+        assertEquals(AT, row.getInstant(2));
+        assertEquals("2024-05-01 12:34:56.123456+00", row.getString(2));
+        assertEquals(REF, row.getValue(3));
+        assertEquals("{\"a\":1}", row.getString(4));
+        assertEquals(Arrays.asList(1, null, 3), row.getValue(5));
+        assertEquals("{1,NULL,3}", row.getString(5));
+        assertEquals("zoë", row.getString(6));
+        assertTrue(row.getBoolean(7));
+        assertEquals("\\x0aff", row.getString(8));
+        assertEquals("\\x3ff00000000000004000000000000000", row.getString(9));
+    }
+
+    @Test
+    void rendersFloatsLikeTheServer() {
+        Map<Double, String> doubles = Map.of(1.0, "1", 1e20, "1e+20", 0.1, "0.1", -2.5e-5, "-2.5e-05",
+                123456789012345.0, "123456789012345", 1e15, "1e+15", 0.0001, "0.0001",
+                Double.POSITIVE_INFINITY, "Infinity", Double.NaN, "NaN", -0.0, "-0");
+        doubles.forEach((value, text) -> assertEquals(text,
+                BinaryCodecs.FLOAT8.toText(ByteBuffer.allocate(8).putDouble(0, value), 0, 8)));
+        Map<Float, String> floats = Map.of(1.0f, "1", 0.1f, "0.1", 123456f, "123456", 1e6f, "1e+06",
+                1.5e-7f, "1.5e-07", Float.NEGATIVE_INFINITY, "-Infinity");
+        floats.forEach((value, text) -> assertEquals(text,
+                BinaryCodecs.FLOAT4.toText(ByteBuffer.allocate(4).putFloat(0, value), 0, 4)));
+    }
+
+    @Test
+    void rendersTimestampsInUtc() {
+        long micros = Instant.parse("1999-12-31T23:00:00Z").getEpochSecond() * 1_000_000 - BinaryCodecs.PG_EPOCH_MICROS;
+        ByteBuffer value = ByteBuffer.allocate(8).putLong(0, micros);
+        assertEquals("1999-12-31 23:00:00+00", BinaryCodecs.TIMESTAMPTZ.toText(value, 0, 8));
+        assertEquals("1999-12-31 23:00:00", BinaryCodecs.TIMESTAMP.toText(value, 0, 8));
+        assertEquals("infinity", BinaryCodecs.TIMESTAMPTZ.toText(ByteBuffer.allocate(8).putLong(0, Long.MAX_VALUE), 0, 8));
+    }
+
+    @Test
+    void rendersOtherBuiltInTypesLikeTheServer() {
+        assertEquals("4294967295", TypeCodecs.binaryForOid(26).toText(ByteBuffer.allocate(4).putInt(0, -1), 0, 4));
+        assertEquals("r", TypeCodecs.binaryForOid(18).toText(ByteBuffer.wrap(new byte[]{'r'}), 0, 1));
+        assertEquals("\\351", TypeCodecs.binaryForOid(18).toText(ByteBuffer.wrap(new byte[]{(byte) 0xe9}), 0, 1));
+
+        long micros = ((4 * 60 + 5) * 60 + 6) * 1_000_000L + 500_000;
+        assertEquals("04:05:06.5", TypeCodecs.binaryForOid(1083).toText(ByteBuffer.allocate(8).putLong(0, micros), 0, 8));
+        assertEquals("04:05:06.5+05:30", TypeCodecs.binaryForOid(1266)
+                .toText(ByteBuffer.allocate(12).putLong(micros).putInt(-19800), 0, 12));
+        assertEquals("04:05:06.5-08", TypeCodecs.binaryForOid(1266)
+                .toText(ByteBuffer.allocate(12).putLong(micros).putInt(28800), 0, 12));
+
+        TypeCodec interval = TypeCodecs.binaryForOid(1186);
+        assertEquals("1 year 2 mons 3 days 04:05:06.5",
+                interval.toText(ByteBuffer.allocate(16).putLong(micros).putInt(3).putInt(14), 0, 16));
+        assertEquals("1 mon -3 days +04:05:06.5",
+                interval.toText(ByteBuffer.allocate(16).putLong(micros).putInt(-3).putInt(1), 0, 16));
+        assertEquals("-1 days -100:00:00", interval.toText(ByteBuffer.allocate(16)
+                .putLong(-360_000_000_000L).putInt(-1).putInt(0), 0, 16));
+        assertEquals("00:00:00", interval.toText(ByteBuffer.allocate(16), 0, 16));
+
+        TypeCodec inet = TypeCodecs.binaryForOid(869);
+        assertEquals("192.168.0.1", inet.toText(ByteBuffer.wrap(new byte[]{2, 32, 0, 4, (byte) 192, (byte) 168, 0, 1}), 0, 8));
+        assertEquals("10.0.0.0/8", TypeCodecs.binaryForOid(650).toText(ByteBuffer.wrap(new byte[]{2, 8, 1, 4, 10, 0, 0, 0}), 0, 8));
+        byte[] v6 = {3, (byte) 128, 0, 16, 0x20, 0x01, 0x0d, (byte) 0xb8, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1};
+        assertEquals("2001:db8::1", inet.toText(ByteBuffer.wrap(v6), 0, v6.length));
+        byte[] mapped = {3, 120, 0, 16, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, (byte) 0xff, (byte) 0xff, 10, 0, 0, 1};
+        assertEquals("::ffff:10.0.0.1/120", inet.toText(ByteBuffer.wrap(mapped), 0, mapped.length));
+
+        assertEquals(new BigDecimal("-1234.50"), TypeCodecs.binaryForOid(790)
+                .decodeDecimal(ByteBuffer.allocate(8).putLong(0, -123450), 0, 8));
+    }
+
+    @Test
+    void rendersBinaryValuesAsTextInJson() throws Exception {
+        JsonNode data = new ObjectMapper().readTree(JsonWriter.local().write(change).toString()).get("data");
+        assertEquals("-7", data.get("id").asText());
+        assertEquals("2024-05-01 12:34:56.123456+00", data.get("at").asText());
+        assertEquals("zoë", data.get("name").asText());
+        assertEquals("t", data.get("ok").asText());
+    }
+
+    @Test
+    void binaryColumnsEncodeLikeTextOnes() {
+        RelationInfo relation = new RelationInfo(9, "public", "t", List.of(new ColumnInfo("id", 20, true),
+                new ColumnInfo("name", 25), new ColumnInfo("blob", 17), new ColumnInfo("price", 1700)));
+        TagDispatcher dispatcher = TagDispatcher.standard(new HashMap<>(Map.of(9, relation)));
+        Change text = dispatcher.dispatch(ByteBuffer.wrap(PgOutputMessages.insert(9,
+                new String[]{"-7", "zoë", "\\x0aff", "-12345.6789"})), new Change()).copy();
+        Change binary = dispatcher.dispatch(ByteBuffer.wrap(PgOutputMessages.insertBinary(9, new byte[][]{
+                ByteBuffer.allocate(8).putLong(-7).array(),
+                "zoë".getBytes(StandardCharsets.UTF_8),
+                {0x0a, (byte) 0xff},
+                ByteBuffer.allocate(14).putShort((short) 3).putShort((short) 1).putShort((short) 0x4000)
+                        .putShort((short) 4).putShort((short) 1).putShort((short) 2345).putShort((short) 6789).array()})),
+                new Change());
+
+        for (String format : List.of("json", "avro", "protobuf", "cbor")) {
+            RowEncoder encoder = RowEncoder.of(format);
+            assertArrayEquals(encoder.encode(text), encoder.encode(binary), format);
+        }
+    }
+}
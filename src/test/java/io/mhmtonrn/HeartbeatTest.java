@@ -0,0 +1,99 @@
+package io.mhmtonrn;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HeartbeatTest {
+
+    private final TagDispatcher dispatcher = TagDispatcher.standard(new HashMap<>());
+
+    private Change dispatch(byte[] message) {
+        ByteBuffer buffer = ByteBuffer.wrap(message);
+        Change change = dispatcher.dispatch(buffer, new Change());
+        assertFalse(buffer.hasRemaining());
+        return change;
+    }
+
+    @Test
+    void onlyNonTransactionalHeartbeatMessagesAreDecoded() {
+        Change heartbeat = dispatch(PgOutputMessages.message(false, 500, Heartbeat.PREFIX, "2026-10-17"));
+        assertTrue(heartbeat.isHeartbeat());
+        assertEquals(500, heartbeat.endLsn());
+
+        assertNull(dispatch(PgOutputMessages.message(true, 600, Heartbeat.PREFIX, "")));
+        assertNull(dispatch(PgOutputMessages.message(false, 700, "audit", "x")));
+        assertNull(dispatch(PgOutputMessages.message(false, 800, Heartbeat.PREFIX + ".other", "x")));
+        assertNull(dispatch(PgOutputMessages.message(false, 850, "wal4j.heart", Heartbeat.PREFIX)));
+
+        dispatch(PgOutputMessages.streamStart(9, true));
+        assertNull(dispatch(PgOutputMessages.inStream(9, PgOutputMessages.message(true, 900, Heartbeat.PREFIX, ""))));
+    }
+
+    @Test
+    void heartbeatsAreConfirmedAfterEarlierTransactions() {
+        AckTracker tracker = new AckTracker();
+        AckTracker.Transaction earlier = tracker.begin();
+        earlier.retain();
+        tracker.commit(earlier, 400);
+        tracker.commit(tracker.begin(), 500);
+        assertEquals(0, tracker.confirmedLsn());
+
+        earlier.release();
+        assertEquals(500, tracker.confirmedLsn());
+    }
+
+    /** A connection that records the SQL its statements execute. */
+    private static Connection recording(List<String> executed) {
+        Statement statement = (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(),
+                new Class<?>[]{Statement.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("execute")) executed.add((String) args[0]);
+                    return method.getReturnType() == boolean.class ? false : null;
+                });
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) ->
+                        method.getName().equals("createStatement") ? statement : null);
+    }
+
+    @Test
+    void beatsEmitAMessageTheListenerRecognizes() {
+        List<String> executed = new ArrayList<>();
+        Heartbeat heartbeat = new Heartbeat(() -> recording(executed), "");
+        heartbeat.beat();
+        heartbeat.stop();
+
+        assertEquals(List.of("SELECT pg_logical_emit_message(false, '" + Heartbeat.PREFIX + "', now()::text)"), executed);
+        assertTrue(dispatch(PgOutputMessages.message(false, 500, Heartbeat.PREFIX, "now")).isHeartbeat());
+    }
+
+    @Test
+    void beatsUpsertIntoAPlainTableName() {
+        List<String> executed = new ArrayList<>();
+        new Heartbeat(() -> recording(executed), "ops.wal4j_heartbeat").beat();
+        assertEquals(List.of("INSERT INTO ops.wal4j_heartbeat (id, ts) VALUES (1, now()) "
+                + "ON CONFLICT (id) DO UPDATE SET ts = excluded.ts"), executed);
+
+        assertThrows(IllegalArgumentException.class, () -> new Heartbeat(() -> recording(executed), "t; DROP TABLE x"));
+        assertThrows(IllegalArgumentException.class, () -> new Heartbeat(() -> recording(executed), "\"quoted\""));
+    }
+
+    @Test
+    void heartbeatsAdvanceTheConfirmedLsnOfAnIdleStream() throws Exception {
+        AckTracker tracker = new AckTracker();
+        LsnAcknowledger acknowledger = new LsnAcknowledger(tracker, 1, Long.MAX_VALUE);
+        InMemoryReplicationStream stream = InMemoryReplicationStream.of(List.of());
+        Change heartbeat = dispatch(PgOutputMessages.message(false, 500, Heartbeat.PREFIX, "now"));
+        tracker.commit(tracker.begin(), heartbeat.endLsn());
+
+        acknowledger.maybeFlush(stream);
+        assertEquals(500, stream.getLastFlushedLSN().asLong());
+    }
+}
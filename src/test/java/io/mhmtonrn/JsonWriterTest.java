@@ -0,0 +1,50 @@
+package io.mhmtonrn;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.mhmtonrn.event.CDCEvent;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonWriterTest {
+
+    private static final RelationInfo RELATION = new RelationInfo(7, "public", "notes",
+            List.of(new ColumnInfo("id", 23, true), new ColumnInfo("body", 25), new ColumnInfo("tag", 25)));
+
+    private final TagDispatcher dispatcher = TagDispatcher.standard(new HashMap<>(Map.of(7, RELATION)));
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void escapesOnlyWhatJsonRequires() throws Exception {
+        String body = "say \"hi\"\\\n\ttab \u0001 çağrı ✓";
+        Change change = dispatcher.dispatch(ByteBuffer.wrap(
+                PgOutputMessages.update(7, null, new String[]{"1", body, null})), new Change());
+
+        CDCEvent event = new CDCEvent(this, change);
+        JsonNode json = mapper.readTree(event.getPayload());
+
+        assertEquals("update", json.get("type").asText());
+        assertEquals("notes", json.get("table").asText());
+        assertTrue(json.get("old").isNull());
+        assertEquals(body, json.get("new").get("body").asText());
+        assertTrue(json.get("new").get("tag").isNull());
+        assertEquals(event.getMessage(), new String(event.getPayload(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void writesCommitNumbersAndStreamsWithoutCopy() throws Exception {
+        Change change = dispatcher.dispatch(ByteBuffer.wrap(PgOutputMessages.commit(-5, 10, 1234567890123L)), new Change());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new CDCEvent(this, change).writePayload(out);
+
+        assertEquals("{\"type\":\"commit\",\"lsn\":-5,\"timestamp\":1234567890123}", out.toString());
+    }
+}
@@ -0,0 +1,89 @@
+package io.mhmtonrn;
+
+import io.mhmtonrn.event.CDCEvent;
+import io.mhmtonrn.event.CDCEventBatch;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MicroBatchDeliveryTest {
+
+    private static final RelationInfo RELATION = new RelationInfo(3, "public", "items",
+            List.of(new ColumnInfo("id", 23, true)));
+
+    private final TagDispatcher dispatcher = TagDispatcher.standard(new HashMap<>(Map.of(3, RELATION)));
+    private final AckTracker ackTracker = new AckTracker();
+    private final List<List<String>> batches = new ArrayList<>();
+    private final Change change = new Change();
+    private AckTracker.Transaction transaction;
+
+    private MicroBatchDelivery delivery(int maxSize, long maxWaitMillis) {
+        return new MicroBatchDelivery(this, event -> batches.add(((CDCEventBatch) event).getEvents().stream()
+                .map(CDCEvent::getChange)
+                .map(c -> c.newRow() == null ? c.kind().toString() : c.newRow().getString(0))
+                .toList()), null, maxSize, TimeUnit.MILLISECONDS.toNanos(maxWaitMillis));
+    }
+
+    private void publish(MicroBatchDelivery delivery, byte[] message) {
+        Change decoded = dispatcher.dispatch(ByteBuffer.wrap(message), change);
+        if (decoded == null) return;
+        if (transaction == null) transaction = ackTracker.begin();
+        transaction.retain();
+        delivery.deliver(decoded, transaction);
+        if (decoded.kind() == Change.Kind.COMMIT) {
+            ackTracker.commit(transaction, decoded.endLsn());
+            transaction = null;
+        }
+    }
+
+    @Test
+    void sizeLimitSplitsBatchesAcrossTransactions() {
+        MicroBatchDelivery delivery = delivery(3, 60_000);
+        publish(delivery, PgOutputMessages.insert(3, new String[]{"1"}));
+        publish(delivery, PgOutputMessages.commit(500, 501, 0));
+        publish(delivery, PgOutputMessages.insert(3, new String[]{"2"}));
+        assertEquals(List.of(List.of("1", "COMMIT", "2")), batches);
+        assertEquals(501, ackTracker.confirmedLsn());
+
+        // the second transaction is only confirmed once the batch holding its commit completes
+        publish(delivery, PgOutputMessages.commit(600, 601, 0));
+        assertEquals(501, ackTracker.confirmedLsn());
+        publish(delivery, PgOutputMessages.insert(3, new String[]{"3"}));
+        publish(delivery, PgOutputMessages.commit(700, 701, 0));
+        assertEquals(List.of(List.of("1", "COMMIT", "2"), List.of("COMMIT", "3", "COMMIT")), batches);
+        assertEquals(701, ackTracker.confirmedLsn());
+    }
+
+    @Test
+    void timeLimitFlushesAQuietStream() throws InterruptedException {
+        MicroBatchDelivery delivery = delivery(5000, 5);
+        publish(delivery, PgOutputMessages.insert(3, new String[]{"1"}));
+        publish(delivery, PgOutputMessages.commit(500, 501, 0));
+        delivery.maybeFlush();
+        assertTrue(batches.isEmpty());
+        assertEquals(0, ackTracker.confirmedLsn());
+
+        Thread.sleep(10);
+        delivery.maybeFlush();
+        assertEquals(List.of(List.of("1", "COMMIT")), batches);
+        assertEquals(501, ackTracker.confirmedLsn());
+    }
+
+    @Test
+    void flushPublishesAYoungBatchBeforeABlockingRead() {
+        MicroBatchDelivery delivery = delivery(5000, 60_000);
+        publish(delivery, PgOutputMessages.insert(3, new String[]{"1"}));
+        publish(delivery, PgOutputMessages.commit(500, 501, 0));
+        delivery.flush();
+        delivery.flush();
+        assertEquals(List.of(List.of("1", "COMMIT")), batches);
+        assertEquals(501, ackTracker.confirmedLsn());
+    }
+}
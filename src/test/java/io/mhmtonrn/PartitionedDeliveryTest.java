@@ -0,0 +1,111 @@
+package io.mhmtonrn;
+
+import io.mhmtonrn.event.CDCEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PartitionedDeliveryTest {
+
+    @ParameterizedTest
+    @ValueSource(strings = {"async", "virtual"})
+    void keepsChangesToTheSameRowInOrder(String mode) {
+        RelationInfo relation = new RelationInfo(1, "public", "accounts",
+                List.of(new ColumnInfo("id", 23, true), new ColumnInfo("seq", 23)));
+        Map<String, Integer> lastSeq = new ConcurrentHashMap<>();
+        Map<String, Boolean> threads = new ConcurrentHashMap<>();
+        ApplicationEventPublisher publisher = event -> {
+            TupleView row = ((CDCEvent) event).getChange().newRow();
+            int seq = Integer.parseInt(row.getString(1));
+            Integer previous = lastSeq.put(row.getString(0), seq);
+            assertTrue(previous == null || previous == seq - 1, "out of order for id " + row.getString(0));
+            threads.put(Thread.currentThread().toString(), true);
+            LockSupport.parkNanos(ThreadLocalRandom.current().nextInt(20_000));
+        };
+        EventDelivery delivery = mode.equals("async")
+                ? new PartitionedDelivery(this, publisher, null, 4, 16)
+                : new VirtualThreadDelivery(this, publisher, null, 64, 32);
+
+        AckTracker tracker = new AckTracker();
+        AckTracker.Transaction txn = tracker.begin();
+        TagDispatcher dispatcher = TagDispatcher.standard(new HashMap<>(Map.of(1, relation)));
+        Change change = new Change();
+        for (int seq = 0; seq < 200; seq++) {
+            for (int id = 0; id < 8; id++) {
+                byte[] insert = PgOutputMessages.insert(1, new String[]{String.valueOf(id), String.valueOf(seq)});
+                txn.retain();
+                delivery.deliver(dispatcher.dispatch(ByteBuffer.wrap(insert), change), txn);
+            }
+        }
+        tracker.commit(txn, 42);
+        delivery.awaitIdle();
+
+        assertNull(delivery.takeFailure());
+        assertEquals(8, lastSeq.size());
+        lastSeq.values().forEach(seq -> assertEquals(199, seq));
+        assertTrue(threads.size() > 1, "rows should spread over several workers");
+        assertEquals(42, tracker.confirmedLsn());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"async", "virtual"})
+    void anErrorInAListenerIsReportedAndDeliveryGoesOn(String mode) {
+        RelationInfo relation = new RelationInfo(1, "public", "accounts", List.of(new ColumnInfo("id", 23, true)));
+        AtomicInteger handled = new AtomicInteger();
+        ApplicationEventPublisher publisher = event -> {
+            if (handled.getAndIncrement() == 0) throw new StackOverflowError();
+        };
+        EventDelivery delivery = mode.equals("async")
+                ? new PartitionedDelivery(this, publisher, null, 1, 1)
+                : new VirtualThreadDelivery(this, publisher, null, 1, 1);
+        AckTracker.Transaction txn = new AckTracker().begin();
+        TagDispatcher dispatcher = TagDispatcher.standard(new HashMap<>(Map.of(1, relation)));
+
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            for (int id = 0; id < 4; id++) {
+                txn.retain();
+                delivery.deliver(dispatcher.dispatch(ByteBuffer.wrap(PgOutputMessages.insert(1,
+                        new String[]{String.valueOf(id)})), new Change()), txn);
+            }
+            delivery.awaitIdle();
+        });
+        assertEquals(4, handled.get());
+        Exception failure = delivery.takeFailure();
+        assertInstanceOf(StackOverflowError.class, failure.getCause());
+    }
+
+    @Test
+    void workersEndOnceClosed() throws InterruptedException {
+        RelationInfo relation = new RelationInfo(1, "public", "accounts", List.of(new ColumnInfo("id", 23, true)));
+        Map<Thread, Boolean> workers = new ConcurrentHashMap<>();
+        EventDelivery delivery = new PartitionedDelivery(this, event -> workers.put(Thread.currentThread(), true), null, 2, 4);
+        AckTracker.Transaction txn = new AckTracker().begin();
+        TagDispatcher dispatcher = TagDispatcher.standard(new HashMap<>(Map.of(1, relation)));
+        for (int id = 0; id < 16; id++) {
+            txn.retain();
+            delivery.deliver(dispatcher.dispatch(ByteBuffer.wrap(PgOutputMessages.insert(1,
+                    new String[]{String.valueOf(id)})), new Change()), txn);
+        }
+        delivery.awaitIdle();
+        assertEquals(2, workers.size());
+
+        delivery.close();
+        for (Thread worker : workers.keySet()) {
+            worker.join(5_000);
+            assertFalse(worker.isAlive());
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package io.mhmtonrn;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+
+@SpringBootTest(properties = {
+        "replication.source=synthetic",
+        "replication.synthetic.transactions=50",
+        "replication.synthetic.rows-per-transaction=4",
+        "replication.pipeline.enabled=true",
+        "replication.pipeline.ring-size=16",
+        "replication.pipeline.decode-ahead=4"
+})
+@Import(SyntheticReplicationTest.Config.class)
+class PipelineReplicationTest extends SyntheticReplicationTest {
+}
@@ -0,0 +1,64 @@
+package io.mhmtonrn;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RelationCacheTest {
+
+    private static final RelationInfo ITEMS = new RelationInfo(3, "public", "items",
+            List.of(new ColumnInfo("id", 23, true), new ColumnInfo("name", 25)));
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void unknownRelationsAreLookedUpOnceAndPersisted() {
+        List<Integer> lookups = new ArrayList<>();
+        RelationCache cache = new RelationCache();
+        cache.attach(relId -> {
+            lookups.add(relId);
+            return relId == 3 ? ITEMS : null;
+        }, dir.resolve("relations.bin"));
+        TagDispatcher dispatcher = TagDispatcher.standard(cache);
+
+        Change change = dispatcher.dispatch(ByteBuffer.wrap(PgOutputMessages.insert(3, new String[]{"1", "a"})), new Change());
+        assertEquals("items", change.table());
+        dispatcher.dispatch(ByteBuffer.wrap(PgOutputMessages.insert(3, new String[]{"2", "b"})), new Change());
+        assertEquals(List.of(3), lookups);
+
+        IllegalStateException unknown = assertThrows(IllegalStateException.class, () ->
+                dispatcher.dispatch(ByteBuffer.wrap(PgOutputMessages.insert(9, new String[]{"1"})), new Change()));
+        assertTrue(unknown.getMessage().contains("unknown relation 9"));
+
+        RelationCache restarted = new RelationCache();
+        restarted.attach(null, dir.resolve("relations.bin"));
+        assertEquals(ITEMS, restarted.get(3));
+        assertEquals(1, restarted.version(3));
+    }
+
+    @Test
+    void changedDefinitionsBumpTheVersion() {
+        RelationCache cache = new RelationCache();
+        cache.put(3, ITEMS);
+        cache.put(3, new RelationInfo(3, "public", "items", List.copyOf(ITEMS.columns())));
+        assertEquals(1, cache.version(3));
+
+        cache.put(3, new RelationInfo(3, "public", "items", List.of(new ColumnInfo("id", 20, true))));
+        assertEquals(2, cache.version(3));
+        assertEquals(20, cache.get(3).columns().get(0).typeOID());
+    }
+
+    @Test
+    void catalogSessionsDropTheReplicationParameter() {
+        assertEquals("jdbc:postgresql://h:5432/db?preferQueryMode=simple", PostgresStreamFactory.regularUrl(
+                "jdbc:postgresql://h:5432/db?replication=database&preferQueryMode=simple"));
+        assertEquals("jdbc:postgresql://h/db?a=1", PostgresStreamFactory.regularUrl("jdbc:postgresql://h/db?a=1&replication=true"));
+    }
+}
@@ -0,0 +1,73 @@
+package io.mhmtonrn;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplicationLagTest {
+
+    private static final RelationInfo ITEMS = new RelationInfo(3, "public", "items",
+            List.of(new ColumnInfo("id", 23, true), new ColumnInfo("name", 25)));
+
+    @Test
+    void rowsCarryTheCommitTimeOfTheirTransaction() {
+        ReplicationLag lag = new ReplicationLag();
+        long committed = lag.nowMicros() - ReplicationLag.PG_EPOCH_MICROS - 50_000;
+        TagDispatcher dispatcher = TagDispatcher.standard(new HashMap<>(Map.of(3, ITEMS)));
+        SyncDelivery delivery = new SyncDelivery(this, event -> {}, null);
+        delivery.trackLag(lag.sink("sync"));
+        AckTracker.Transaction transaction = new AckTracker().begin();
+        Change change = new Change();
+
+        for (byte[] message : List.of(PgOutputMessages.begin(100, committed, 7),
+                PgOutputMessages.insert(3, new String[]{"1", "a"}),
+                PgOutputMessages.commit(100, 120, committed))) {
+            Change decoded = dispatcher.dispatch(ByteBuffer.wrap(message), change);
+            if (decoded == null) continue;
+            assertEquals(committed, decoded.timestamp());
+            lag.decoded(decoded);
+            transaction.retain();
+            delivery.deliver(decoded, transaction);
+        }
+
+        ReplicationLag.Series rows = lag.series(ReplicationLag.Stage.DELIVER, "public.items", "sync");
+        assertTrue(rows.percentile(99) >= 50_000 && rows.percentile(99) < 10_000_000, "lag " + rows.percentile(99));
+        assertNotNull(lag.series(ReplicationLag.Stage.DECODE, "public.items", null));
+        assertNotNull(lag.series(ReplicationLag.Stage.DELIVER, ReplicationLag.TRANSACTION, "sync"));
+        assertEquals(4, lag.series().size());
+    }
+
+    @Test
+    void streamedRowsAreOnlyCountedWithTheirCommit() {
+        ReplicationLag lag = new ReplicationLag();
+        TagDispatcher dispatcher = TagDispatcher.standard(new HashMap<>(Map.of(3, ITEMS)));
+        Change change = new Change();
+        dispatcher.dispatch(ByteBuffer.wrap(PgOutputMessages.begin(100, 1_000, 7)), change);
+        dispatcher.dispatch(ByteBuffer.wrap(PgOutputMessages.streamStart(9, true)), change);
+        Change row = dispatcher.dispatch(ByteBuffer.wrap(PgOutputMessages.inStream(9, PgOutputMessages.insert(3, new String[]{"1", "a"}))), change);
+
+        assertEquals(0, row.timestamp());
+        lag.decoded(row);
+        assertTrue(lag.series().isEmpty());
+    }
+
+    @Test
+    void tablesOfTheSameNameInOtherSchemasAreSeparateSeries() {
+        ReplicationLag lag = new ReplicationLag();
+        RelationInfo archived = new RelationInfo(4, "archive", "items", ITEMS.columns());
+        TagDispatcher dispatcher = TagDispatcher.standard(new HashMap<>(Map.of(3, ITEMS, 4, archived)));
+        Change change = new Change();
+        dispatcher.dispatch(ByteBuffer.wrap(PgOutputMessages.begin(100, 1_000, 7)), change);
+        lag.decoded(dispatcher.dispatch(ByteBuffer.wrap(PgOutputMessages.insert(3, new String[]{"1", "a"})), change));
+        lag.decoded(dispatcher.dispatch(ByteBuffer.wrap(PgOutputMessages.insert(4, new String[]{"1", "a"})), change));
+
+        assertEquals(2, lag.series().size());
+        assertNotNull(lag.series(ReplicationLag.Stage.DECODE, "public.items", null));
+        assertNotNull(lag.series(ReplicationLag.Stage.DECODE, "archive.items", null));
+    }
+}
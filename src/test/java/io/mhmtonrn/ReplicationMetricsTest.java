@@ -0,0 +1,58 @@
+package io.mhmtonrn;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplicationMetricsTest {
+
+    private static final RelationInfo ITEMS = new RelationInfo(3, "public", "items",
+            List.of(new ColumnInfo("id", 23, true), new ColumnInfo("name", 25)));
+
+    @Test
+    void countsMessagesByTagAndChangesByKind() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ReplicationMetrics metrics = new ReplicationMetrics(registry);
+        TagDispatcher dispatcher = TagDispatcher.standard(new HashMap<>(Map.of(3, ITEMS)));
+        metrics.instrument(dispatcher);
+        List<Change> delivered = new ArrayList<>();
+        EventDelivery delivery = metrics.meter((change, transaction) -> delivered.add(change.copy()));
+
+        for (byte[] message : List.of(PgOutputMessages.insert(3, new String[]{"1", "a"}),
+                PgOutputMessages.insert(3, new String[]{"2", "b"}), new byte[]{'Y'})) {
+            metrics.read(message.length);
+            Change change = dispatcher.dispatch(ByteBuffer.wrap(message), new Change());
+            if (change != null) delivery.deliver(change, null);
+        }
+
+        assertEquals(2, registry.get("wal4j.messages").tag("tag", "I").counter().count());
+        assertEquals(2, registry.get("wal4j.decode").tag("handler", "InsertHandler").timer().count());
+        assertEquals(1, registry.get("wal4j.messages").tag("tag", "unknown").counter().count());
+        assertEquals(2, registry.get("wal4j.events").tag("kind", "insert").counter().count());
+        assertEquals(2, registry.get("wal4j.publish").timer().count());
+        assertEquals(2, delivered.size());
+        assertTrue(registry.get("wal4j.read").counter().count() > 1);
+    }
+
+    @Test
+    void tracksConsecutiveErrorsAndReconnects() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ReplicationMetrics metrics = new ReplicationMetrics(registry);
+        metrics.error(1);
+        metrics.error(2);
+        assertEquals(2, registry.get("wal4j.errors.consecutive").gauge().value());
+        metrics.reconnected();
+        metrics.recovered();
+
+        assertEquals(2, registry.get("wal4j.errors").counter().count());
+        assertEquals(1, registry.get("wal4j.reconnects").counter().count());
+        assertEquals(0, registry.get("wal4j.errors.consecutive").gauge().value());
+    }
+}
@@ -0,0 +1,69 @@
+package io.mhmtonrn;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplicationPipelineTest {
+
+    private static final RelationInfo ITEMS = new RelationInfo(3, "public", "items",
+            List.of(new ColumnInfo("id", 23, true), new ColumnInfo("name", 25)));
+
+    @Test
+    void nothingPastAFrameThatFailedToDecodeIsPublished() {
+        TagDispatcher dispatcher = TagDispatcher.standard(new HashMap<>(Map.of(3, ITEMS)));
+        List<Change.Kind> published = new CopyOnWriteArrayList<>();
+        ReplicationPipeline pipeline = new ReplicationPipeline(8, 4, dispatcher, change -> published.add(change.kind()),
+                new IdleStrategy.SpinThenYield(10), new IdleStrategy.SpinThenYield(10), new IdleStrategy.SpinThenYield(10));
+        pipeline.start();
+        try {
+            for (byte[] message : List.of(PgOutputMessages.begin(100, 1_000, 7),
+                    PgOutputMessages.insert(3, new String[]{"1", "a"}),
+                    PgOutputMessages.insert(9, new String[]{"2", "b"}),
+                    PgOutputMessages.commit(100, 120, 1_000),
+                    PgOutputMessages.begin(200, 2_000, 8),
+                    PgOutputMessages.insert(3, new String[]{"3", "c"}),
+                    PgOutputMessages.commit(200, 220, 2_000))) {
+                pipeline.offer(ByteBuffer.wrap(message), 0);
+            }
+            pipeline.awaitDrained();
+            assertEquals(List.of(Change.Kind.INSERT), published);
+            assertNotNull(pipeline.takeFailure());
+
+            pipeline.resume();
+            pipeline.offer(ByteBuffer.wrap(PgOutputMessages.begin(300, 3_000, 9)), 0);
+            pipeline.offer(ByteBuffer.wrap(PgOutputMessages.commit(300, 320, 3_000)), 0);
+            pipeline.awaitDrained();
+            assertEquals(List.of(Change.Kind.INSERT, Change.Kind.COMMIT), published);
+            assertNull(pipeline.takeFailure());
+        } finally {
+            pipeline.stop();
+        }
+    }
+
+    @Test
+    void rowsCarryTheCommitTimeOfTheirOwnTransaction() {
+        TagDispatcher dispatcher = TagDispatcher.standard(new HashMap<>(Map.of(3, ITEMS)));
+        List<Long> timestamps = new CopyOnWriteArrayList<>();
+        ReplicationPipeline pipeline = new ReplicationPipeline(4, 4, dispatcher, change -> timestamps.add(change.timestamp()),
+                new IdleStrategy.SpinThenYield(10), new IdleStrategy.SpinThenYield(10), new IdleStrategy.SpinThenYield(10));
+        pipeline.start();
+        try {
+            for (int t = 1; t <= 3; t++) {
+                pipeline.offer(ByteBuffer.wrap(PgOutputMessages.begin(100 * t, 1_000 * t, t)), 0);
+                pipeline.offer(ByteBuffer.wrap(PgOutputMessages.insert(3, new String[]{String.valueOf(t), "a"})), 0);
+                pipeline.offer(ByteBuffer.wrap(PgOutputMessages.commit(100 * t, 100 * t + 20, 1_000 * t)), 0);
+            }
+            pipeline.awaitDrained();
+            assertEquals(List.of(1_000L, 1_000L, 2_000L, 2_000L, 3_000L, 3_000L), timestamps);
+        } finally {
+            pipeline.stop();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package io.mhmtonrn;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RowEncoderTest {
+
+    private static final RelationInfo RELATION = new RelationInfo(9, "public", "t", List.of(
+            new ColumnInfo("id", 23, true), new ColumnInfo("price", 701), new ColumnInfo("ok", 16),
+            new ColumnInfo("data", 17), new ColumnInfo("name", 25)));
+
+    private final Change change = TagDispatcher.standard(new HashMap<>(Map.of(9, RELATION))).dispatch(ByteBuffer.wrap(
+            PgOutputMessages.insert(9, new String[]{"-3", "1.5", "t", "\\x0aff", null})), new Change());
+
+    @Test
+    void avro() {
+        assertEquals("0000" + "02" + "0205" + "02000000000000f83f" + "0201" + "02040aff" + "00" + "00",
+                hex(RowEncoder.of("avro").encode(change)));
+    }
+
+    @Test
+    void protobuf() {
+        assertEquals("0801" + "1a1a" + "08fdffffffffffffffff01" + "11000000000000f83f" + "1801" + "22020aff",
+                hex(RowEncoder.of("protobuf").encode(change)));
+    }
+
+    @Test
+    void cbor() {
+        assertEquals("a3" + "6474797065" + "66696e73657274" + "657461626c65" + "6174" + "6464617461" + "a5"
+                        + "626964" + "22" + "657072696365" + "fb3ff8000000000000" + "626f6b" + "f5"
+                        + "6464617461" + "420aff" + "646e616d65" + "f6",
+                hex(RowEncoder.of("cbor").encode(change)));
+    }
+
+    @Test
+    void schemaIsVersionedPerRelationShape() {
+        AvroEncoder encoder = new AvroEncoder();
+        assertEquals(1, encoder.schemaVersion(RELATION));
+        assertEquals(1, encoder.schemaVersion(new RelationInfo(9, "public", "t", List.copyOf(RELATION.columns()))));
+        RelationInfo altered = new RelationInfo(9, "public", "t", List.of(new ColumnInfo("id", 20, true)));
+        assertEquals(2, encoder.schemaVersion(altered));
+        assertTrue(encoder.schema(altered).contains("\"long\""));
+    }
+
+    private static String hex(byte[] data) {
+        return HexFormat.of().formatHex(data);
+    }
+}
@@ -0,0 +1,48 @@
+package io.mhmtonrn;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentReplayTest {
+
+    @Test
+    void replaysCapturedMessagesAcrossSegmentsInOrder(@TempDir Path dir) throws Exception {
+        List<byte[]> messages = new ArrayList<>();
+        new SyntheticPgOutput(4, 32, 0.2, 5, 200).forEachRemaining(messages::add);
+
+        try (SegmentWriter writer = new SegmentWriter(dir, 4096)) {
+            for (int i = 0; i < messages.size(); i++) {
+                writer.append(1000L + i, ByteBuffer.wrap(messages.get(i)));
+            }
+        }
+
+        SegmentReplayStream stream = new SegmentReplayStream(dir);
+        for (int i = 0; i < messages.size(); i++) {
+            ByteBuffer payload = stream.readPending();
+            assertNotNull(payload);
+            byte[] data = new byte[payload.remaining()];
+            payload.get(data);
+            assertArrayEquals(messages.get(i), data);
+            assertEquals(1000L + i, stream.getLastReceiveLSN().asLong());
+        }
+        assertNull(stream.readPending());
+    }
+
+    @Test
+    void writingContinuesAfterTheNewestSegment(@TempDir Path dir) throws Exception {
+        // segments 0 to 4 were pruned
+        for (int i = 5; i <= 9; i++) Files.createFile(dir.resolve(String.format("%020d%s", i, SegmentWriter.SUFFIX)));
+        try (SegmentWriter writer = new SegmentWriter(dir, 4096)) {
+            writer.append(1000, ByteBuffer.wrap(new byte[]{'B'}));
+        }
+        assertTrue(Files.exists(dir.resolve(String.format("%020d%s", 10, SegmentWriter.SUFFIX))));
+    }
+}
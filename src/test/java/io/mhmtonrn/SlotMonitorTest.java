@@ -0,0 +1,55 @@
+package io.mhmtonrn;
+
+import io.mhmtonrn.event.SlotAlertEvent;
+import io.mhmtonrn.event.SlotAlertEvent.Alert;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SlotMonitorTest {
+
+    private SlotStatus slot(long current, long restart, long confirmed) {
+        return new SlotStatus("slot1", true, "reserved", current, restart, confirmed, current, confirmed, 0, 0);
+    }
+
+    @Test
+    void alertsAreRaisedAndClearedOnce() {
+        SlotStatus[] next = {slot(5_000, 4_000, 4_500)};
+        List<SlotAlertEvent> events = new ArrayList<>();
+        SlotMonitor monitor = new SlotMonitor(this, event -> events.add((SlotAlertEvent) event), () -> next[0],
+                10_000, 2_000, () -> 4_900, () -> 4_500);
+
+        monitor.poll();
+        assertTrue(events.isEmpty());
+        assertEquals(1_000, monitor.status().retainedBytes());
+        assertEquals(4_900, monitor.status().receivedLsn());
+
+        next[0] = slot(20_000, 4_000, 4_500);
+        monitor.poll();
+        monitor.poll();
+        assertEquals(Set.of(Alert.RETAINED_WAL, Alert.CONFIRMED_LAG), monitor.alerts());
+        assertEquals(2, events.size());
+        assertTrue(events.get(0).isRaised());
+
+        next[0] = slot(20_000, 19_000, 19_500);
+        monitor.poll();
+        assertTrue(monitor.alerts().isEmpty());
+        assertEquals(4, events.size());
+        assertFalse(events.get(3).isRaised());
+    }
+
+    @Test
+    void failedPollsKeepTheLastStatus() {
+        SlotMonitor monitor = new SlotMonitor(this, event -> {}, () -> {
+            throw new SQLException("connection refused");
+        }, 0, 0, () -> 0, () -> 0);
+        monitor.poll();
+        assertNull(monitor.status());
+        assertTrue(monitor.alerts().isEmpty());
+    }
+}
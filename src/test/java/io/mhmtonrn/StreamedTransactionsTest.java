@@ -0,0 +1,217 @@
+package io.mhmtonrn;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamedTransactionsTest {
+
+    private static final RelationInfo RELATION = new RelationInfo(3, "public", "items",
+            List.of(new ColumnInfo("id", 23, true)));
+
+    private final TagDispatcher dispatcher = TagDispatcher.standard(new HashMap<>(Map.of(3, RELATION)));
+    private final AckTracker ackTracker = new AckTracker();
+    private final List<String> delivered = new ArrayList<>();
+    private final EventDelivery delivery = (change, transaction) -> {
+        delivered.add(describe(change));
+        transaction.release();
+    };
+
+    /** Top-level xid 100 with a subtransaction 101 that rolls back, around a small regular transaction. */
+    private static final List<byte[]> MESSAGES = List.of(
+            PgOutputMessages.streamStart(100, true),
+            PgOutputMessages.inStream(100, PgOutputMessages.insert(3, new String[]{"1"})),
+            PgOutputMessages.inStream(101, PgOutputMessages.insert(3, new String[]{"2"})),
+            PgOutputMessages.streamStop(),
+            PgOutputMessages.begin(500, 0, 200),
+            PgOutputMessages.insert(3, new String[]{"9"}),
+            PgOutputMessages.commit(500, 501, 0),
+            PgOutputMessages.streamStart(100, false),
+            PgOutputMessages.inStream(101, PgOutputMessages.insert(3, new String[]{"3"})),
+            PgOutputMessages.inStream(100, PgOutputMessages.delete(3, new String[]{"4"})),
+            PgOutputMessages.streamStop(),
+            PgOutputMessages.streamAbort(100, 101),
+            PgOutputMessages.streamCommit(100, 900, 901, 0));
+
+    private void run(StreamedTransactions streams) {
+        Change change = new Change();
+        AckTracker.Transaction[] open = new AckTracker.Transaction[1];
+        for (byte[] message : MESSAGES) {
+            Change decoded = dispatcher.dispatch(ByteBuffer.wrap(message), change);
+            if (decoded == null) continue;
+            if (decoded.streamed()) {
+                streams.handle(decoded, delivery);
+                continue;
+            }
+            if (open[0] == null) open[0] = ackTracker.begin();
+            open[0].retain();
+            delivery.deliver(decoded, open[0]);
+            if (decoded.kind() == Change.Kind.COMMIT) {
+                ackTracker.commit(open[0], decoded.endLsn());
+                open[0] = null;
+            }
+        }
+    }
+
+    @Test
+    void onCommitHoldsChangesAndDropsAbortedSubtransactions() {
+        StreamedTransactions streams = new StreamedTransactions(ackTracker, StreamedTransactions.Mode.ON_COMMIT);
+        run(streams);
+
+        assertEquals(List.of("INSERT 9", "COMMIT", "INSERT 1 xid=100", "DELETE 4 xid=100", "COMMIT xid=100"), delivered);
+        assertEquals(901, ackTracker.confirmedLsn());
+        assertEquals(0, streams.openTransactions());
+    }
+
+    @Test
+    void eagerPublishesOnArrivalAndSignalsAborts() {
+        StreamedTransactions streams = new StreamedTransactions(ackTracker, StreamedTransactions.Mode.EAGER);
+        run(streams);
+
+        assertEquals(List.of("INSERT 1 xid=100", "INSERT 2 xid=100", "INSERT 9", "COMMIT", "INSERT 3 xid=100",
+                "DELETE 4 xid=100", "ABORT xid=100 sub=101", "COMMIT xid=100"), delivered);
+        assertEquals(901, ackTracker.confirmedLsn());
+    }
+
+    @Test
+    void abortOfTheTopLevelTransactionConfirmsNothing() {
+        StreamedTransactions streams = new StreamedTransactions(ackTracker, StreamedTransactions.Mode.EAGER);
+        Change change = new Change();
+        for (byte[] message : List.of(PgOutputMessages.streamStart(7, true),
+                PgOutputMessages.inStream(7, PgOutputMessages.insert(3, new String[]{"1"})),
+                PgOutputMessages.streamStop(), PgOutputMessages.streamAbort(7, 7))) {
+            Change decoded = dispatcher.dispatch(ByteBuffer.wrap(message), change);
+            if (decoded != null) streams.handle(decoded, delivery);
+        }
+
+        assertEquals(List.of("INSERT 1 xid=7", "ABORT xid=7 sub=7"), delivered);
+        assertEquals(0, streams.openTransactions());
+        assertEquals(0, ackTracker.confirmedLsn());
+    }
+
+    @Test
+    void eagerDeliveryDecodesStreamsWithoutApplyWorkers() {
+        assertEquals(0, ReplicationListener.applyWorkers(0, "parallel", StreamedTransactions.Mode.EAGER));
+        assertThrows(IllegalArgumentException.class,
+                () -> ReplicationListener.applyWorkers(4, "parallel", StreamedTransactions.Mode.EAGER));
+        assertEquals(4, ReplicationListener.applyWorkers(4, "true", StreamedTransactions.Mode.ON_COMMIT));
+
+        ParallelApplier applier = new ParallelApplier(new ConcurrentHashMap<>(Map.of(3, RELATION)), SpillStore.unbounded(), 1, 16);
+        assertThrows(IllegalArgumentException.class, () ->
+                new StreamedTransactions(ackTracker, StreamedTransactions.Mode.EAGER, SpillStore.unbounded(), applier, null));
+    }
+
+    @Test
+    void parallelApplyDecodesInterleavedStreamsOnWorkers() {
+        ParallelApplier applier = new ParallelApplier(new ConcurrentHashMap<>(Map.of(3, RELATION)), SpillStore.unbounded(), 2, 16);
+        StreamedTransactions streams = new StreamedTransactions(ackTracker, StreamedTransactions.Mode.ON_COMMIT, SpillStore.unbounded(), applier, null);
+        Change change = new Change();
+        Change aborted = null;
+        // streaming=parallel: Stream Abort carries the abort LSN and time
+        dispatcher.streamAbortPositions(true);
+        for (byte[] message : List.of(
+                PgOutputMessages.streamStart(100, true),
+                PgOutputMessages.inStream(100, PgOutputMessages.insert(3, new String[]{"1"})),
+                PgOutputMessages.inStream(101, PgOutputMessages.insert(3, new String[]{"2"})),
+                PgOutputMessages.streamStop(),
+                PgOutputMessages.streamStart(200, true),
+                PgOutputMessages.inStream(200, PgOutputMessages.insert(3, new String[]{"5"})),
+                PgOutputMessages.streamStop(),
+                PgOutputMessages.streamStart(100, false),
+                PgOutputMessages.inStream(100, PgOutputMessages.insert(3, new String[]{"3"})),
+                PgOutputMessages.streamStop(),
+                PgOutputMessages.streamAbort(100, 101, 850, 42),
+                PgOutputMessages.streamCommit(200, 800, 801, 0),
+                PgOutputMessages.streamCommit(100, 900, 901, 0))) {
+            ByteBuffer buffer = ByteBuffer.wrap(message);
+            if (applier.offer(buffer)) continue;
+            Change decoded = dispatcher.dispatch(buffer, change);
+            if (decoded == null) continue;
+            if (decoded.kind() == Change.Kind.ABORT) aborted = decoded.copy();
+            streams.handle(decoded, delivery);
+        }
+
+        assertNull(applier.takeFailure());
+        assertEquals(List.of("INSERT 5 xid=200", "COMMIT xid=200", "INSERT 1 xid=100", "INSERT 3 xid=100",
+                "COMMIT xid=100"), delivered);
+        assertEquals(901, ackTracker.confirmedLsn());
+        assertEquals(850, aborted.lsn());
+        assertEquals(42, aborted.timestamp());
+    }
+
+    @Test
+    void queuedRowsKeepTheRelationDefinitionTheyWereReadWith() {
+        ParallelApplier applier = new ParallelApplier(new ConcurrentHashMap<>(Map.of(3, RELATION)), SpillStore.unbounded(), 1, 16);
+        StreamedTransactions streams = new StreamedTransactions(ackTracker, StreamedTransactions.Mode.ON_COMMIT, SpillStore.unbounded(), applier, null);
+        RelationInfo widened = new RelationInfo(3, "public", "items",
+                List.of(new ColumnInfo("id", 23, true), new ColumnInfo("name", 25)));
+        List<Integer> widths = new ArrayList<>();
+        Change change = new Change();
+        for (byte[] message : List.of(
+                PgOutputMessages.streamStart(100, true),
+                PgOutputMessages.inStream(100, PgOutputMessages.insert(3, new String[]{"1"})),
+                PgOutputMessages.streamStop(),
+                PgOutputMessages.streamStart(200, true),
+                PgOutputMessages.inStream(200, PgOutputMessages.relation(widened)),
+                PgOutputMessages.inStream(200, PgOutputMessages.insert(3, new String[]{"2", "b"})),
+                PgOutputMessages.streamStop(),
+                PgOutputMessages.streamCommit(100, 800, 801, 0),
+                PgOutputMessages.streamCommit(200, 900, 901, 0))) {
+            ByteBuffer buffer = ByteBuffer.wrap(message);
+            if (applier.offer(buffer)) continue;
+            Change decoded = dispatcher.dispatch(buffer, change);
+            if (decoded != null) streams.handle(decoded, (c, transaction) -> {
+                if (c.newRow() != null) widths.add(c.newRow().size());
+                transaction.release();
+            });
+        }
+
+        assertNull(applier.takeFailure());
+        assertEquals(List.of(1, 2), widths);
+        assertEquals(901, ackTracker.confirmedLsn());
+    }
+
+    @Test
+    void aStreamWithARowWorkersCouldNotDecodeIsNeverConfirmed() {
+        ParallelApplier applier = new ParallelApplier(new ConcurrentHashMap<>(Map.of(3, RELATION)), SpillStore.unbounded(), 1, 16);
+        StreamedTransactions streams = new StreamedTransactions(ackTracker, StreamedTransactions.Mode.ON_COMMIT, SpillStore.unbounded(), applier, null);
+        Change change = new Change();
+        Exception thrown = null;
+        for (byte[] message : List.of(
+                PgOutputMessages.streamStart(100, true),
+                PgOutputMessages.inStream(100, PgOutputMessages.insert(3, new String[]{"1"})),
+                PgOutputMessages.inStream(100, PgOutputMessages.insert(9, new String[]{"2"})),
+                PgOutputMessages.streamStop(),
+                PgOutputMessages.streamCommit(100, 900, 901, 0))) {
+            ByteBuffer buffer = ByteBuffer.wrap(message);
+            if (applier.offer(buffer)) continue;
+            Change decoded = dispatcher.dispatch(buffer, change);
+            try {
+                if (decoded != null) streams.handle(decoded, delivery);
+            } catch (IllegalStateException e) {
+                thrown = e;
+            }
+        }
+
+        assertNotNull(thrown);
+        assertTrue(streams.interrupted());
+        assertTrue(delivered.isEmpty());
+        assertEquals(0, ackTracker.confirmedLsn());
+    }
+
+    private static String describe(Change change) {
+        String text = change.kind().toString();
+        TupleView row = change.newRow() != null ? change.newRow() : change.oldRow();
+        if (row != null) text += " " + row.getString(0);
+        if (change.streamed()) text += " xid=" + change.xid();
+        if (change.kind() == Change.Kind.ABORT) text += " sub=" + change.subXid();
+        return text;
+    }
+}
@@ -0,0 +1,52 @@
+package io.mhmtonrn;
+
+import io.mhmtonrn.event.CDCEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.event.EventListener;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "replication.source=synthetic",
+        "replication.synthetic.transactions=50",
+        "replication.synthetic.rows-per-transaction=4"
+})
+class SyntheticReplicationTest {
+
+    @Autowired
+    private Counter counter;
+
+    @Test
+    void syntheticStreamFlowsThroughThePublisher() throws InterruptedException {
+        assertTrue(counter.commits.await(10, TimeUnit.SECONDS));
+        assertEquals(200, counter.rows.get());
+    }
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        Counter counter() { return new Counter(); }
+    }
+
+    static class Counter {
+        final CountDownLatch commits = new CountDownLatch(50);
+        final AtomicLong rows = new AtomicLong();
+
+        @EventListener
+        void on(CDCEvent event) {
+            if (event.getChange().kind() == Change.Kind.COMMIT) {
+                commits.countDown();
+            } else {
+                rows.incrementAndGet();
+            }
+        }
+    }
+}
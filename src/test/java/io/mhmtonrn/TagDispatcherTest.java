@@ -0,0 +1,32 @@
+package io.mhmtonrn;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TagDispatcherTest {
+
+    @Test
+    void routesByTagAndFallsBackForUnknownTags() {
+        TagDispatcher dispatcher = TagDispatcher.standard(new HashMap<>());
+        Change change = new Change();
+
+        ByteBuffer commit = ByteBuffer.allocate(27).put((byte) 'C').put((byte) 0)
+                .putLong(10).putLong(20).putLong(30).flip();
+        assertSame(change, dispatcher.dispatch(commit, change));
+        assertEquals(Change.Kind.COMMIT, change.kind());
+        assertEquals(10, change.lsn());
+
+        ByteBuffer origin = ByteBuffer.allocate(9).put((byte) 'O').putLong(1).flip();
+        assertNull(dispatcher.dispatch(origin, change));
+        assertFalse(origin.hasRemaining());
+
+        char[] seen = new char[1];
+        dispatcher.fallback((tag, buffer, c) -> { seen[0] = tag; buffer.position(buffer.limit()); return null; });
+        dispatcher.dispatch(ByteBuffer.wrap(new byte[]{(byte) 'T', 0, 0}), change);
+        assertEquals('T', seen[0]);
+    }
+}
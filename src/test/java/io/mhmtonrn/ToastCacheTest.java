@@ -0,0 +1,150 @@
+package io.mhmtonrn;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static io.mhmtonrn.PgOutputMessages.UNCHANGED;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ToastCacheTest {
+
+    private static final RelationInfo DOCS = new RelationInfo(5, "public", "docs",
+            List.of(new ColumnInfo("id", 23, true), new ColumnInfo("body", 25), new ColumnInfo("title", 25)));
+
+    private static final String BODY = "x".repeat(4000);
+
+    private final Change change = new Change();
+
+    private Change dispatch(TagDispatcher dispatcher, byte[] message) {
+        ByteBuffer buffer = ByteBuffer.wrap(message);
+        Change decoded = dispatcher.dispatch(buffer, change);
+        assertFalse(buffer.hasRemaining());
+        return decoded;
+    }
+
+    @Test
+    void unchangedValuesAreNotMisparsedAndLeftOutOfJson() {
+        TagDispatcher dispatcher = TagDispatcher.standard(new HashMap<>(Map.of(5, DOCS)));
+        Change update = dispatch(dispatcher, PgOutputMessages.update(5, null, new String[]{"1", UNCHANGED, "t2"}));
+
+        TupleView row = update.newRow();
+        assertTrue(row.isUnchanged(1));
+        assertTrue(row.isNull(1));
+        assertNull(row.getString(1));
+        assertEquals("t2", row.getString(2));
+        assertEquals("{\"type\":\"update\",\"table\":\"docs\",\"old\":null,\"new\":{\"id\":\"1\",\"title\":\"t2\"}}",
+                update.toJson());
+    }
+
+    @Test
+    void fullReplicaIdentityFillsFromTheOldImage() {
+        TagDispatcher dispatcher = TagDispatcher.standard(new HashMap<>(Map.of(5, DOCS)));
+        Change update = dispatch(dispatcher, PgOutputMessages.update(5,
+                new String[]{"1", BODY, "t1"}, new String[]{"1", UNCHANGED, "t2"}));
+
+        assertEquals(0, update.newRow().unchangedCount());
+        assertEquals(BODY, update.newRow().getString(1));
+        assertEquals("t2", update.newRow().getString(2));
+    }
+
+    @Test
+    void cacheFillsFromTheLastImageOfTheSameKey() {
+        ToastCache cache = new ToastCache(64 * 1024, 100, 256);
+        TagDispatcher dispatcher = TagDispatcher.standard(new HashMap<>(Map.of(5, DOCS)), cache);
+        dispatch(dispatcher, PgOutputMessages.insert(5, new String[]{"1", BODY, "t1"}));
+        dispatch(dispatcher, PgOutputMessages.insert(5, new String[]{"2", "short", "t1"}));
+
+        Change update = dispatch(dispatcher, PgOutputMessages.update(5, null, new String[]{"1", UNCHANGED, "t2"}));
+        assertEquals(BODY, update.newRow().getString(1));
+        assertEquals("t2", update.newRow().getString(2));
+        // the filled image is remembered again for the next update
+        update = dispatch(dispatcher, PgOutputMessages.update(5, null, new String[]{"1", UNCHANGED, "t3"}));
+        assertEquals(BODY, update.newRow().getString(1));
+        assertEquals(2, cache.hits());
+
+        dispatch(dispatcher, PgOutputMessages.delete(5, new String[]{"1", null, null}));
+        update = dispatch(dispatcher, PgOutputMessages.update(5, null, new String[]{"1", UNCHANGED, "t4"}));
+        assertTrue(update.newRow().isUnchanged(1));
+        assertEquals(1, cache.misses());
+    }
+
+    @Test
+    void anUpdateWithoutLargeValuesForgetsTheStaleEntry() {
+        ToastCache cache = new ToastCache(64 * 1024, 100, 256);
+        TagDispatcher dispatcher = TagDispatcher.standard(new HashMap<>(Map.of(5, DOCS)), cache);
+        dispatch(dispatcher, PgOutputMessages.insert(5, new String[]{"1", BODY, "t1"}));
+        dispatch(dispatcher, PgOutputMessages.update(5, null, new String[]{"1", "short", "t2"}));
+
+        Change update = dispatch(dispatcher, PgOutputMessages.update(5, null, new String[]{"1", UNCHANGED, "t3"}));
+        assertTrue(update.newRow().isUnchanged(1));
+        assertEquals(0, cache.hits());
+        assertEquals(1, cache.misses());
+    }
+
+    @Test
+    void anUpdateThatChangedTheKeyFillsFromTheOldKey() {
+        ToastCache cache = new ToastCache(64 * 1024, 100, 256);
+        TagDispatcher dispatcher = TagDispatcher.standard(new HashMap<>(Map.of(5, DOCS)), cache);
+        dispatch(dispatcher, PgOutputMessages.insert(5, new String[]{"1", BODY, "t1"}));
+
+        Change update = dispatch(dispatcher, PgOutputMessages.updateKey(5,
+                new String[]{"1", null, null}, new String[]{"2", UNCHANGED, "t2"}));
+        assertEquals("1", update.oldRow().getString(0));
+        assertEquals(BODY, update.newRow().getString(1));
+
+        // the row now lives under the new key only
+        assertEquals(BODY, dispatch(dispatcher, PgOutputMessages.update(5, null, new String[]{"2", UNCHANGED, "t3"}))
+                .newRow().getString(1));
+        assertTrue(dispatch(dispatcher, PgOutputMessages.update(5, null, new String[]{"1", UNCHANGED, "t4"}))
+                .newRow().isUnchanged(1));
+    }
+
+    @Test
+    void entriesOverwrittenByTheRingAreMisses() {
+        ToastCache cache = new ToastCache(10_000, 100, 256);
+        TagDispatcher dispatcher = TagDispatcher.standard(new HashMap<>(Map.of(5, DOCS)), cache);
+        dispatch(dispatcher, PgOutputMessages.insert(5, new String[]{"1", BODY, "t"}));
+        dispatch(dispatcher, PgOutputMessages.insert(5, new String[]{"2", BODY, "t"}));
+        dispatch(dispatcher, PgOutputMessages.insert(5, new String[]{"3", BODY, "t"}));
+
+        assertTrue(dispatch(dispatcher, PgOutputMessages.update(5, null, new String[]{"1", UNCHANGED, "t"}))
+                .newRow().isUnchanged(1));
+        assertEquals(BODY, dispatch(dispatcher, PgOutputMessages.update(5, null, new String[]{"3", UNCHANGED, "t"}))
+                .newRow().getString(1));
+    }
+
+    @Test
+    void streamedRowsAreOnlyRememberedOnceCommitted() {
+        ToastCache cache = new ToastCache(64 * 1024, 100, 256);
+        TagDispatcher dispatcher = TagDispatcher.standard(new HashMap<>(Map.of(5, DOCS)), cache);
+        StreamedTransactions streams = new StreamedTransactions(new AckTracker(), StreamedTransactions.Mode.ON_COMMIT,
+                SpillStore.unbounded(), null, cache);
+        EventDelivery delivery = (c, transaction) -> transaction.release();
+        String rolledBack = "r".repeat(4000), committed = "c".repeat(4000);
+        dispatch(dispatcher, PgOutputMessages.insert(5, new String[]{"1", BODY, "t1"}));
+
+        for (byte[] message : List.of(PgOutputMessages.streamStart(100, true),
+                PgOutputMessages.inStream(101, PgOutputMessages.update(5, null, new String[]{"1", rolledBack, "t2"})),
+                PgOutputMessages.streamStop(),
+                PgOutputMessages.streamAbort(100, 101))) {
+            Change decoded = dispatch(dispatcher, message);
+            if (decoded != null) streams.handle(decoded, delivery);
+        }
+        assertEquals(BODY, dispatch(dispatcher, PgOutputMessages.update(5, null, new String[]{"1", UNCHANGED, "t3"}))
+                .newRow().getString(1));
+
+        for (byte[] message : List.of(PgOutputMessages.streamStart(100, false),
+                PgOutputMessages.inStream(100, PgOutputMessages.update(5, null, new String[]{"1", committed, "t4"})),
+                PgOutputMessages.streamStop(),
+                PgOutputMessages.streamCommit(100, 900, 901, 0))) {
+            Change decoded = dispatch(dispatcher, message);
+            if (decoded != null) streams.handle(decoded, delivery);
+        }
+        assertEquals(committed, dispatch(dispatcher, PgOutputMessages.update(5, null, new String[]{"1", UNCHANGED, "t5"}))
+                .newRow().getString(1));
+    }
+}
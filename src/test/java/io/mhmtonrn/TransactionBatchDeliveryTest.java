@@ -0,0 +1,98 @@
+package io.mhmtonrn;
+
+import io.mhmtonrn.event.TransactionBatch;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionBatchDeliveryTest {
+
+    private static final RelationInfo RELATION = new RelationInfo(3, "public", "items",
+            List.of(new ColumnInfo("id", 23, true)));
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void publishesOneBatchPerTransactionAndConfirmsAfterIt() {
+        TagDispatcher dispatcher = TagDispatcher.standard(new HashMap<>(Map.of(3, RELATION)));
+        AckTracker ackTracker = new AckTracker();
+        List<String> batches = new ArrayList<>();
+        List<Long> confirmedDuringBatch = new ArrayList<>();
+        // a budget of one byte spills every row
+        TransactionBatchDelivery delivery = new TransactionBatchDelivery(this, event -> {
+            TransactionBatch batch = (TransactionBatch) event;
+            List<String> ids = new ArrayList<>();
+            batch.forEach(change -> ids.add(change.kind() + " " + change.newRow().getString(0)));
+            batches.add(batch.getXid() + "@" + batch.getLsn() + "/" + batch.getCommitTimestamp() + " " + ids);
+            confirmedDuringBatch.add(ackTracker.confirmedLsn());
+            assertEquals(batch.size(), batch.getPayload().length == 0 ? 0 : new String(batch.getPayload(),
+                    StandardCharsets.UTF_8).lines().count());
+        }, null, new SpillStore(dir, 1, 1 << 16));
+
+        Change change = new Change();
+        AckTracker.Transaction transaction = null;
+        for (byte[] message : List.of(
+                PgOutputMessages.begin(600, 77, 500),
+                PgOutputMessages.insert(3, new String[]{"1"}),
+                PgOutputMessages.insert(3, new String[]{"2"}),
+                PgOutputMessages.commit(600, 601, 77),
+                PgOutputMessages.begin(700, 88, 501),
+                PgOutputMessages.insert(3, new String[]{"3"}),
+                PgOutputMessages.commit(700, 701, 88))) {
+            Change decoded = dispatcher.dispatch(ByteBuffer.wrap(message), change);
+            if (decoded == null) continue;
+            if (transaction == null) transaction = ackTracker.begin();
+            transaction.retain();
+            delivery.deliver(decoded, transaction);
+            if (decoded.kind() == Change.Kind.COMMIT) {
+                ackTracker.commit(transaction, decoded.endLsn());
+                transaction = null;
+            }
+        }
+
+        assertEquals(List.of("500@600/77 [INSERT 1, INSERT 2]", "501@700/88 [INSERT 3]"), batches);
+        assertEquals(List.of(0L, 601L), confirmedDuringBatch);
+        assertEquals(701, ackTracker.confirmedLsn());
+    }
+
+    @Test
+    void streamedTransactionsArePublishedFromTheirOwnBuffer() {
+        TagDispatcher dispatcher = TagDispatcher.standard(new HashMap<>(Map.of(3, RELATION)));
+        AckTracker ackTracker = new AckTracker();
+        SpillStore spill = new SpillStore(dir, 1, 1 << 16);
+        List<String> batches = new ArrayList<>();
+        TransactionBatchDelivery delivery = new TransactionBatchDelivery(this, event -> {
+            TransactionBatch batch = (TransactionBatch) event;
+            List<String> ids = new ArrayList<>();
+            batch.forEach(change -> ids.add(change.kind() + " " + change.newRow().getString(0)));
+            batches.add(batch.getXid() + "@" + batch.getLsn() + " " + ids);
+        }, null, spill);
+        StreamedTransactions streams = new StreamedTransactions(ackTracker, StreamedTransactions.Mode.ON_COMMIT, spill, null, null);
+
+        Change change = new Change();
+        for (byte[] message : List.of(
+                PgOutputMessages.streamStart(900, true),
+                PgOutputMessages.inStream(900, PgOutputMessages.insert(3, new String[]{"1"})),
+                PgOutputMessages.inStream(900, PgOutputMessages.insert(3, new String[]{"2"})),
+                PgOutputMessages.streamStop(),
+                PgOutputMessages.streamCommit(900, 910, 911, 99))) {
+            Change decoded = dispatcher.dispatch(ByteBuffer.wrap(message), change);
+            if (decoded != null) streams.handle(decoded, delivery);
+        }
+
+        assertEquals(List.of("900@910 [INSERT 1, INSERT 2]"), batches);
+        // spilled once while streaming, not copied into a second buffer on commit
+        assertEquals(2, spill.stats().spilledChanges());
+        assertEquals(911, ackTracker.confirmedLsn());
+    }
+}
@@ -0,0 +1,124 @@
+package io.mhmtonrn;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionBufferTest {
+
+    private static final RelationInfo RELATION = new RelationInfo(3, "public", "items",
+            List.of(new ColumnInfo("id", 23, true), new ColumnInfo("name", 25)));
+
+    private final TagDispatcher dispatcher = TagDispatcher.standard(new HashMap<>(Map.of(3, RELATION)));
+    private final Change change = new Change();
+
+    @TempDir
+    Path dir;
+
+    private void add(TransactionBuffer buffer, int subXid, byte[] message) {
+        dispatcher.enterStream(100);
+        buffer.add(dispatcher.dispatch(ByteBuffer.wrap(PgOutputMessages.inStream(subXid, message)), change));
+    }
+
+    private static List<String> replay(TransactionBuffer buffer) {
+        List<String> rows = new ArrayList<>();
+        buffer.replay(c -> rows.add(c.kind() + " " + (c.oldRow() == null ? "" : c.oldRow().getString(0) + ">")
+                + (c.newRow() == null ? "" : c.newRow().getString(1)) + " sub=" + c.subXid()));
+        return rows;
+    }
+
+    @Test
+    void spillsPastTheBudgetAndReplaysInOrder() throws Exception {
+        // room for two changes on the heap, and segments small enough to need several files
+        SpillStore store = new SpillStore(dir, 2 * 300, 64);
+        TransactionBuffer buffer = store.open();
+        add(buffer, 100, PgOutputMessages.insert(3, new String[]{"1", "a"}));
+        add(buffer, 100, PgOutputMessages.insert(3, new String[]{"2", "b"}));
+        add(buffer, 101, PgOutputMessages.insert(3, new String[]{"3", "c"}));
+        add(buffer, 100, PgOutputMessages.update(3, new String[]{"2", "b"}, new String[]{"2", "bb"}));
+        add(buffer, 101, PgOutputMessages.delete(3, new String[]{"1", null}));
+        add(buffer, 102, PgOutputMessages.insert(3, new String[]{"4", "ç"}));
+
+        assertTrue(buffer.isSpilled());
+        assertEquals(6, buffer.size());
+        assertEquals(4, store.stats().spilledChanges());
+        assertTrue(store.stats().spillFiles() > 1);
+        assertEquals(1, store.stats().spilledTransactions());
+
+        buffer.discard(101);
+        assertEquals(List.of("INSERT a sub=100", "INSERT b sub=100", "UPDATE 2>bb sub=100", "INSERT ç sub=102"),
+                replay(buffer));
+        assertEquals(2, store.stats().readChanges());
+
+        buffer.close();
+        assertEquals(0, store.stats().heapBytes());
+        try (var files = Files.list(dir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void spilledRowsKeepTheirCommitTimeAndXid() {
+        // room for one change on the heap
+        TransactionBuffer buffer = new SpillStore(dir, 300, 1 << 16).open();
+        dispatcher.dispatch(ByteBuffer.wrap(PgOutputMessages.begin(600, 77_000, 500)), change);
+        buffer.add(dispatcher.dispatch(ByteBuffer.wrap(PgOutputMessages.insert(3, new String[]{"1", "a"})), change));
+        buffer.add(dispatcher.dispatch(ByteBuffer.wrap(PgOutputMessages.insert(3, new String[]{"2", "b"})), change));
+        assertTrue(buffer.isSpilled());
+
+        List<String> rows = new ArrayList<>();
+        buffer.replay(c -> rows.add(c.newRow().getString(0) + " @" + c.timestamp() + " xid=" + c.xid()));
+        assertEquals(List.of("1 @77000 xid=500", "2 @77000 xid=500"), rows);
+        buffer.close();
+    }
+
+    @Test
+    void onCommitDeliveryReplaysSpilledChanges() {
+        AckTracker ackTracker = new AckTracker();
+        StreamedTransactions streams = new StreamedTransactions(ackTracker, StreamedTransactions.Mode.ON_COMMIT,
+                new SpillStore(dir, 0, 1 << 16), null, null);
+        List<String> delivered = new ArrayList<>();
+        EventDelivery delivery = (c, transaction) -> {
+            delivered.add(c.kind() + (c.newRow() == null ? "" : " " + c.newRow().getString(0)));
+            transaction.release();
+        };
+        for (byte[] message : List.of(PgOutputMessages.streamStart(100, true),
+                PgOutputMessages.inStream(100, PgOutputMessages.insert(3, new String[]{"1", "a"})),
+                PgOutputMessages.inStream(100, PgOutputMessages.insert(3, new String[]{"2", "b"})),
+                PgOutputMessages.streamStop(),
+                PgOutputMessages.streamCommit(100, 900, 901, 0))) {
+            Change decoded = dispatcher.dispatch(ByteBuffer.wrap(message), change);
+            if (decoded != null) streams.handle(decoded, delivery);
+        }
+
+        assertEquals(List.of("INSERT 1", "INSERT 2", "COMMIT"), delivered);
+        assertEquals(901, ackTracker.confirmedLsn());
+    }
+
+    @Test
+    void storesInTheTempDirKeepOutOfEachOthersFiles() throws Exception {
+        Path orphan = Files.createDirectories(dir.resolve("999999999-1"));
+        Files.createFile(orphan.resolve("00000000000000000000" + SpillStore.SUFFIX));
+        SpillStore first = SpillStore.inTempDir(dir, 0, 1 << 16);
+        TransactionBuffer buffer = first.open();
+        add(buffer, 100, PgOutputMessages.insert(3, new String[]{"1", "a"}));
+        assertTrue(buffer.isSpilled());
+
+        SpillStore.inTempDir(dir, 0, 1 << 16);
+        assertFalse(Files.exists(orphan));
+        try (var files = Files.walk(dir)) {
+            assertEquals(1, files.filter(p -> p.toString().endsWith(SpillStore.SUFFIX)).count());
+        }
+        assertEquals(List.of("INSERT a sub=100"), replay(buffer));
+        buffer.close();
+    }
+}
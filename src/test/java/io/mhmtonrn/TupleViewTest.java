@@ -0,0 +1,59 @@
+package io.mhmtonrn;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TupleViewTest {
+
+    private static final List<ColumnInfo> COLUMNS = List.of(
+            new ColumnInfo("id", 23), new ColumnInfo("name", 25), new ColumnInfo("note", 25));
+
+    private static ByteBuffer tuple(String... values) {
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        buffer.putShort((short) values.length);
+        for (String value : values) {
+            if (value == null) {
+                buffer.put((byte) 'n');
+            } else {
+                byte[] data = value.getBytes(StandardCharsets.UTF_8);
+                buffer.put((byte) 't').putInt(data.length).put(data);
+            }
+        }
+        return buffer.flip();
+    }
+
+    @Test
+    void wrapRecordsOffsetsAndMaterializesOnDemand() {
+        ByteBuffer buffer = tuple("42", "çağrı", null);
+        TupleView view = new TupleView();
+        view.wrap(buffer, COLUMNS);
+
+        assertFalse(buffer.hasRemaining());
+        assertEquals(3, view.size());
+        assertEquals("42", view.getString(0));
+        assertEquals("çağrı", view.getString(1));
+        assertTrue(view.isNull(2));
+        assertNull(view.getString(2));
+        assertEquals("name", view.name(1));
+    }
+
+    @Test
+    void copyIsIndependentOfTheSourceBuffer() {
+        ByteBuffer buffer = tuple("1", "a", "b");
+        Change change = new Change().row(Change.Kind.INSERT, new RelationInfo(1, "public", "t", COLUMNS));
+        change.wrapNew(buffer);
+
+        Change copy = change.copy();
+        buffer.clear();
+        while (buffer.hasRemaining()) buffer.put((byte) 0);
+
+        assertEquals("1", copy.newRow().getString(0));
+        assertEquals("b", copy.newRow().getString(2));
+        assertNull(copy.oldRow());
+    }
+}
@@ -0,0 +1,82 @@
+package io.mhmtonrn;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TypeCodecsTest {
+
+    private static Object decode(int oid, String text) {
+        ByteBuffer buffer = ByteBuffer.wrap(("xx" + text).getBytes(StandardCharsets.UTF_8));
+        return TypeCodecs.forOid(oid).decode(buffer, 2, buffer.limit() - 2);
+    }
+
+    private static Instant instant(int oid, String text) {
+        byte[] data = text.getBytes(StandardCharsets.UTF_8);
+        return TypeCodecs.forOid(oid).decodeInstant(ByteBuffer.wrap(data), 0, data.length);
+    }
+
+    @Test
+    void scalars() {
+        assertEquals(-42, decode(23, "-42"));
+        assertEquals(9876543210123L, decode(20, "9876543210123"));
+        assertEquals(true, decode(16, "t"));
+        assertEquals(2.5f, decode(700, "2.5"));
+        assertEquals(Double.NEGATIVE_INFINITY, decode(701, "-Infinity"));
+        assertEquals(new BigDecimal("12345.678900"), decode(1700, "12345.678900"));
+        assertEquals(Double.NaN, decode(1700, "NaN"));
+        assertEquals(UUID.fromString("a0eebc99-9c0b-4ef8-bb6d-6bb9bd380a11"), decode(2950, "a0eebc99-9c0b-4ef8-bb6d-6bb9bd380a11"));
+        assertArrayEquals(new byte[]{0x0a, (byte) 0xff}, (byte[]) decode(17, "\\x0aff"));
+        assertEquals("{\"a\": 1}", decode(3802, "{\"a\": 1}"));
+        assertEquals("other", decode(1043, "other"));
+    }
+
+    @Test
+    void datesAndTimestamps() {
+        assertEquals(LocalDate.of(2024, 2, 29), decode(1082, "2024-02-29"));
+        assertEquals(LocalDate.of(-43, 3, 15), decode(1082, "0044-03-15 BC"));
+        assertEquals(LocalDate.MAX, decode(1082, "infinity"));
+        assertEquals(LocalDateTime.of(2024, 5, 1, 12, 34, 56, 789_000_000), decode(1114, "2024-05-01 12:34:56.789"));
+        assertEquals(Instant.parse("2024-05-01T12:34:56.123456Z"), instant(1184, "2024-05-01 12:34:56.123456+00"));
+        assertEquals(Instant.parse("2024-05-01T07:04:56Z"), instant(1184, "2024-05-01 12:34:56+05:30"));
+        assertEquals(Instant.parse("2024-05-01T15:34:56Z"), instant(1184, "2024-05-01 12:34:56-03"));
+        assertEquals(Instant.MIN, instant(1184, "-infinity"));
+    }
+
+    @Test
+    void arrays() {
+        assertEquals(List.of(1, 2, 3), decode(1007, "{1,2,3}"));
+        assertEquals(Arrays.asList("a b", null, "q\"x", "NULL"), decode(1009, "{\"a b\",NULL,\"q\\\"x\",\"NULL\"}"));
+        assertEquals(List.of(List.of(1L, 2L), List.of(3L, 4L)), decode(1016, "{{1,2},{3,4}}"));
+        assertEquals(List.of(5, 6), decode(1007, "[0:1]={5,6}"));
+        assertEquals(List.of(), decode(1022, "{}"));
+    }
+
+    @Test
+    void tupleViewReadsPrimitivesThroughColumnCodecs() {
+        byte[] id = "7".getBytes(StandardCharsets.UTF_8);
+        byte[] at = "2024-05-01 00:00:00+00".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(64).putShort((short) 3)
+                .put((byte) 't').putInt(id.length).put(id)
+                .put((byte) 't').putInt(at.length).put(at)
+                .put((byte) 'n').flip();
+        TupleView view = new TupleView();
+        view.wrap(buffer, List.of(new ColumnInfo("id", 20, true), new ColumnInfo("at", 1184), new ColumnInfo("ok", 16)));
+
+        assertEquals(7L, view.getLong(0));
+        assertEquals(7.0, view.getDouble(0));
+        assertEquals(Instant.parse("2024-05-01T00:00:00Z"), view.getInstant(1));
+        assertNull(view.getValue(2));
+        assertThrows(NullPointerException.class, () -> view.getBoolean(2));
+    }
+}
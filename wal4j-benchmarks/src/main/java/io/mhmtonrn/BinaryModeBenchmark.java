@@ -0,0 +1,67 @@
+package io.mhmtonrn;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding a typed row sent as text versus in pgoutput binary mode: the wrap alone, and the
+ * wrap followed by reading every value as a primitive or {@code Instant}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BinaryModeBenchmark {
+
+    @Param({"text", "binary"})
+    String mode;
+
+    private final Change change = new Change();
+    private TagDispatcher dispatcher;
+    private ByteBuffer message;
+
+    @Setup
+    public void setup() {
+        RelationInfo relation = new RelationInfo(1, "public", "typed", List.of(
+                new ColumnInfo("id", 20, true), new ColumnInfo("qty", 23), new ColumnInfo("price", 701),
+                new ColumnInfo("created", 1184), new ColumnInfo("updated", 1184), new ColumnInfo("active", 16)));
+        Map<Integer, RelationInfo> relations = new HashMap<>(Map.of(1, relation));
+        dispatcher = TagDispatcher.standard(relations);
+        message = ByteBuffer.wrap(mode.equals("text")
+                ? PgOutputMessages.insert(1, new String[]{"9876543210", "42", "1234.5678",
+                        "2024-05-01 12:34:56.123456+00", "2024-05-02 08:00:00+02", "t"})
+                : PgOutputMessages.insertBinary(1, new byte[][]{
+                        ByteBuffer.allocate(8).putLong(9876543210L).array(),
+                        ByteBuffer.allocate(4).putInt(42).array(),
+                        ByteBuffer.allocate(8).putDouble(1234.5678).array(),
+                        ByteBuffer.allocate(8).putLong(767795696123456L).array(),
+                        ByteBuffer.allocate(8).putLong(767858400000000L).array(),
+                        {1}}));
+    }
+
+    @Benchmark
+    public Change decode() {
+        message.clear();
+        return dispatcher.dispatch(message, change);
+    }
+
+    @Benchmark
+    public void decodeAndRead(Blackhole bh) {
+        message.clear();
+        TupleView row = dispatcher.dispatch(message, change).newRow();
+        bh.consume(row.getLong(0));
+        bh.consume(row.getInt(1));
+        bh.consume(row.getDouble(2));
+        bh.consume(row.getInstant(3));
+        bh.consume(row.getInstant(4));
+        bh.consume(row.getBoolean(5));
+    }
+}
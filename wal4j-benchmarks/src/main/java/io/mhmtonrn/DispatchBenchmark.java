@@ -0,0 +1,84 @@
+package io.mhmtonrn;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of routing one message to its handler: the old linear scan over the handler list
+ * against the tag-indexed table. Handlers are no-ops so only the dispatch itself is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchBenchmark {
+
+    /** All pgoutput tags up to protocol version 4, in the order a handler list would hold them. */
+    private static final String TAGS = "RIUDCBTYOMSEcAPKrp";
+
+    @Param({"6", "18"})
+    int handlerCount;
+
+    private final List<ReplicationEventHandler> handlers = new ArrayList<>();
+    private final TagDispatcher dispatcher = new TagDispatcher();
+    private final Change change = new Change();
+    private ByteBuffer messages;
+
+    @Setup
+    public void setup() {
+        for (int i = 0; i < handlerCount; i++) {
+            NoopHandler handler = new NoopHandler(TAGS.charAt(i));
+            handlers.add(handler);
+            dispatcher.register(handler);
+        }
+        // insert-heavy mix weighted like real OLTP traffic
+        SplittableRandom random = new SplittableRandom(42);
+        byte[] tags = new byte[4096];
+        for (int i = 0; i < tags.length; i++) {
+            int r = random.nextInt(100);
+            tags[i] = (byte) (r < 50 ? 'I' : r < 75 ? 'U' : r < 85 ? 'D' : r < 92 ? 'B' : 'C');
+        }
+        messages = ByteBuffer.wrap(tags);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(4096)
+    public int linearScan() {
+        messages.clear();
+        int handled = 0;
+        while (messages.hasRemaining()) {
+            char tag = (char) messages.get();
+            for (ReplicationEventHandler handler : handlers) {
+                if (handler.tag() == tag) {
+                    handler.handle(messages, change);
+                    handled++;
+                    break;
+                }
+            }
+        }
+        return handled;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(4096)
+    public int tagTable() {
+        messages.clear();
+        int handled = 0;
+        while (messages.hasRemaining()) {
+            dispatcher.dispatch(messages, change);
+            handled++;
+        }
+        return handled;
+    }
+
+    private record NoopHandler(char tag) implements ReplicationEventHandler {
+        public Change handle(ByteBuffer buffer, Change change) { return null; }
+    }
+}
@@ -0,0 +1,74 @@
+package io.mhmtonrn;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode cost of one insert per output format, over a relation with a realistic mix of
+ * column types. The encoded size of the row is printed at setup as bytes per event.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncoderBenchmark {
+    private static final int[] TYPES = {23, 20, 701, 16, 25, 1700, 1184, 17};
+    private static final String[] VALUES = {"123456", "9876543210123", "3.14159265", "t", "a short text value",
+            "12345.6789", "2024-05-01 12:34:56.789+00", "\\x00112233445566778899aabbccddeeff"};
+
+    @Param({"json", "avro", "protobuf", "cbor"})
+    String format;
+
+    @Param({"8", "32"})
+    int columns;
+
+    private RowEncoder encoder;
+    private Change change;
+
+    @Setup
+    public void setup() {
+        List<ColumnInfo> cols = new ArrayList<>();
+        String[] row = new String[columns];
+        for (int i = 0; i < columns; i++) {
+            cols.add(new ColumnInfo("column_" + i, TYPES[i % TYPES.length], i == 0));
+            row[i] = VALUES[i % VALUES.length];
+        }
+        RelationInfo relation = new RelationInfo(1, "public", "bench", cols);
+        Map<Integer, RelationInfo> relations = new HashMap<>(Map.of(1, relation));
+        change = TagDispatcher.standard(relations).dispatch(ByteBuffer.wrap(PgOutputMessages.insert(1, row)), new Change());
+        encoder = RowEncoder.of(format);
+        System.out.println("# " + format + " bytes per event: " + encoder.encode(change).length);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return encoder.encode(change);
+    }
+
+    @Benchmark
+    public void encodeToStream(Blackhole bh) throws Exception {
+        encoder.encode(change, new BlackholeStream(bh));
+    }
+
+    private static final class BlackholeStream extends OutputStream {
+        private final Blackhole bh;
+
+        BlackholeStream(Blackhole bh) { this.bh = bh; }
+
+        @Override
+        public void write(int b) { bh.consume(b); }
+
+        @Override
+        public void write(byte[] b, int off, int len) { bh.consume(b); bh.consume(len); }
+    }
+}
@@ -0,0 +1,67 @@
+package io.mhmtonrn;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/** Decode cost of each ReplicationEventHandler on a single message, without publishing. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HandlerBenchmark {
+
+    private final Change change = new Change();
+    private RelationHandler relationHandler;
+    private InsertHandler insertHandler;
+    private UpdateHandler updateHandler;
+    private DeleteHandler deleteHandler;
+    private final BeginHandler beginHandler = new BeginHandler();
+    private final CommitHandler commitHandler = new CommitHandler();
+
+    @Setup
+    public void setup(SyntheticWorkload workload) {
+        relationHandler = new RelationHandler(new HashMap<>(workload.relationMap));
+        insertHandler = new InsertHandler(workload.relationMap);
+        updateHandler = new UpdateHandler(workload.relationMap);
+        deleteHandler = new DeleteHandler(workload.relationMap);
+    }
+
+    @Benchmark
+    public Object relation(SyntheticWorkload workload) {
+        return relationHandler.handle(body(workload.relationMessage), change);
+    }
+
+    @Benchmark
+    public Object insert(SyntheticWorkload workload) {
+        return insertHandler.handle(body(workload.insert), change);
+    }
+
+    @Benchmark
+    public Object update(SyntheticWorkload workload) {
+        return updateHandler.handle(body(workload.update), change);
+    }
+
+    @Benchmark
+    public Object delete(SyntheticWorkload workload) {
+        return deleteHandler.handle(body(workload.delete), change);
+    }
+
+    @Benchmark
+    public Object begin(SyntheticWorkload workload) {
+        return beginHandler.handle(body(workload.begin), change);
+    }
+
+    @Benchmark
+    public Object commit(SyntheticWorkload workload) {
+        return commitHandler.handle(body(workload.commit), change);
+    }
+
+    private static ByteBuffer body(byte[] message) {
+        return ByteBuffer.wrap(message).position(1);
+    }
+}
@@ -0,0 +1,49 @@
+package io.mhmtonrn;
+
+import io.mhmtonrn.event.CDCEvent;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The listenLoop inner loop (ReplicationListener.process) over 100 transactions of 10 rows,
+ * with listeners that ignore the event, take its UTF-8 JSON payload or its JSON String.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ListenLoopBenchmark {
+
+    @Param({"none", "payload", "message"})
+    String materialize;
+
+    private ReplicationListener listener;
+    private ByteBuffer[] messages;
+
+    @Setup
+    public void setup(SyntheticWorkload workload, Blackhole bh) {
+        listener = new ReplicationListener(event -> {
+            CDCEvent cdc = (CDCEvent) event;
+            switch (materialize) {
+                case "payload" -> bh.consume(cdc.getPayload());
+                case "message" -> bh.consume(cdc.getMessage());
+                default -> bh.consume(cdc.getChange());
+            }
+        }, null);
+        messages = workload.transactionStream.stream().map(ByteBuffer::wrap).toArray(ByteBuffer[]::new);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(1201)
+    public void process() {
+        for (ByteBuffer message : messages) {
+            message.clear();
+            listener.process(message);
+        }
+    }
+}
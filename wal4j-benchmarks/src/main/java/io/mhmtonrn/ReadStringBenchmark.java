@@ -0,0 +1,31 @@
+package io.mhmtonrn;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReadStringBenchmark {
+
+    @Param({"8", "32", "128"})
+    int length;
+
+    private ByteBuffer buffer;
+
+    @Setup
+    public void setup() {
+        buffer = ByteBuffer.wrap(PgOutputMessages.cstring("n".repeat(length)));
+    }
+
+    @Benchmark
+    public String readString() {
+        buffer.clear();
+        return ReplicationListener.readString(buffer);
+    }
+}
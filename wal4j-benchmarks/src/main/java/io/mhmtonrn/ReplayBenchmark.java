@@ -0,0 +1,85 @@
+package io.mhmtonrn;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Decode throughput over captured segment files, with no network or database involved.
+ * Point {@code segmentDir} at a directory written with {@code replication.capture.dir};
+ * when empty, a synthetic capture is recorded first.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReplayBenchmark {
+
+    @Param({""})
+    String segmentDir;
+
+    private Path dir;
+    private boolean temporary;
+    private ReplicationListener listener;
+
+    /** Reports decoded messages per second next to replays per second. */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long messages;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            messages = 0;
+        }
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        if (segmentDir.isEmpty()) {
+            dir = Files.createTempDirectory("wal4j-replay");
+            temporary = true;
+            try (SegmentWriter writer = new SegmentWriter(dir, 16 << 20)) {
+                SyntheticPgOutput source = new SyntheticPgOutput(16, 16, 0.1, 10, 10_000);
+                long lsn = 0;
+                while (source.hasNext()) {
+                    byte[] message = source.next();
+                    writer.append(lsn += message.length, ByteBuffer.wrap(message));
+                }
+            }
+        } else {
+            dir = Path.of(segmentDir);
+        }
+        listener = new ReplicationListener(event -> {}, null);
+    }
+
+    @Benchmark
+    public long replay(Counters counters) throws IOException {
+        SegmentReader reader = new SegmentReader(dir);
+        long count = 0;
+        ByteBuffer payload;
+        while ((payload = reader.next()) != null) {
+            listener.process(payload);
+            count++;
+        }
+        counters.messages += count;
+        return count;
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (temporary) {
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package io.mhmtonrn;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Synthetic pgoutput messages for one relation of configurable width. The stream shape is
+ * controlled by column count, value size and the ratio of null values.
+ */
+@State(Scope.Thread)
+public class SyntheticWorkload {
+    static final int REL_ID = SyntheticPgOutput.REL_ID;
+
+    @Param({"4", "16", "64"})
+    public int columns;
+
+    @Param({"8", "128"})
+    public int valueSize;
+
+    @Param({"0.0", "0.25"})
+    public double nullRatio;
+
+    RelationInfo relation;
+    Map<Integer, RelationInfo> relationMap;
+    byte[] begin;
+    byte[] relationMessage;
+    byte[] insert;
+    byte[] update;
+    byte[] delete;
+    byte[] commit;
+    /** A relation message followed by 100 transactions of mixed row changes. */
+    List<byte[]> transactionStream;
+
+    @Setup
+    public void setup() {
+        SyntheticPgOutput generator = new SyntheticPgOutput(columns, valueSize, nullRatio, 10, 100);
+        relation = generator.relation();
+        relationMap = new HashMap<>();
+        relationMap.put(REL_ID, relation);
+
+        begin = PgOutputMessages.begin(1000, 0, 1);
+        relationMessage = PgOutputMessages.relation(relation);
+        insert = PgOutputMessages.insert(REL_ID, generator.row());
+        update = PgOutputMessages.update(REL_ID, generator.row(), generator.row());
+        delete = PgOutputMessages.delete(REL_ID, generator.row());
+        commit = PgOutputMessages.commit(1000, 1100, 0);
+
+        transactionStream = new ArrayList<>();
+        generator.forEachRemaining(transactionStream::add);
+    }
+}
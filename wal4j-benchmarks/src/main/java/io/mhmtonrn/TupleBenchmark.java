@@ -0,0 +1,52 @@
+package io.mhmtonrn;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tuple decoding (the former parseTuple): the offset scan alone, and the scan followed by
+ * materializing every value as a String or into a map.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TupleBenchmark {
+
+    private final TupleView view = new TupleView();
+    private ByteBuffer tuple;
+
+    @Setup
+    public void setup(SyntheticWorkload workload) {
+        // skip tag, relation id and the 'N' marker of the insert message
+        tuple = ByteBuffer.wrap(workload.insert);
+        tuple.position(6);
+        tuple = tuple.slice();
+    }
+
+    @Benchmark
+    public TupleView wrap(SyntheticWorkload workload) {
+        tuple.clear();
+        view.wrap(tuple, workload.relation.columns());
+        return view;
+    }
+
+    @Benchmark
+    public void wrapAndReadStrings(SyntheticWorkload workload, Blackhole bh) {
+        tuple.clear();
+        view.wrap(tuple, workload.relation.columns());
+        for (int i = 0; i < view.size(); i++) bh.consume(view.getString(i));
+    }
+
+    @Benchmark
+    public Object wrapAndToMap(SyntheticWorkload workload) {
+        tuple.clear();
+        view.wrap(tuple, workload.relation.columns());
+        return view.toMap();
+    }
+}